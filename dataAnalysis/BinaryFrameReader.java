@@ -0,0 +1,158 @@
+package dataAnalysis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the binary data files ({@code energies.bin}, {@code velocity.bin} and
+ * {@code position.bin}) written by the simulation's data writer.
+ *
+ * <p>A file starts with a 32 byte header: the magic number, the format version,
+ * the number of particles N, the channel held in the file, the characteristic
+ * interval between frames as a double, and the number of bytes per value
+ * (4 or 8). Each frame that follows is the simulation time as a double followed
+ * by the N values ordered by particle ID. Everything is little-endian.</p>
+ *
+ * <p>Since every frame has the same size, any frame can be read directly. The
+ * file is memory-mapped in windows of whole frames, so only the frames that
+ * are read are ever loaded.</p>
+ *
+ * @author Erik
+ */
+public class BinaryFrameReader implements Closeable {
+
+    private static final int MAGIC = 0x4F444246;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    public static final int CHANNEL_ENERGY = 0, CHANNEL_VELOCITY = 1, CHANNEL_POSITION = 2;
+
+    public final int size;//number of particles
+    public final int channel;//which of the channels the file holds
+    public final double interval;//characteristic interval between frames
+    public final int width;//bytes per value
+    public final int frameCount;//number of complete frames in the file
+    private final int frameBytes;//bytes per frame, including its time
+    private final int framesPerWindow;
+    private final FileChannel file;
+    private final MappedByteBuffer[] windows;
+
+    public BinaryFrameReader(String fileName) throws IOException {
+        file = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && file.read(header) >= 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException(fileName + " is not a binary data file");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(fileName + " has unsupported version " + version);
+            }
+            size = header.getInt();
+            channel = header.getInt();
+            interval = header.getDouble();
+            width = header.getInt();
+            if (width != 4 && width != 8) {
+                throw new IOException(fileName + " has unsupported value width " + width);
+            }
+
+            long bytes = 8 + (long) size * width;
+            if (bytes > Integer.MAX_VALUE) {
+                throw new IOException(fileName + " has frames too large to be mapped");
+            }
+            frameBytes = (int) bytes;
+            frameCount = (int) ((file.size() - HEADER_SIZE) / frameBytes);//ignores a partly written last frame
+            framesPerWindow = Math.max(1, Math.min(frameCount, Integer.MAX_VALUE / frameBytes));
+            windows = new MappedByteBuffer[(frameCount + framesPerWindow - 1) / framesPerWindow];
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /*
+     * Returns the simulation time of a frame
+     */
+    public double getTime(int frame) throws IOException {
+        int pos = offset(frame);
+        return window(frame).getDouble(pos);
+    }
+
+    /*
+     * Returns the value of a single particle within a frame
+     */
+    public double getValue(int frame, int id) throws IOException {
+        int pos = offset(frame) + 8 + id * width;
+        MappedByteBuffer w = window(frame);
+        return width == 8 ? w.getDouble(pos) : w.getFloat(pos);
+    }
+
+    /*
+     * Reads every value of a frame, ordered by particle ID, into the given
+     * array, or a new one if it is null
+     */
+    public double[] readFrame(int frame, double[] values) throws IOException {
+        if (values == null) {
+            values = new double[size];
+        }
+        int pos = offset(frame) + 8;
+        MappedByteBuffer w = window(frame);
+        if (width == 8) {
+            for (int i = 0; i < size; i++, pos += 8) {
+                values[i] = w.getDouble(pos);
+            }
+        } else {
+            for (int i = 0; i < size; i++, pos += 4) {
+                values[i] = w.getFloat(pos);
+            }
+        }
+        return values;
+    }
+
+    /*
+     * Reads the value of a single particle in every frame
+     */
+    public double[] readParticle(int id) throws IOException {
+        double[] values = new double[frameCount];
+        for (int k = 0; k < frameCount; k++) {
+            values[k] = getValue(k, id);
+        }
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /*
+     * Offset of a frame within its window
+     */
+    private int offset(int frame) {
+        if (frame < 0 || frame >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + frame + " of " + frameCount);
+        }
+        return (frame % framesPerWindow) * frameBytes;
+    }
+
+    /*
+     * Maps the window holding a frame the first time it is needed
+     */
+    private MappedByteBuffer window(int frame) throws IOException {
+        int k = frame / framesPerWindow;
+        if (windows[k] == null) {
+            long start = HEADER_SIZE + (long) k * framesPerWindow * frameBytes;
+            int frames = Math.min(framesPerWindow, frameCount - k * framesPerWindow);
+            windows[k] = file.map(FileChannel.MapMode.READ_ONLY, start, (long) frames * frameBytes);
+            windows[k].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return windows[k];
+    }
+}
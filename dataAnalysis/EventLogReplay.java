@@ -0,0 +1,287 @@
+package dataAnalysis;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Reconstructs frames of a system from its crossing log ({@code events.bin}),
+ * which the simulation's data writer records in the EVENTS format.
+ *
+ * <p>Between crossings every particle moves along a parabola with an
+ * acceleration given by its rank, so the state of the system is found by
+ * repeating the simulation's own updates for every crossing in the log. The
+ * same arithmetic is used as in the simulation, so the replayed state matches
+ * it exactly. Frames in between crossings are projected along each
+ * particle's parabola.</p>
+ *
+ * <p>The log is read forwards. Going back in time restarts from the beginning
+ * of the log, and whenever a keyframe lies between the current time and the
+ * requested time the crossings before it are skipped rather than replayed.</p>
+ *
+ * <p>Run as a program, a log is resampled into text position and velocity
+ * files at any interval:
+ * <br>{@code EventLogReplay <log file> <interval> <output directory>}</br></p>
+ *
+ * @author Erik
+ */
+public class EventLogReplay implements Closeable {
+
+    private static final int MAGIC = 0x4F44454C;
+    private static final int VERSION = 1;
+    private static final double CHARACTERISTIC_TIME = Math.PI * 2;
+
+    public final int size;//number of particles
+    public final int keyframes;//intervals between keyframes
+    public final double interval;//characteristic length of an interval
+    public final double systemInterval;//system length of an interval
+    private final String fileName;
+    private DataInputStream in;
+
+    //State of the system ordered by rank, as in the simulation
+    private final double[] x, v, time, accel;
+    private final int[] id;
+    private double intervalStart;//characteristic time at which the current interval started
+    private long intervalIndex;
+    private boolean finished;//whether the end of the log was reached
+
+    //The record read ahead of the current time, if any
+    private byte pending;
+    private double pendingTime;
+    private int pendingLeft;
+
+    public EventLogReplay(String fileName) throws IOException {
+        this.fileName = fileName;
+        open();
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(fileName + " is not a crossing log");
+            }
+            size = in.readInt();
+            keyframes = in.readInt();
+            interval = in.readDouble();
+            systemInterval = in.readDouble();
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+
+        x = new double[size];
+        v = new double[size];
+        time = new double[size];
+        id = new int[size];
+        accel = new double[size];
+        for (int i = 0; i < size; i++) {
+            accel[i] = (size - 2 * (i + 1) + 1.0) / size;
+        }
+    }
+
+    /*
+     * Returns whether the end of the log has been reached
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /*
+     * Returns the characteristic time at which the current interval started
+     */
+    public double getIntervalStart() {
+        return intervalStart;
+    }
+
+    /*
+     * Fills in the positions and velocities of every particle, ordered by ID,
+     * at the given time in characteristic time units. Past the end of the log
+     * the particles keep moving along their last parabolas.
+     */
+    public void frame(double t, double[] positions, double[] velocities) throws IOException {
+        advance(t);
+        //Clamp at the start of the interval, as interval times are sums of floats
+        double local = Math.max(0.0, (t - intervalStart) * CHARACTERISTIC_TIME);
+        for (int i = 0; i < size; i++) {
+            double dt = local - time[i];
+            positions[id[i]] = x[i] + v[i] * dt + .5 * accel[i] * dt * dt;
+            velocities[id[i]] = v[i] + accel[i] * dt;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /*
+     * Replays every record up to the given time
+     */
+    private void advance(double t) throws IOException {
+        if (t < intervalStart) {
+            in.close();
+            open();
+            in.skipBytes(32);
+        }
+        //Interval times are sums of floats, so allow for their rounding
+        double tolerance = 1e-9 * interval;
+        double local = (t - intervalStart) * CHARACTERISTIC_TIME;
+        while (!finished) {
+            if (pending == 0 && !read()) {
+                break;
+            }
+            //Skip crossings whenever the next keyframe is reached before t
+            long nextKeyframe = (intervalIndex / keyframes + 1) * keyframes;
+            boolean skip = intervalStart + (nextKeyframe - intervalIndex + 0.5) * interval <= t;
+            switch (pending) {
+                case 'C':
+                    if (!skip && pendingTime > local) {
+                        return;
+                    }
+                    if (!skip) {
+                        cross(pendingTime, pendingLeft);
+                    }
+                    break;
+                case 'I':
+                    if (pendingTime > t + tolerance) {
+                        return;
+                    }
+                    if (!skip) {
+                        endInterval();
+                    }
+                    intervalStart = pendingTime;
+                    intervalIndex++;
+                    local = (t - intervalStart) * CHARACTERISTIC_TIME;
+                    break;
+                case 'K':
+                    readKeyframe();
+                    break;
+                default:
+                    throw new IOException(fileName + " has an unknown record " + pending);
+            }
+            pending = 0;
+        }
+    }
+
+    /*
+     * Reads the next record ahead, or returns false at the end of the log
+     */
+    private boolean read() throws IOException {
+        try {
+            pending = in.readByte();
+            if (pending == 'C') {
+                pendingTime = in.readDouble();
+                pendingLeft = in.readInt();
+            } else if (pending == 'I' || pending == 'K') {
+                pendingTime = in.readDouble();
+            }
+            return true;
+        } catch (EOFException ex) {
+            pending = 0;
+            finished = true;
+            return false;
+        }
+    }
+
+    /*
+     * Loads the state of every particle at the start of the current interval
+     */
+    private void readKeyframe() throws IOException {
+        intervalStart = pendingTime;
+        intervalIndex = Math.round(pendingTime / interval);
+        for (int i = 0; i < size; i++) {
+            id[i] = in.readInt();
+            x[i] = in.readDouble();
+            v[i] = in.readDouble();
+            time[i] = 0.0;
+        }
+    }
+
+    /*
+     * Repeats a crossing exactly as the simulation handled it
+     */
+    private void cross(double t, int left) {
+        int right = left + 1;
+        update(left, t - time[left]);
+        update(right, t - time[right]);
+
+        //The particles pass through each other
+        double tempX = x[left];
+        if (tempX < x[right]) {
+            x[left] = x[right];
+            x[right] = tempX;
+        }
+        tempX = x[left];
+        x[left] = x[right];
+        x[right] = tempX;
+
+        double tempV = v[left];
+        v[left] = v[right];
+        v[right] = tempV;
+
+        int tempID = id[left];
+        id[left] = id[right];
+        id[right] = tempID;
+
+        time[left] = t;
+        time[right] = t;
+    }
+
+    /*
+     * Moves every particle to the end of the interval and resets their times
+     */
+    private void endInterval() {
+        for (int i = 0; i < size; i++) {
+            update(i, systemInterval - time[i]);
+            time[i] = 0.0;
+        }
+    }
+
+    private void update(int i, double t) {
+        x[i] = x[i] + v[i] * t + .5 * accel[i] * t * t;
+        v[i] = v[i] + accel[i] * t;
+    }
+
+    private void open() throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
+        intervalStart = 0.0;
+        intervalIndex = 0;
+        finished = false;
+        pending = 0;
+    }
+
+    /*
+     * Resamples a crossing log into position and velocity files at a new
+     * interval
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: EventLogReplay <log file> <interval> <output directory>");
+            return;
+        }
+        double step = Double.parseDouble(args[1]);
+        String dir = args[2].endsWith(File.separator) ? args[2] : args[2] + File.separator;
+        new File(dir).mkdirs();
+
+        try (EventLogReplay replay = new EventLogReplay(args[0]);
+                PrintWriter pos = new PrintWriter(new File(dir + "position.dat"));
+                PrintWriter vel = new PrintWriter(new File(dir + "velocity.dat"))) {
+            double[] xAry = new double[replay.size], vAry = new double[replay.size];
+            for (long k = 0;; k++) {
+                double t = k * step;
+                replay.frame(t, xAry, vAry);
+                if (replay.isFinished() && t > replay.getIntervalStart() + 1e-9 * replay.interval) {
+                    break;
+                }
+                for (int i = 0; i < replay.size; i++) {
+                    pos.print((float) xAry[i] + "\t");
+                    vel.print((float) vAry[i] + "\t");
+                }
+                pos.println();
+                vel.println();
+            }
+        }
+    }
+}
@@ -201,7 +201,7 @@ public class Partition {
                         K += Math.pow(Double.parseDouble(velocity[i]), 2);
                         E += Double.parseDouble(energy[i]);
                     }
-                    K /= 2000;
+                    K /= 2.0 * velocity.length;//each kinetic energy is v^2 / 2N
 
                     //Remember that Usys = 0.5 * sum(Uparticle)
                     double U = (E - K)/2;
@@ -0,0 +1,117 @@
+package dataAnalysis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the trajectories of a subset of the particles ({@code trajectories.bin})
+ * written by the simulation's trajectory writer.
+ *
+ * <p>The file starts with a 32 byte header: the magic number, the format
+ * version, the number of particles M, the number of frames F the file has room
+ * for, the characteristic interval between frames as a double, the number of
+ * frames written and 4 unused bytes. The M ID numbers follow as ints, padded
+ * to a multiple of 8 bytes, then the times of the F frames as doubles, then
+ * the position, velocity and energy of every frame for each particle in turn,
+ * as doubles. Everything is little-endian.</p>
+ *
+ * <p>Only the header, the ID numbers and the times are read up front. The
+ * trajectory of a particle is a single read of its frames.</p>
+ *
+ * @author Erik
+ */
+public class TrajectoryReader implements Closeable {
+
+    private static final int MAGIC = 0x4F445452;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    public final double interval;//characteristic interval between frames
+    public final int frameCount;//number of frames written
+    private final int[] ids;//increasing
+    private final double[] times;
+    private final int capacity;
+    private final long dataStart;
+    private final FileChannel file;
+
+    public TrajectoryReader(String fileName) throws IOException {
+        file = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = read(0, HEADER_SIZE);
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException(fileName + " is not a trajectory file");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(fileName + " has unsupported version " + version);
+            }
+            ids = new int[header.getInt()];
+            capacity = header.getInt();
+            interval = header.getDouble();
+            frameCount = Math.min(header.getInt(), capacity);
+
+            read(HEADER_SIZE, ids.length * 4).asIntBuffer().get(ids);
+            long timesStart = HEADER_SIZE + ((ids.length * 4L + 7) / 8) * 8;
+            times = new double[frameCount];
+            read(timesStart, frameCount * 8).asDoubleBuffer().get(times);
+            dataStart = timesStart + capacity * 8L;
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /*
+     * Reads length bytes of the file from the specified position.
+     */
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining() && file.read(buffer, position + buffer.position()) >= 0);
+        buffer.flip();
+        return buffer;
+    }
+
+    /*
+     * Returns the ID numbers of the recorded particles in increasing order.
+     */
+    public int[] getIDs() {
+        return ids.clone();
+    }
+
+    /*
+     * Returns the time of every frame.
+     */
+    public double[] getTimes() {
+        return times.clone();
+    }
+
+    /*
+     * Returns the trajectory of a particle as its positions, velocities and
+     * energies, each holding a value for every frame.
+     */
+    public double[][] trajectory(int id) throws IOException {
+        int k = Arrays.binarySearch(ids, id);
+        if (k < 0) {
+            throw new IllegalArgumentException("Particle " + id + " was not recorded");
+        }
+        ByteBuffer frames = read(dataStart + (long) k * capacity * 24, frameCount * 24);
+        double[][] trajectory = new double[3][frameCount];
+        for (int f = 0; f < frameCount; f++) {
+            trajectory[0][f] = frames.getDouble();
+            trajectory[1][f] = frames.getDouble();
+            trajectory[2][f] = frames.getDouble();
+        }
+        return trajectory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -3,6 +3,12 @@ package movie;
 import java.awt.Color;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Scanner;
 
 /*
@@ -127,6 +133,68 @@ public class ColorMarker {
         return colors;
     }
 
+    /*
+     * Configures the colors of the particles from the halo membership the
+     * simulation recorded in halo.bin (see simulation.listeners.HaloWriter),
+     * which only takes a bit per particle rather than parsing energies.dat.
+     * The threshold is selected by its index among those recorded.
+     */
+    public static Color[] haloMembership(String root, int threshold, int frame) throws IOException {
+        Color darkMagenta = Color.MAGENTA.darker();
+        long[] halo = haloBits(root, threshold, frame);
+        colors = new Color[haloHeader(root)[0]];
+        for (int i = 0; i < colors.length; i++) {
+            if ((halo[i >>> 6] >>> i & 1L) == 0) {//core or low halo
+                colors[i] = Color.LIGHT_GRAY;
+            } else {
+                colors[i] = darkMagenta;
+            }
+        }
+        return colors;
+    }
+
+    /*
+     * Returns the halo membership of a single frame of halo.bin as a bitset,
+     * in which bit id % 64 of long id / 64 is set for every particle in the
+     * halo of the threshold with the specified index. Only that bitset is read.
+     */
+    public static long[] haloBits(String root, int threshold, int frame) throws IOException {
+        int[] header = haloHeader(root);
+        if (threshold < 0 || threshold >= header[1]) {
+            throw new IOException(root + "halo.bin has no threshold " + threshold);
+        }
+        int words = (header[0] + 63) / 64;
+        long frameBytes = 8 + (long) header[1] * words * 8;
+        long start = 32 + 8L * header[1] + frame * frameBytes + 8 + (long) threshold * words * 8;
+        try (FileChannel in = FileChannel.open(Paths.get(root + "halo.bin"), StandardOpenOption.READ)) {
+            ByteBuffer bits = ByteBuffer.allocate(words * 8).order(ByteOrder.LITTLE_ENDIAN);
+            while (bits.hasRemaining() && in.read(bits, start + bits.position()) >= 0);
+            if (bits.hasRemaining()) {
+                throw new IOException(root + "halo.bin has no frame " + frame);
+            }
+            bits.flip();
+            long[] halo = new long[words];
+            bits.asLongBuffer().get(halo);
+            return halo;
+        }
+    }
+
+    /*
+     * Reads the number of particles and the number of thresholds from the
+     * header of halo.bin.
+     */
+    private static int[] haloHeader(String root) throws IOException {
+        try (FileChannel in = FileChannel.open(Paths.get(root + "halo.bin"), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && in.read(header) >= 0);
+            header.flip();
+            if (header.remaining() < 16 || header.getInt() != 0x4F44484C || header.getInt() != 1) {
+                throw new IOException(root + "halo.bin is not a halo membership file");
+            }
+            return new int[]{header.getInt(), header.getInt()};
+        }
+    }
+
     private static double radius(String s1, String s2) {
         return Math.sqrt(Math.pow(Double.parseDouble(s1), 2) + Math.pow(Double.parseDouble(s2), 2));
     }
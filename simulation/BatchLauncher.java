@@ -0,0 +1,605 @@
+package simulation;
+
+import static simulation.Mainframe.*;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Scanner;
+import java.util.SplittableRandom;
+import simulation.components.Checkpoint;
+import simulation.components.ENUM_EngineType;
+import simulation.components.ENUM_StorageType;
+import simulation.components.ENUM_SystemType;
+import simulation.components.ParticleSystem;
+import simulation.listeners.Checkpointer;
+import simulation.listeners.DataWriter;
+import simulation.listeners.CrossingWriter;
+import simulation.listeners.DiagnosticsWriter;
+import simulation.listeners.HaloWriter;
+import simulation.listeners.LagrangianWriter;
+import simulation.listeners.ParticleSelection;
+import simulation.listeners.PhaseSpaceWriter;
+import simulation.listeners.ENUM_Backpressure;
+import simulation.listeners.ENUM_OutputFormat;
+import simulation.listeners.TracerWriter;
+import simulation.listeners.TrajectoryWriter;
+
+/**
+ * The BatchLauncher class runs simulations from the command line without any
+ * graphical interface, for use on machines without a display.
+ *
+ * <p>Jobs are described by the following options:
+ * <br>{@code -n <particles> -length <characteristic times> -virial <ratio>
+ * [-interval <characteristic times>] [-type <system type>]}</br>
+ * <br>Options given on the command line describe a single job. A parameter
+ * file given by {@code -jobs <file>} holds one job per line in the same form,
+ * where lines starting with '#' are ignored and missing options fall back to
+ * those given on the command line. Every other option applies to all jobs
+ * alike and is rejected within the file. {@code -threads <k>} simulates up
+ * to k jobs at once through an {@code EnsembleRunner}; otherwise the jobs are
+ * simulated one after another.</p>
+ *
+ * <p>{@code -checkpoint <intervals>} saves a checkpoint of every system into
+ * {@code checkpoint.bin} within its data directory after the given number of
+ * intervals. {@code -resume <checkpoint file>} resumes an interrupted
+ * simulation from such a checkpoint, appending to its existing data files.</p>
+ *
+ * <p>{@code -pipeline <buffers>} writes the data files on a separate thread
+ * for every system, with up to the given number of frames waiting to be
+ * written. {@code -backpressure <BLOCK|DROP>} chooses whether the simulation
+ * waits or drops a frame when all of them are waiting. {@code -format
+ * <TEXT|FLOAT32|FLOAT64|EVENTS>} chooses between text and binary data files,
+ * or a log of every crossing with a keyframe every {@code -keyframes
+ * <intervals>} intervals.</p>
+ *
+ * <p>{@code -engine <EXACT|PARALLEL|LEAPFROG|LEAPFROG_ADAPTIVE>} chooses between
+ * handling every crossing exactly, handling every crossing exactly on a thread
+ * per domain of the system, and a faster leapfrog integrator with a time step
+ * of {@code -timestep <characteristic times>}, which only approximates the
+ * dynamics. The energy error of every system is saved in its
+ * {@code info.dat}. The leapfrog engines report no crossings, so they are
+ * rejected along with {@code -format EVENTS}.</p>
+ *
+ * <p>{@code -batchwindow <characteristic times>} resolves all crossings of
+ * neighboring particles within the window at once, which approximates the
+ * exact engine where many particles meet at the same time. It requires
+ * {@code -engine EXACT} and cannot be combined with {@code -format EVENTS}.</p>
+ *
+ * <p>{@code -storage DIRECT} keeps the particles of every system, their
+ * predicted collisions and the collision queue outside of the heap, for
+ * systems too large for it. Binary data files are then
+ * written straight from that memory unless the writer is pipelined.</p>
+ *
+ * <p>{@code -tracers <count>} adds massless tracer particles to every system,
+ * which are advanced in steps of {@code -tracerstep <characteristic times>}
+ * and written into {@code tracer_position} and {@code tracer_velocity}.
+ * Tracers are not part of a checkpoint, so resumed systems have none.</p>
+ *
+ * <p>{@code -relax <relaxation times>} stops every system once it relaxed
+ * that many times, as estimated from the crossings of its particles, rather
+ * than at the end of its length. See
+ * {@code ParticleSystem.getRelaxationTime}.</p>
+ *
+ * <p>{@code -halo <energy>[,<energy>...]} classifies the particles of every
+ * system as halo or core against each energy after every interval, and
+ * records the membership as bits in {@code halo.bin} along with every
+ * particle entering or leaving a halo in {@code halo_transitions.csv}.</p>
+ *
+ * <p>{@code -phasegrid <position bins>,<velocity bins>} bins the particles of
+ * every system into a grid over phase space after every interval, written
+ * compressed into {@code phase_space.bin} along with its coarse-grained
+ * entropy in {@code phase_space.csv}. The grid covers
+ * {@code -phaserange <position>,<velocity>} on either side of 0, or twice the
+ * initial extent of the system if no range is given.</p>
+ *
+ * <p>{@code -cadence <tolerance>[,<intervals>]} only writes a frame once the
+ * virial ratio or the half-mass radius changed by the tolerance since the
+ * last frame, or at most the given number of intervals after it, and lists
+ * the time of every frame in {@code times.dat}. See
+ * {@code OutputCadence}.</p>
+ *
+ * <p>{@code -trajectories <selection>} records the position, velocity and
+ * energy of a subset of the particles after every interval in
+ * {@code trajectories.bin}, with the trajectory of every particle stored in
+ * one piece, while {@code -framestride <intervals>} only writes a frame of
+ * every particle at multiples of the given number of intervals. A selection
+ * lists ID numbers and ranges of them, or is {@code random:<count>} or
+ * {@code corners:<percent>}. See {@code ParticleSelection}.</p>
+ *
+ * <p>{@code -seed <seed>} draws the initial configuration of a job from a
+ * fixed seed. Given on the command line along with a parameter file, it is the
+ * seed of the whole set of jobs, and every job without a seed of its own is
+ * given one derived from it by the job's position in the file.</p>
+ *
+ * <p>Every system records its energies, virial ratio, energy error, number
+ * of crossings and the wall time of every interval in
+ * {@code diagnostics.csv}, which is enough to monitor it without reading any
+ * of its frames. The radii enclosing 10, 25, 50, 75 and 90 percent of the
+ * mass around the center of mass, and the velocity dispersion of the shells
+ * between them, are recorded in {@code lagrangian.csv}. The distribution of
+ * the number of crossings of the particles and the relaxation time it implies
+ * are recorded in {@code crossings.csv}.</p>
+ *
+ * <p>Every job runs within the same virtual machine, so later jobs benefit
+ * from the code already compiled by earlier ones. AWT is never initialized.
+ * Each job writes its data into {@code data/BATCH/<time>/job<k>/}.</p>
+ *
+ * @author Erik Nguyen
+ */
+public class BatchLauncher {
+
+	private static final String USAGE
+			= "Usage: BatchLauncher -n <particles> -length <characteristic times> -virial <ratio>"
+			+ " [-interval <characteristic times>] [-type <system type>]"
+			+ " [-jobs <parameter file>] [-threads <count>] [-checkpoint <intervals>]"
+			+ " [-pipeline <buffers>] [-backpressure <BLOCK|DROP>] [-format <TEXT|FLOAT32|FLOAT64|EVENTS>]"
+			+ " [-keyframes <intervals>] [-seed <seed>]"
+			+ " [-engine <EXACT|PARALLEL|LEAPFROG|LEAPFROG_ADAPTIVE>] [-timestep <characteristic times>]"
+			+ " [-batchwindow <characteristic times>] [-storage <HEAP|DIRECT>]"
+			+ " [-tracers <count>] [-tracerstep <characteristic times>] [-relax <relaxation times>]"
+			+ " [-halo <energy>[,<energy>...]]"
+			+ " [-phasegrid <position bins>,<velocity bins>] [-phaserange <position>,<velocity>]"
+			+ " [-cadence <tolerance>[,<intervals>]] [-framestride <intervals>]"
+			+ " [-trajectories <id>[,<id>|<first>-<last>...]|random:<count>|corners:<percent>]"
+			+ " | -resume <checkpoint file>";
+
+	/**
+	 * @param args the command line arguments
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+
+		Options defaults;
+		List<SimulationJob> jobs = new ArrayList<SimulationJob>();
+		try {
+			defaults = new Options(null).parse(args);
+			defaults.engine.check();
+			defaults.output.check(defaults.engine);
+			if (defaults.resumeFile != null) {
+				Mainframe simulator = new Mainframe(false);
+				resume(simulator, new File(defaults.resumeFile), defaults);
+				simulator.exit(0);
+				return;
+			} else if (defaults.jobFile != null) {
+				readJobs(defaults, jobs);
+			} else {
+				jobs.add(defaults.toJob());
+			}
+		} catch (IllegalArgumentException | IOException ex) {
+			System.err.println(ex.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+			return;
+		}
+
+		Mainframe simulator = new Mainframe(false);
+		if (defaults.threads > 0) {
+			EnsembleRunner runner = new EnsembleRunner(simulator, defaults.threads);
+			runner.setOutput(defaults.output);
+			runner.setEngine(defaults.engine);
+			runner.run(jobs);
+		} else {
+			runSequentially(simulator, jobs, defaults);
+		}
+		simulator.exit(0);
+	}
+
+	/**
+	 * Reads every job from the parameter file.
+	 *
+	 * @param defaults the options given on the command line
+	 * @param jobs the list to add the jobs to
+	 * @throws FileNotFoundException if the parameter file does not exist
+	 */
+	private static void readJobs(Options defaults, List<SimulationJob> jobs) throws FileNotFoundException {
+		//Jobs without a seed of their own receive the seeds of SimulationJob.deriveSeeds
+		SplittableRandom master = defaults.seed == null ? null : new SplittableRandom(defaults.seed);
+		try (Scanner sc = new Scanner(new File(defaults.jobFile))) {
+			for (int line = 1; sc.hasNextLine(); line++) {
+				String text = sc.nextLine().trim();
+				if (text.isEmpty() || text.startsWith("#")) {
+					continue;
+				}
+				try {
+					Options o = new Options(defaults).parse(text.split("\\s+"));
+					if (master != null) {
+						long derived = master.split().nextLong();
+						if (o.seed == null) {
+							o.seed = derived;
+						}
+					}
+					jobs.add(o.toJob());
+				} catch (IllegalArgumentException ex) {
+					throw new IllegalArgumentException(defaults.jobFile + ", line " + line + ": " + ex.getMessage());
+				}
+			}
+		}
+		if (jobs.isEmpty()) {
+			throw new IllegalArgumentException("No jobs found in " + defaults.jobFile);
+		}
+	}
+
+	/**
+	 * Simulates every job one after another.
+	 *
+	 * @param simulator the simulator the systems belong to
+	 * @param jobs the systems to be simulated
+	 * @param options the options controlling checkpoints and output
+	 */
+	private static void runSequentially(Mainframe simulator, List<SimulationJob> jobs, Options options) {
+		String rootDir = "data/BATCH/" + new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss").format(new Date()) + "/";
+		for (int k = 0; k < jobs.size(); k++) {
+			logHeader();
+			dataLog("Job " + (k + 1) + " of " + jobs.size() + ": " + jobs.get(k));
+			logFooter();
+
+			ParticleSystem sys = options.engine.createSystem(jobs.get(k), simulator);
+			run(sys, options.output.createWriter(sys, rootDir + "job" + k + "/"), options.output);
+		}
+	}
+
+	/**
+	 * Resumes a simulation from a checkpoint.
+	 *
+	 * @param simulator the simulator the system belongs to
+	 * @param file the file holding the checkpoint
+	 * @param options the options controlling further checkpoints and output
+	 * @throws IOException if the checkpoint or the data files could not be
+	 * read
+	 */
+	private static void resume(Mainframe simulator, File file, Options options) throws IOException {
+		Checkpoint cp = Checkpoint.read(file);
+		if (cp.getWriterDirectory() == null) {
+			throw new IOException(file + " does not record any data files to resume");
+		}
+		logHeader();
+		dataLog("Resuming " + cp.getWriterDirectory() + " from time " + cp.getSimulationTime());
+		logFooter();
+
+		ParticleSystem sys = options.engine.resumeSystem(cp, simulator);
+		run(sys, options.output.resumeWriter(sys, cp), options.output);
+	}
+
+	/**
+	 * Simulates a single system, saving checkpoints along the way if
+	 * requested. The diagnostics, Lagrangian radii and crossings of the
+	 * system, and its tracers, halo membership, phase space grid and the
+	 * trajectories of a subset of its particles if any, are written next to
+	 * the files of the data writer.
+	 *
+	 * @param sys the system to be simulated
+	 * @param writer the data writer recording the system
+	 * @param output the options deciding which checkpoints and records are
+	 * kept
+	 */
+	static void run(ParticleSystem sys, DataWriter writer, OutputOptions output) {
+		int checkpoint = output.checkpoint;
+		double[] halo = output.halo;
+		int[] phaseBins = output.phaseBins;
+		double[] phaseRange = output.phaseRange;
+		ParticleSelection trajectories = output.trajectories;
+		//Written ahead of the checkpointer, so that every trajectory is complete at a checkpoint
+		TrajectoryWriter trajectoryWriter = null;
+		if (trajectories != null) {
+			try {
+				trajectoryWriter = new TrajectoryWriter(sys, writer.getRootDir(), trajectories.select(sys),
+						TrajectoryWriter.DEFAULT_BLOCK);
+				sys.addListener(trajectoryWriter);
+			} catch (IOException | IllegalArgumentException ex) {
+				errLog("Could not record the trajectories of " + trajectories + " in " + writer.getRootDir()
+						+ ": " + ex.getMessage());
+			}
+		}
+		Checkpointer checkpointer = null;
+		if (checkpoint > 0) {
+			checkpointer = new Checkpointer(sys, writer, new File(writer.getRootDir() + "checkpoint.bin"), checkpoint);
+			checkpointer.setTrajectoryWriter(trajectoryWriter);
+			sys.addListener(checkpointer);
+		}
+		DiagnosticsWriter diagnostics = null;
+		try {
+			diagnostics = new DiagnosticsWriter(sys, writer.getRootDir() + "diagnostics.csv");
+			sys.addListener(diagnostics);
+		} catch (IOException ex) {
+			errLog("Could not open " + writer.getRootDir() + "diagnostics.csv: " + ex.getMessage());
+		}
+		CrossingWriter crossings = null;
+		try {
+			crossings = new CrossingWriter(sys, writer.getRootDir() + "crossings.csv");
+			sys.addListener(crossings);
+		} catch (IOException ex) {
+			errLog("Could not open " + writer.getRootDir() + "crossings.csv: " + ex.getMessage());
+		}
+		HaloWriter haloWriter = null;
+		if (halo.length > 0) {
+			try {
+				haloWriter = new HaloWriter(sys, writer.getRootDir(), halo);
+				sys.addListener(haloWriter);
+			} catch (IOException ex) {
+				errLog("Could not open halo files in " + writer.getRootDir() + ": " + ex.getMessage());
+			}
+		}
+		PhaseSpaceWriter phaseSpace = null;
+		if (phaseBins.length > 0) {
+			try {
+				phaseSpace = new PhaseSpaceWriter(sys, writer.getRootDir(), phaseBins[0], phaseBins[1],
+						phaseRange[0], phaseRange[1]);
+				sys.addListener(phaseSpace);
+			} catch (IOException ex) {
+				errLog("Could not open phase space files in " + writer.getRootDir() + ": " + ex.getMessage());
+			}
+		}
+		LagrangianWriter lagrangian = null;
+		try {
+			lagrangian = new LagrangianWriter(sys, writer.getRootDir() + "lagrangian.csv");
+			sys.addListener(lagrangian);
+		} catch (IOException ex) {
+			errLog("Could not open " + writer.getRootDir() + "lagrangian.csv: " + ex.getMessage());
+		}
+		TracerWriter tracerWriter = null;
+		if (sys.getTracers() != null) {
+			try {
+				tracerWriter = new TracerWriter(sys, writer.getRootDir(), writer.getFormat());
+				sys.addListener(tracerWriter);
+			} catch (IOException ex) {
+				errLog("Could not open tracer files in " + writer.getRootDir() + ": " + ex.getMessage());
+			}
+		}
+
+		logHeader();
+		dataLog("Starting Simulation...");
+		sys.simulate();
+		logFooter();
+
+		if (checkpointer != null) {
+			checkpointer.close();
+		}
+		if (tracerWriter != null) {
+			tracerWriter.close();
+		}
+		if (diagnostics != null) {
+			diagnostics.close();
+		}
+		if (lagrangian != null) {
+			lagrangian.close();
+		}
+		if (crossings != null) {
+			crossings.close();
+		}
+		if (haloWriter != null) {
+			haloWriter.close();
+		}
+		if (phaseSpace != null) {
+			phaseSpace.close();
+		}
+		if (trajectoryWriter != null) {
+			trajectoryWriter.close();
+		}
+		writer.close(sys);
+	}
+
+	/**
+	 * The options that describe a job, along with the options that control
+	 * the launcher itself.
+	 */
+	private static class Options {
+
+		/**
+		 * The options a line of a parameter file may set. All others apply to
+		 * every job alike and are only read from the command line.
+		 */
+		private static final List<String> JOB_OPTIONS
+				= Arrays.asList("-n", "-length", "-interval", "-virial", "-type", "-seed");
+
+		/**
+		 * Whether these options describe a line of a parameter file.
+		 */
+		private final boolean job;
+		Integer size, length;
+		Long seed;
+		Double interval, virial;
+		ENUM_SystemType type;
+		String jobFile, resumeFile;
+		int threads;
+		final EngineOptions engine = new EngineOptions();
+		final OutputOptions output = new OutputOptions();
+
+		/**
+		 * Creates a set of options that falls back to another.
+		 *
+		 * @param defaults the options to fall back to, or null
+		 */
+		Options(Options defaults) {
+			job = defaults != null;
+			if (job) {
+				size = defaults.size;
+				length = defaults.length;
+				interval = defaults.interval;
+				virial = defaults.virial;
+				type = defaults.type;
+			}
+		}
+
+		/**
+		 * Reads the options from a set of arguments.
+		 *
+		 * @param args the arguments
+		 * @return these options
+		 */
+		Options parse(String[] args) {
+			for (int i = 0; i < args.length; i++) {
+				String flag = args[i];
+				if (i + 1 >= args.length) {
+					throw new IllegalArgumentException("Missing value for " + flag);
+				}
+				String value = args[++i];
+				try {
+					switch (flag) {
+						case "-n":
+							size = Integer.parseInt(value);
+							break;
+						case "-length":
+							length = Integer.parseInt(value);
+							break;
+						case "-interval":
+							interval = Double.parseDouble(value);
+							break;
+						case "-virial":
+							virial = Double.parseDouble(value);
+							break;
+						case "-type":
+							type = ENUM_SystemType.valueOf(value);
+							break;
+						case "-jobs":
+							jobFile = value;
+							break;
+						case "-threads":
+							threads = Integer.parseInt(value);
+							break;
+						case "-checkpoint":
+							output.checkpoint = Integer.parseInt(value);
+							break;
+						case "-resume":
+							resumeFile = value;
+							break;
+						case "-pipeline":
+							output.pipeline = Integer.parseInt(value);
+							break;
+						case "-backpressure":
+							output.backpressure = ENUM_Backpressure.valueOf(value);
+							break;
+						case "-format":
+							output.format = ENUM_OutputFormat.valueOf(value);
+							break;
+						case "-seed":
+							seed = Long.parseLong(value);
+							break;
+						case "-keyframes":
+							output.keyframes = Integer.parseInt(value);
+							break;
+						case "-engine":
+							engine.engine = ENUM_EngineType.valueOf(value);
+							break;
+						case "-timestep":
+							engine.timeStep = Double.parseDouble(value);
+							if (!(engine.timeStep > 0)) {
+								throw new IllegalArgumentException("The time step must be positive");
+							}
+							break;
+						case "-storage":
+							engine.storage = ENUM_StorageType.valueOf(value);
+							break;
+						case "-batchwindow":
+							engine.batchWindow = Double.parseDouble(value);
+							if (!(engine.batchWindow >= 0)) {
+								throw new IllegalArgumentException("The batch window must not be negative");
+							}
+							break;
+						case "-tracers":
+							engine.tracers = Integer.parseInt(value);
+							if (engine.tracers < 0) {
+								throw new IllegalArgumentException("The number of tracers must not be negative");
+							}
+							break;
+						case "-tracerstep":
+							engine.tracerStep = Double.parseDouble(value);
+							if (!(engine.tracerStep > 0)) {
+								throw new IllegalArgumentException("The tracer step must be positive");
+							}
+							break;
+						case "-relax":
+							engine.relaxations = Double.parseDouble(value);
+							if (!(engine.relaxations >= 0)) {
+								throw new IllegalArgumentException("The number of relaxation times must not be negative");
+							}
+							break;
+						case "-halo":
+							String[] energies = value.split(",");
+							double[] halo = new double[energies.length];
+							for (int k = 0; k < halo.length; k++) {
+								halo[k] = Double.parseDouble(energies[k].trim());
+								if (k > 0 && !(halo[k] > halo[k - 1])) {
+									throw new IllegalArgumentException("Halo energies must be increasing");
+								}
+							}
+							output.halo = halo;
+							break;
+						case "-phasegrid":
+							String[] bins = value.split(",");
+							if (bins.length != 2) {
+								throw new IllegalArgumentException("The phase space grid needs two numbers of bins");
+							}
+							output.phaseBins = new int[]{Integer.parseInt(bins[0].trim()), Integer.parseInt(bins[1].trim())};
+							if (output.phaseBins[0] <= 0 || output.phaseBins[1] <= 0) {
+								throw new IllegalArgumentException("The number of phase space bins must be positive");
+							}
+							break;
+						case "-framestride":
+							output.frameStride = Integer.parseInt(value);
+							if (output.frameStride < 1) {
+								throw new IllegalArgumentException("The frame stride must be at least one interval");
+							}
+							break;
+						case "-trajectories":
+							output.trajectories = ParticleSelection.parse(value);
+							break;
+						case "-cadence":
+							String[] cadenceValues = value.split(",");
+							output.cadence = Double.parseDouble(cadenceValues[0].trim());
+							if (!(output.cadence > 0)) {
+								throw new IllegalArgumentException("The cadence tolerance must be positive");
+							}
+							if (cadenceValues.length > 1) {
+								output.cadenceStride = Integer.parseInt(cadenceValues[1].trim());
+								if (output.cadenceStride < 1) {
+									throw new IllegalArgumentException("The stride between frames must be at least one interval");
+								}
+							}
+							break;
+						case "-phaserange":
+							String[] range = value.split(",");
+							if (range.length != 2) {
+								throw new IllegalArgumentException("The phase space range needs a position and a velocity");
+							}
+							output.phaseRange = new double[]{Double.parseDouble(range[0].trim()), Double.parseDouble(range[1].trim())};
+							if (!(output.phaseRange[0] >= 0 && output.phaseRange[1] >= 0)) {
+								throw new IllegalArgumentException("The phase space range must not be negative");
+							}
+							break;
+						default:
+							throw new IllegalArgumentException("Unknown option " + flag);
+					}
+					if (job && !JOB_OPTIONS.contains(flag)) {
+						throw new IllegalArgumentException(flag + " applies to every job and can only be given on the command line");
+					}
+				} catch (NumberFormatException ex) {
+					throw new IllegalArgumentException("Invalid value for " + flag + ": " + value);
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * Creates the job described by these options.
+		 *
+		 * @return the job
+		 */
+		SimulationJob toJob() {
+			if (size == null || length == null || virial == null) {
+				throw new IllegalArgumentException("A job needs -n, -length and -virial");
+			}
+			if (size < 2) {
+				throw new IllegalArgumentException("A system needs at least 2 particles");
+			}
+			ENUM_SystemType t = type == null ? ENUM_SystemType.WATERBAG_RECTANGULAR : type;
+			double i = interval == null ? 0.05 : interval;
+			return seed == null ? new SimulationJob(size, length, i, virial, t)
+					: new SimulationJob(size, length, i, virial, t, seed);
+		}
+	}
+}
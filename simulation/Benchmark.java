@@ -0,0 +1,329 @@
+package simulation;
+
+import static simulation.Mainframe.*;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import simulation.components.ENUM_EngineType;
+import simulation.components.ENUM_SchedulerType;
+import simulation.components.ENUM_StorageType;
+import simulation.components.ENUM_SystemType;
+import simulation.components.ParticleSystem;
+import simulation.listeners.EVENT_Updated;
+import simulation.listeners.LISTENER_Updated;
+
+/**
+ * The Benchmark class measures the speed of the simulation engine itself,
+ * without writing any data, so that changes to the engine can be compared.
+ *
+ * <p>Every combination of the following options is measured:
+ * <br>{@code -n <particles,...> -virial <ratio,...> -interval <characteristic
+ * times,...>}</br>
+ * <br>Each system is drawn from a fixed seed ({@code -seed <seed>}, increased
+ * by one for every repetition), simulated for {@code -warmup <intervals>}
+ * intervals so the engine is compiled, and then measured over
+ * {@code -intervals <intervals>}. This is repeated {@code -repeat <count>}
+ * times. {@code -scheduler <type>} chooses the way collisions are found, and
+ * {@code -csv <file>} additionally saves every measurement.</br>
+ * <br>{@code -engine <type,...>} measures each of the given engines, where the
+ * leapfrog engines use a time step of {@code -timestep <characteristic
+ * time>}, and {@code -storage <type>} chooses where the particles are
+ * kept.</br></p>
+ *
+ * <p>For each measurement the number of crossings per second of wall time,
+ * the time taken by each interval, the number of bytes allocated per
+ * interval by the simulation thread, and the energy error at the end are
+ * reported. Allocations made by the threads of parallel energy calculations
+ * are not included. The leapfrog engines only count the crossings they
+ * detect between steps.</p>
+ *
+ * @author Erik Nguyen
+ */
+public class Benchmark {
+
+	private static final String USAGE
+			= "Usage: Benchmark [-n <particles,...>] [-virial <ratio,...>] [-interval <characteristic times,...>]"
+			+ " [-warmup <intervals>] [-intervals <intervals>] [-repeat <count>] [-seed <seed>]"
+			+ " [-scheduler <type>] [-csv <file>] [-engine <type,...>] [-timestep <characteristic time>]"
+			+ " [-storage <HEAP|DIRECT>]";
+
+	/**
+	 * @param args the command line arguments
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+
+		int[] sizes = {1000, 10000, 100000};
+		double[] virials = {0.5};
+		double[] intervals = {0.05};
+		int warmup = 20, measured = 20, repeat = 3;
+		long seed = 1;
+		ENUM_SchedulerType scheduler = ENUM_SchedulerType.TOURNAMENT_TREE;
+		ENUM_EngineType[] engines = {ENUM_EngineType.EXACT};
+		double timeStep = 0.001;
+		ENUM_StorageType storage = ENUM_StorageType.HEAP;
+		String csv = null;
+		try {
+			for (int i = 0; i < args.length; i += 2) {
+				if (i + 1 >= args.length) {
+					throw new IllegalArgumentException("Missing value for " + args[i]);
+				}
+				String value = args[i + 1];
+				switch (args[i]) {
+					case "-n":
+						String[] s = value.split(",");
+						sizes = new int[s.length];
+						for (int k = 0; k < s.length; k++) {
+							sizes[k] = (int) Double.parseDouble(s[k]);//allows 1e6
+						}
+						break;
+					case "-virial":
+						virials = parseList(value);
+						break;
+					case "-interval":
+						intervals = parseList(value);
+						break;
+					case "-warmup":
+						warmup = Integer.parseInt(value);
+						break;
+					case "-intervals":
+						measured = Integer.parseInt(value);
+						break;
+					case "-repeat":
+						repeat = Integer.parseInt(value);
+						break;
+					case "-seed":
+						seed = Long.parseLong(value);
+						break;
+					case "-scheduler":
+						scheduler = ENUM_SchedulerType.valueOf(value);
+						break;
+					case "-csv":
+						csv = value;
+						break;
+					case "-engine":
+						String[] e = value.split(",");
+						engines = new ENUM_EngineType[e.length];
+						for (int k = 0; k < e.length; k++) {
+							engines[k] = ENUM_EngineType.valueOf(e[k]);
+						}
+						break;
+					case "-timestep":
+						timeStep = Double.parseDouble(value);
+						break;
+					case "-storage":
+						storage = ENUM_StorageType.valueOf(value);
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+			if (measured < 1) {
+				throw new IllegalArgumentException("At least 1 interval must be measured");
+			}
+		} catch (IllegalArgumentException ex) {
+			System.err.println(ex.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+			return;
+		}
+
+		Mainframe simulator = new Mainframe(false);
+		PrintWriter out = null;
+		try {
+			if (csv != null) {
+				out = new PrintWriter(new File(csv));
+				out.println("engine,n,virial,interval,seed,crossings,seconds,crossings_per_second,"
+						+ "mean_ms_per_interval,median_ms_per_interval,max_ms_per_interval,bytes_per_interval,energy_error");
+			}
+		} catch (FileNotFoundException ex) {
+			errLog("Could not create " + csv + ": " + ex.getMessage());
+		}
+
+		for (ENUM_EngineType engine : engines) {
+			for (int n : sizes) {
+				for (double virial : virials) {
+					for (double interval : intervals) {
+						double[] rates = new double[repeat];
+						for (int r = 0; r < repeat; r++) {
+							Result result = measure(simulator, n, virial, interval, seed + r, scheduler,
+									engine, timeStep, storage, warmup, measured);
+							rates[r] = result.crossingsPerSecond();
+							logHeader();
+							dataLog(result);
+							logFooter();
+							if (out != null) {
+								out.println(result.toCSV());
+								out.flush();
+							}
+						}
+						double mean = 0, var = 0;
+						for (double rate : rates) {
+							mean += rate / repeat;
+						}
+						for (double rate : rates) {
+							var += (rate - mean) * (rate - mean) / Math.max(1, repeat - 1);
+						}
+						logHeader();
+						dataLog(String.format("%s N=%d virial=%s interval=%s: %.4g +- %.2g crossings/s over %d runs",
+								engine, n, virial, interval, mean, Math.sqrt(var), repeat));
+						logFooter();
+					}
+				}
+			}
+		}
+
+		if (out != null) {
+			out.close();
+		}
+		simulator.exit(0);
+	}
+
+	private static double[] parseList(String value) {
+		String[] s = value.split(",");
+		double[] list = new double[s.length];
+		for (int k = 0; k < s.length; k++) {
+			list[k] = Double.parseDouble(s[k]);
+		}
+		return list;
+	}
+
+	/**
+	 * Simulates a single system and measures it.
+	 *
+	 * @param simulator the simulator the system belongs to
+	 * @param n the number of particles
+	 * @param virial the virial ratio of the system
+	 * @param interval the interval between updates in characteristic time
+	 * units
+	 * @param seed the seed of the initial configuration
+	 * @param scheduler the way collisions are found
+	 * @param engine the way the system is evolved through time
+	 * @param timeStep the time step of the leapfrog engines in characteristic
+	 * time units
+	 * @param storage where the particles are kept
+	 * @param warmup the number of intervals before the measurement
+	 * @param measured the number of intervals measured
+	 * @return the measurement
+	 */
+	static Result measure(Mainframe simulator, int n, double virial, double interval, long seed,
+			ENUM_SchedulerType scheduler, ENUM_EngineType engine, double timeStep, ENUM_StorageType storage,
+			int warmup, int measured) {
+		int length = (int) Math.ceil((warmup + measured + 1) * interval);
+		ParticleSystem sys = new ParticleSystem(n, length, interval, virial,
+				ENUM_SystemType.WATERBAG_RECTANGULAR, seed, storage, simulator);
+		sys.setScheduler(scheduler);
+		sys.setEngine(engine);
+		sys.setTimeStep(timeStep);
+		Probe probe = new Probe(sys, warmup, measured);
+		sys.addListener(probe);
+		sys.simulate();
+		return new Result(sys, n, virial, interval, seed, probe);
+	}
+
+	/**
+	 * Records the wall time, crossings and allocations at every update during
+	 * the measured intervals, and stops the simulation once they are over.
+	 */
+	private static class Probe implements LISTENER_Updated {
+
+		private final ParticleSystem system;
+		private final int warmup, measured;
+		private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		private final long[] nanos, crossings, allocated;
+		private int updates = 0;
+
+		Probe(ParticleSystem sys, int warmup, int measured) {
+			system = sys;
+			this.warmup = warmup;
+			this.measured = measured;
+			nanos = new long[measured + 1];
+			crossings = new long[measured + 1];
+			allocated = new long[measured + 1];
+		}
+
+		@Override
+		public void receiveUpdate(EVENT_Updated evt) {
+			int k = updates++ - warmup;//the first update is the initial configuration
+			if (k < 0 || k > measured) {
+				return;
+			}
+			nanos[k] = System.nanoTime();
+			crossings[k] = system.getCrossingCount();
+			allocated[k] = allocatedBytes();
+			if (k == measured) {
+				system.stop();
+			}
+		}
+
+		/**
+		 * Returns the number of bytes allocated by the current thread so far,
+		 * or -1 if the virtual machine does not keep track of it.
+		 */
+		private long allocatedBytes() {
+			if (threads instanceof com.sun.management.ThreadMXBean) {
+				return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * The measurement of a single system.
+	 */
+	static class Result {
+
+		final ENUM_EngineType engine;
+		final int n;
+		final double virial, interval;
+		final long seed;
+		final long crossings;
+		final double seconds, meanMs, medianMs, maxMs;
+		final double bytesPerInterval;
+		final double energyError;
+
+		Result(ParticleSystem sys, int n, double virial, double interval, long seed, Probe probe) {
+			engine = sys.getEngine();
+			energyError = sys.getEnergyError();
+			this.n = n;
+			this.virial = virial;
+			this.interval = interval;
+			this.seed = seed;
+			int m = probe.measured;
+			crossings = probe.crossings[m] - probe.crossings[0];
+			seconds = (probe.nanos[m] - probe.nanos[0]) / 1e9;
+
+			double[] ms = new double[m];
+			for (int k = 0; k < m; k++) {
+				ms[k] = (probe.nanos[k + 1] - probe.nanos[k]) / 1e6;
+			}
+			Arrays.sort(ms);
+			meanMs = seconds * 1e3 / m;
+			medianMs = m % 2 == 1 ? ms[m / 2] : (ms[m / 2 - 1] + ms[m / 2]) / 2;
+			maxMs = ms[m - 1];
+			bytesPerInterval = probe.allocated[0] < 0 ? -1
+					: (probe.allocated[m] - probe.allocated[0]) / (double) m;
+		}
+
+		double crossingsPerSecond() {
+			return crossings / seconds;
+		}
+
+		String toCSV() {
+			return engine + "," + n + "," + virial + "," + interval + "," + seed + "," + crossings + "," + seconds + ","
+					+ crossingsPerSecond() + "," + meanMs + "," + medianMs + "," + maxMs + "," + bytesPerInterval + "," + energyError;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s N=%d virial=%s interval=%s seed=%d: %d crossings in %.3f s (%.4g/s),"
+					+ " %.3f ms per interval (median %.3f, max %.3f), %.0f bytes allocated per interval,"
+					+ " energy error %.3g",
+					engine, n, virial, interval, seed, crossings, seconds, crossingsPerSecond(),
+					meanMs, medianMs, maxMs, bytesPerInterval, energyError);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package simulation;
+
+import simulation.components.Checkpoint;
+import simulation.components.ENUM_EngineType;
+import simulation.components.ENUM_StorageType;
+import simulation.components.ParticleSystem;
+
+/**
+ * The EngineOptions class collects everything that decides how a system is
+ * simulated: the engine, where its particles are kept, its tracers and when
+ * it stops on its own.
+ *
+ * <p>A single set of options is built before any system is created, e.g. by
+ * the argument parser of {@code BatchLauncher}, and then handed to whatever
+ * simulates the systems, which creates or resumes every system through it so
+ * that each one is set up alike. See {@code OutputOptions} for what the
+ * systems write.</p>
+ *
+ * @author Erik Nguyen
+ */
+public class EngineOptions {
+
+	ENUM_EngineType engine = ENUM_EngineType.EXACT;
+	double timeStep = 0.001;
+	double batchWindow = 0.0;
+	ENUM_StorageType storage = ENUM_StorageType.HEAP;
+	int tracers = 0;
+	double tracerStep = 0.001;
+	double relaxations = 0;
+
+	/**
+	 * Sets the way in which every system is evolved through time.
+	 *
+	 * @param engine the type of engine to use
+	 * @param timeStep the time step of the leapfrog engines in characteristic
+	 * time units
+	 */
+	public void setEngine(ENUM_EngineType engine, double timeStep) {
+		this.engine = engine;
+		this.timeStep = timeStep;
+	}
+
+	/**
+	 * Sets the window within which the crossings of every system are resolved
+	 * together, which only the exact engine does. See
+	 * {@code ParticleSystem.setBatchWindow}.
+	 *
+	 * @param window the window in characteristic time units, or 0 to handle
+	 * every crossing on its own
+	 */
+	public void setBatchWindow(double window) {
+		batchWindow = window;
+	}
+
+	/**
+	 * Sets where the particles of every system are kept.
+	 *
+	 * @param storage the type of storage to use
+	 */
+	public void setStorage(ENUM_StorageType storage) {
+		this.storage = storage;
+	}
+
+	/**
+	 * Sets the number of massless tracers placed in every system. See
+	 * {@code ParticleSystem.setTracers}.
+	 *
+	 * @param count the number of tracers, or 0 for none
+	 * @param step the tracer step in characteristic time units
+	 */
+	public void setTracers(int count, double step) {
+		tracers = count;
+		tracerStep = step;
+	}
+
+	/**
+	 * Sets the number of relaxation times after which every system stops on
+	 * its own. See {@code ParticleSystem.setRelaxationLimit}.
+	 *
+	 * @param relaxations the number of relaxation times, or 0 to run every
+	 * system to its full length
+	 */
+	public void setRelaxationLimit(double relaxations) {
+		this.relaxations = relaxations;
+	}
+
+	/**
+	 * Checks that the options can be combined. Only the exact engine resolves
+	 * crossings in batches, so a batch window is rejected with any other.
+	 *
+	 * @throws IllegalArgumentException if a batch window is set for an engine
+	 * other than {@code EXACT}
+	 */
+	void check() {
+		if (batchWindow > 0 && engine != ENUM_EngineType.EXACT) {
+			throw new IllegalArgumentException("Only the EXACT engine resolves crossings in batches, not the "
+					+ engine + " engine");
+		}
+	}
+
+	/**
+	 * Creates the system described by a job.
+	 *
+	 * @param job the job to be simulated
+	 * @param simulator the simulator the system belongs to
+	 * @return the new system
+	 */
+	ParticleSystem createSystem(SimulationJob job, Mainframe simulator) {
+		return configure(job.createSystem(simulator, storage));
+	}
+
+	/**
+	 * Resumes a system from a checkpoint. Tracers are not part of a
+	 * checkpoint, so the tracers of the resumed system are drawn anew at the
+	 * time it is resumed from.
+	 *
+	 * @param cp the checkpoint to resume from
+	 * @param simulator the simulator the system belongs to
+	 * @return the resumed system
+	 */
+	ParticleSystem resumeSystem(Checkpoint cp, Mainframe simulator) {
+		return configure(new ParticleSystem(cp, storage, simulator));
+	}
+
+	private ParticleSystem configure(ParticleSystem sys) {
+		sys.setEngine(engine);
+		sys.setTimeStep(timeStep);
+		sys.setBatchWindow(batchWindow);
+		sys.setTracers(tracers);
+		sys.setTracerStep(tracerStep);
+		sys.setRelaxationLimit(relaxations);
+		return sys;
+	}
+}
@@ -0,0 +1,240 @@
+package simulation;
+
+import static simulation.Mainframe.*;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import simulation.components.ParticleSystem;
+import simulation.listeners.DataWriter;
+import simulation.listeners.EVENT_Updated;
+import simulation.listeners.LISTENER_Updated;
+
+/**
+ * The EnsembleRunner class simulates many independent particle systems at once
+ * so that their results can be averaged, e.g. by
+ * {@code AverageDensityFunctions}.
+ *
+ * <p>Every system is simulated as its own task within a fork-join pool whose
+ * size is limited by the requested concurrency. The most expensive systems
+ * are started first, and idle threads steal work from busy ones. This
+ * includes the parallel energy calculations of very large systems, which run
+ * within the same pool, so systems of different sizes keep every thread
+ * busy.</p>
+ *
+ * <p>Each system writes its data into its own directory,
+ * {@code data/ENSEMBLE/<time>/run<k>/}, where k is the index of its job.</p>
+ *
+ * @author Erik Nguyen
+ */
+public class EnsembleRunner {
+
+	private static final SimpleDateFormat DATEFORMAT = new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss");
+	private final Mainframe simulator;
+	/**
+	 * The maximum number of systems simulated at once.
+	 */
+	public final int concurrency;
+	private final String rootDir;
+	private Progress[] progress = new Progress[0];
+	private OutputOptions output = new OutputOptions();
+	private EngineOptions engine = new EngineOptions();
+	private Long seed;
+
+	/**
+	 * Creates a runner that simulates as many systems at once as there are
+	 * available processors.
+	 *
+	 * @param simulator the simulator the systems belong to
+	 */
+	public EnsembleRunner(Mainframe simulator) {
+		this(simulator, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a runner that simulates up to the specified number of systems at
+	 * once.
+	 *
+	 * @param simulator the simulator the systems belong to
+	 * @param concurrency the maximum number of systems simulated at once
+	 */
+	public EnsembleRunner(Mainframe simulator, int concurrency) {
+		this.simulator = simulator;
+		this.concurrency = Math.max(1, concurrency);
+		synchronized (DATEFORMAT) {
+			rootDir = "data/ENSEMBLE/" + DATEFORMAT.format(new Date()) + "/";
+		}
+	}
+
+	/**
+	 * Sets what every system writes, and how. See {@code OutputOptions}.
+	 *
+	 * @param output the options deciding the data files, checkpoints and
+	 * records of every system
+	 */
+	public void setOutput(OutputOptions output) {
+		this.output = output;
+	}
+
+	/**
+	 * Sets how every system is simulated. See {@code EngineOptions}.
+	 *
+	 * @param engine the options deciding the engine, storage, tracers and
+	 * relaxation limit of every system
+	 */
+	public void setEngine(EngineOptions engine) {
+		this.engine = engine;
+	}
+
+	/**
+	 * Sets the seed of the whole ensemble. Every job is then given its own seed
+	 * derived from it by its index, replacing the seed it was created with,
+	 * so the same ensemble is simulated no matter how the jobs are scheduled.
+	 *
+	 * @param seed the seed of the ensemble
+	 * @see SimulationJob#deriveSeeds
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Simulates every job and waits until all of them have finished.
+	 *
+	 * @param jobs the systems to be simulated
+	 * @throws IllegalArgumentException if the engine options cannot be
+	 * combined, or the output cannot be recorded from the engine, see
+	 * {@code EngineOptions} and {@code OutputOptions}
+	 */
+	public void run(List<SimulationJob> jobs) {
+		engine.check();
+		output.check(engine);
+		logHeader();
+		dataLog("Starting ensemble of " + jobs.size() + " systems on "
+				+ concurrency + " threads...");
+		logFooter();
+
+		progress = new Progress[jobs.size()];
+		final List<RunTask> tasks = new ArrayList<RunTask>();
+		long[] seeds = seed == null ? null : SimulationJob.deriveSeeds(seed, jobs.size());
+		for (int k = 0; k < jobs.size(); k++) {
+			SimulationJob job = seeds == null ? jobs.get(k) : jobs.get(k).withSeed(seeds[k]);
+			progress[k] = new Progress(k, job.length);
+			tasks.add(new RunTask(k, job));
+		}
+
+		//Start the most expensive systems first so that the cheap ones fill in the gaps
+		Collections.sort(tasks, new Comparator<RunTask>() {
+			@Override
+			public int compare(RunTask t1, RunTask t2) {
+				return Double.compare(t2.job.cost(), t1.job.cost());
+			}
+		});
+
+		ForkJoinPool pool = new ForkJoinPool(concurrency);
+		try {
+			pool.invoke(new RecursiveAction() {
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		} finally {
+			pool.shutdown();
+		}
+
+		logHeader();
+		dataLog("Ensemble completed.");
+		logFooter();
+	}
+
+	/**
+	 * Returns the number of systems in the last ensemble.
+	 *
+	 * @return the number of systems
+	 */
+	public int getRunCount() {
+		return progress.length;
+	}
+
+	/**
+	 * Returns how far along a system is in its simulation.
+	 *
+	 * @param run the index of the system's job
+	 * @return the fraction of the simulation completed, or -1 if the system
+	 * failed
+	 */
+	public double getProgress(int run) {
+		return progress[run].fraction;
+	}
+
+	/**
+	 * Returns the directory that a system writes its data into.
+	 *
+	 * @param run the index of the system's job
+	 * @return the data directory of the system
+	 */
+	public String getRunDirectory(int run) {
+		return rootDir + "run" + run + "/";
+	}
+
+	/**
+	 * The task that creates and simulates a single system.
+	 */
+	private class RunTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final int index;
+		private final SimulationJob job;
+
+		RunTask(int index, SimulationJob job) {
+			this.index = index;
+			this.job = job;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				ParticleSystem sys = engine.createSystem(job, simulator);
+				DataWriter writer = output.createWriter(sys, getRunDirectory(index));
+				sys.addListener(progress[index]);
+				BatchLauncher.run(sys, writer, output);
+				progress[index].fraction = 1.0;//the system may have stopped early once relaxed
+			} catch (RuntimeException ex) {
+				progress[index].fraction = -1;
+				errLog("Run " + index + " (" + job + ") failed: " + ex);
+			}
+		}
+	}
+
+	/**
+	 * Keeps track of how far along a single system is, and logs every tenth of
+	 * the way.
+	 */
+	private static class Progress implements LISTENER_Updated {
+
+		private final int index;
+		private final double length;
+		private volatile double fraction;
+		private int lastLogged = -1;
+
+		Progress(int index, double length) {
+			this.index = index;
+			this.length = length;
+		}
+
+		@Override
+		public void receiveUpdate(EVENT_Updated evt) {
+			fraction = Math.min(1.0, evt.getTime() / length);
+			int tenth = (int) (fraction * 10);
+			if (tenth > lastLogged) {
+				lastLogged = tenth;
+				dataLog("Run " + index + ": " + (tenth * 10) + "% at " + getTime());
+			}
+		}
+	}
+}
@@ -8,6 +8,7 @@ import java.io.PrintStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import simulation.frames.FRAME_Setup;
 
 /**
@@ -35,8 +36,17 @@ public class Mainframe {
 	}
 	
 	public Mainframe(){
+		this(true);
+	}
+	
+	/**
+	 * Creates the simulator, optionally without showing the setup frame.
+	 * @param interactive true if the setup frame should be shown
+	 */
+	public Mainframe(boolean interactive){
 		setupDirectoriesAndStreams();
-		new FRAME_Setup(this).setVisible(true);
+		if(interactive)
+			new FRAME_Setup(this).setVisible(true);
 	}
 	
 	/**
@@ -61,6 +71,19 @@ public class Mainframe {
 		writer.close(system);
 	}
 
+	/**
+	 * Simulates many independent systems at once.
+	 * @param jobs the systems to be simulated
+	 * @param concurrency the maximum number of systems simulated at once
+	 * @return the runner that simulated the systems
+	 * @see EnsembleRunner
+	 */
+	public EnsembleRunner simulateEnsemble(List<SimulationJob> jobs, int concurrency){
+		EnsembleRunner runner = new EnsembleRunner(this, concurrency);
+		runner.run(jobs);
+		return runner;
+	}
+
 	/**
 	 * Initializes the data and error output streams and creates any folders
 	 * missing from the basic directory archive.
@@ -174,7 +197,7 @@ public class Mainframe {
 	 * Returns the time formatted by hour:minute:second.
 	 * @return time as a {@code String}
 	 */
-	public static String getTime(){
+	public static synchronized String getTime(){
 		return TIMEFORMAT.format(new Date());
 	}
 
@@ -0,0 +1,202 @@
+package simulation;
+
+import java.io.IOException;
+import simulation.components.Checkpoint;
+import simulation.components.ENUM_EngineType;
+import simulation.components.ParticleSystem;
+import simulation.listeners.DataWriter;
+import simulation.listeners.ENUM_Backpressure;
+import simulation.listeners.ENUM_OutputFormat;
+import simulation.listeners.OutputCadence;
+import simulation.listeners.ParticleSelection;
+
+/**
+ * The OutputOptions class collects everything that decides what a simulated
+ * system writes, and how: its data files, checkpoints and the records kept
+ * next to them.
+ *
+ * <p>A single set of options is built before any system is created, e.g. by
+ * the argument parser of {@code BatchLauncher}, and then handed to whatever
+ * simulates the systems, which creates the data writer of every system
+ * through it and passes it on to {@code BatchLauncher.run}.</p>
+ *
+ * @author Erik Nguyen
+ */
+public class OutputOptions {
+
+	int checkpoint = 0;
+	int pipeline = 0;
+	ENUM_Backpressure backpressure = ENUM_Backpressure.BLOCK;
+	ENUM_OutputFormat format = ENUM_OutputFormat.TEXT;
+	int keyframes = 20;
+	double[] halo = new double[0];
+	int[] phaseBins = new int[0];
+	double[] phaseRange = new double[2];
+	double cadence = 0;
+	int cadenceStride = OutputCadence.DEFAULT_MAX_STRIDE;
+	ParticleSelection trajectories;
+	int frameStride = 1;
+
+	/**
+	 * Sets the number of intervals between checkpoints of every system. Each
+	 * checkpoint is saved as {@code checkpoint.bin} in the directory of its
+	 * system.
+	 *
+	 * @param intervals the number of intervals between checkpoints, or 0 if
+	 * no checkpoints should be taken
+	 */
+	public void setCheckpointInterval(int intervals) {
+		checkpoint = intervals;
+	}
+
+	/**
+	 * Sets whether every system writes its data files on a separate thread.
+	 *
+	 * @param buffers the number of frames that may wait to be written at
+	 * once, or 0 if the data should be written on the simulation's own thread
+	 * @param policy what to do with a frame when every buffer is waiting
+	 */
+	public void setPipelined(int buffers, ENUM_Backpressure policy) {
+		pipeline = buffers;
+		backpressure = policy;
+	}
+
+	/**
+	 * Sets the format of the data files of every system.
+	 *
+	 * @param format the format of the data files
+	 * @param keyframes the number of intervals between keyframes in the
+	 * {@code EVENTS} format
+	 */
+	public void setFormat(ENUM_OutputFormat format, int keyframes) {
+		this.format = format;
+		this.keyframes = keyframes;
+	}
+
+	/**
+	 * Sets the energies against which the particles of every system are
+	 * classified as halo or core. See {@code HaloWriter}.
+	 *
+	 * @param thresholds the energies at which particles join the halo, or
+	 * none to not record the halo membership
+	 */
+	public void setHaloThresholds(double[] thresholds) {
+		halo = thresholds.clone();
+	}
+
+	/**
+	 * Sets the grid over phase space every system is binned into. See
+	 * {@code PhaseSpaceWriter}.
+	 *
+	 * @param bins the number of position and velocity bins, or none to not
+	 * record the grid
+	 * @param range the largest position and velocity on the grid, either of
+	 * which is 0 to size the grid by the system
+	 */
+	public void setPhaseGrid(int[] bins, double[] range) {
+		phaseBins = bins.clone();
+		phaseRange = range.clone();
+	}
+
+	/**
+	 * Sets the cadence at which the frames of every system are written. See
+	 * {@code OutputCadence}.
+	 *
+	 * @param tolerance the change in the virial ratio or the relative change
+	 * in the half-mass radius that calls for a frame, or 0 to write every frame
+	 * @param maxStride the largest number of intervals between frames
+	 */
+	public void setCadence(double tolerance, int maxStride) {
+		cadence = tolerance;
+		cadenceStride = maxStride;
+	}
+
+	/**
+	 * Sets the particles of every system whose trajectories are recorded after
+	 * every interval, and how often frames of all of its particles are
+	 * written. See {@code TrajectoryWriter}.
+	 *
+	 * @param trajectories the particles whose trajectories are recorded, or
+	 * null if none should be
+	 * @param frameStride the number of intervals between frames
+	 */
+	public void setSubset(ParticleSelection trajectories, int frameStride) {
+		this.trajectories = trajectories;
+		this.frameStride = frameStride;
+	}
+
+	/**
+	 * Checks that the data files can be recorded from systems evolved with
+	 * the given options. The {@code EVENTS} format only logs crossings, which
+	 * the leapfrog engines never report and a batch window resolves together
+	 * instead of one by one, so a replay of the log would drift away from the
+	 * system between keyframes.
+	 *
+	 * @param engine the engine options of the systems
+	 * @throws IllegalArgumentException if the format cannot be recorded from
+	 * the systems
+	 */
+	void check(EngineOptions engine) {
+		check(format, engine.engine, engine.batchWindow);
+	}
+
+	private static void check(ENUM_OutputFormat format, ENUM_EngineType engine, double batchWindow) {
+		if (format != ENUM_OutputFormat.EVENTS) {
+			return;
+		}
+		if (engine == ENUM_EngineType.LEAPFROG || engine == ENUM_EngineType.LEAPFROG_ADAPTIVE) {
+			throw new IllegalArgumentException("The EVENTS format logs crossings, which the " + engine
+					+ " engine does not report");
+		}
+		if (batchWindow > 0) {
+			throw new IllegalArgumentException("The EVENTS format logs crossings, which a batch window"
+					+ " does not report one by one");
+		}
+	}
+
+	/**
+	 * Creates the data writer of a new system and registers it with the
+	 * system.
+	 *
+	 * @param sys the system to be recorded
+	 * @param rootDir the directory the data files are written into
+	 * @return the data writer
+	 * @throws IllegalArgumentException if the format cannot be recorded from
+	 * the system
+	 */
+	DataWriter createWriter(ParticleSystem sys, String rootDir) {
+		check(format, sys.getEngine(), sys.getBatchWindow());
+		DataWriter writer = new DataWriter(sys, rootDir, format);
+		writer.setKeyframeInterval(keyframes);
+		return configure(writer, sys);
+	}
+
+	/**
+	 * Creates the data writer of a system resumed from a checkpoint, which
+	 * continues the data files recorded in it, and registers it with the
+	 * system. The format and keyframes are those of the files.
+	 *
+	 * @param sys the resumed system
+	 * @param cp the checkpoint the system was resumed from
+	 * @return the data writer
+	 * @throws IOException if the data files could not be reopened
+	 * @throws IllegalArgumentException if the format of the files cannot be
+	 * recorded from the system
+	 */
+	DataWriter resumeWriter(ParticleSystem sys, Checkpoint cp) throws IOException {
+		check(ENUM_OutputFormat.valueOf(cp.getWriterFormat()), sys.getEngine(), sys.getBatchWindow());
+		return configure(new DataWriter(sys, cp), sys);
+	}
+
+	private DataWriter configure(DataWriter writer, ParticleSystem sys) {
+		if (pipeline > 0) {
+			writer.setPipelined(pipeline, backpressure);
+		}
+		writer.setFrameStride(frameStride);
+		if (cadence > 0) {
+			writer.setCadence(new OutputCadence(sys, cadence, cadenceStride));
+		}
+		sys.addListener(writer);
+		return writer;
+	}
+}
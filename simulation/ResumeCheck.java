@@ -0,0 +1,205 @@
+package simulation;
+
+import static simulation.Mainframe.*;
+import java.util.ArrayList;
+import java.util.List;
+import simulation.components.Checkpoint;
+import simulation.components.ENUM_EngineType;
+import simulation.components.ENUM_StorageType;
+import simulation.components.ENUM_SystemType;
+import simulation.components.ParticleStore;
+import simulation.components.ParticleSystem;
+import simulation.listeners.EVENT_Updated;
+import simulation.listeners.LISTENER_Updated;
+
+/**
+ * The ResumeCheck class checks that a simulation resumed from a checkpoint
+ * continues exactly like the same simulation run without a break.
+ *
+ * <p>A system is described by the following options:
+ * <br>{@code -n <particles> -length <characteristic times> -virial <ratio>
+ * [-interval <characteristic times>] [-seed <seed>] [-engine <type>]
+ * [-timestep <characteristic time>] [-storage <HEAP|DIRECT>]}</br>
+ * <br>The system is simulated once in full. A second copy is stopped after
+ * {@code -at <intervals>} intervals, its checkpoint is taken and a third system
+ * is resumed from it. The time, energy error and virial ratio of every update
+ * of the broken run, which are what {@code diagnostics.csv} records, and the
+ * particles at the end must equal those of the full run.</br></p>
+ *
+ * <p>Any difference is logged and the program exits with status 1.</p>
+ *
+ * @author Erik Nguyen
+ */
+public class ResumeCheck {
+
+	private static final String USAGE
+			= "Usage: ResumeCheck -n <particles> -length <characteristic times> -virial <ratio>"
+			+ " [-interval <characteristic times>] [-seed <seed>] [-at <intervals>]"
+			+ " [-engine <type>] [-timestep <characteristic time>] [-storage <HEAP|DIRECT>]";
+
+	/**
+	 * @param args the command line arguments
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+
+		int n = 0, length = 0, at = 10;
+		double virial = Double.NaN, interval = 0.05, timeStep = 0.001;
+		long seed = 1;
+		ENUM_EngineType engine = ENUM_EngineType.EXACT;
+		ENUM_StorageType storage = ENUM_StorageType.HEAP;
+		try {
+			for (int i = 0; i < args.length; i += 2) {
+				if (i + 1 >= args.length) {
+					throw new IllegalArgumentException("Missing value for " + args[i]);
+				}
+				String value = args[i + 1];
+				switch (args[i]) {
+					case "-n":
+						n = Integer.parseInt(value);
+						break;
+					case "-length":
+						length = Integer.parseInt(value);
+						break;
+					case "-virial":
+						virial = Double.parseDouble(value);
+						break;
+					case "-interval":
+						interval = Double.parseDouble(value);
+						break;
+					case "-seed":
+						seed = Long.parseLong(value);
+						break;
+					case "-at":
+						at = Integer.parseInt(value);
+						break;
+					case "-engine":
+						engine = ENUM_EngineType.valueOf(value);
+						break;
+					case "-timestep":
+						timeStep = Double.parseDouble(value);
+						break;
+					case "-storage":
+						storage = ENUM_StorageType.valueOf(value);
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+			if (n < 2 || length < 1 || Double.isNaN(virial)) {
+				throw new IllegalArgumentException("A system needs -n, -length and -virial");
+			}
+			if (at < 1 || at * interval >= length) {
+				throw new IllegalArgumentException("The checkpoint must lie within the simulation");
+			}
+		} catch (IllegalArgumentException ex) {
+			System.err.println(ex.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+			return;
+		}
+
+		Mainframe simulator = new Mainframe(false);
+		SimulationJob job = new SimulationJob(n, length, interval, virial, ENUM_SystemType.WATERBAG_RECTANGULAR, seed);
+
+		ParticleSystem full = job.createSystem(simulator, storage);
+		Recorder fullRecord = simulate(full, engine, timeStep, 0);
+
+		ParticleSystem broken = job.createSystem(simulator, storage);
+		Recorder brokenRecord = simulate(broken, engine, timeStep, at);
+		ParticleSystem resumed = new ParticleSystem(brokenRecord.checkpoint, storage, simulator);
+		Recorder resumedRecord = simulate(resumed, engine, timeStep, 0);
+		brokenRecord.updates.addAll(resumedRecord.updates);
+
+		List<String> differences = compare(fullRecord.updates, brokenRecord.updates);
+		ParticleStore a = full.getStore(), b = resumed.getStore();
+		for (int i = 0; i < n && differences.size() < 10; i++) {
+			if (a.getID(i) != b.getID(i) || a.getX(i) != b.getX(i) || a.getV(i) != b.getV(i)) {
+				differences.add("Rank " + i + " ends as particle " + b.getID(i) + " at (" + b.getX(i) + ", "
+						+ b.getV(i) + ") instead of particle " + a.getID(i) + " at (" + a.getX(i) + ", " + a.getV(i) + ")");
+			}
+		}
+
+		logHeader();
+		if (differences.isEmpty()) {
+			dataLog("Resumed after " + at + " intervals, " + engine + " N=" + n + ": identical over "
+					+ fullRecord.updates.size() + " updates, energy error " + full.getEnergyError());
+		} else {
+			for (String difference : differences) {
+				errLog(difference);
+			}
+		}
+		logFooter();
+		simulator.exit(differences.isEmpty() ? 0 : 1);
+	}
+
+	/**
+	 * Simulates a system, recording every update.
+	 *
+	 * @param sys the system to be simulated
+	 * @param engine the way the system is evolved through time
+	 * @param timeStep the time step of the leapfrog engines
+	 * @param stopAt the number of updates after which the system is
+	 * checkpointed and stopped, or 0 to simulate it in full
+	 * @return the record of the updates
+	 */
+	private static Recorder simulate(ParticleSystem sys, ENUM_EngineType engine, double timeStep, int stopAt) {
+		sys.setEngine(engine);
+		sys.setTimeStep(timeStep);
+		Recorder record = new Recorder(sys, stopAt);
+		sys.addListener(record);
+		sys.simulate();
+		return record;
+	}
+
+	/**
+	 * Lists the first differences between the updates of two runs.
+	 *
+	 * @param expected the updates of the full run
+	 * @param actual the updates of the resumed run
+	 * @return the differences found
+	 */
+	private static List<String> compare(List<double[]> expected, List<double[]> actual) {
+		List<String> differences = new ArrayList<String>();
+		if (expected.size() != actual.size()) {
+			differences.add(actual.size() + " updates instead of " + expected.size());
+		}
+		String[] names = {"time", "energy error", "virial ratio"};
+		for (int u = 0; u < Math.min(expected.size(), actual.size()) && differences.size() < 10; u++) {
+			for (int k = 0; k < names.length; k++) {
+				if (Double.compare(expected.get(u)[k], actual.get(u)[k]) != 0) {
+					differences.add("Update " + u + ": " + names[k] + " " + actual.get(u)[k]
+							+ " instead of " + expected.get(u)[k]);
+				}
+			}
+		}
+		return differences;
+	}
+
+	/**
+	 * Records the time, energy error and virial ratio of every update, and
+	 * optionally takes a checkpoint and stops the simulation after a number of
+	 * updates.
+	 */
+	private static class Recorder implements LISTENER_Updated {
+
+		private final ParticleSystem system;
+		private final int stopAt;
+		final List<double[]> updates = new ArrayList<double[]>();
+		Checkpoint checkpoint;
+
+		Recorder(ParticleSystem sys, int stopAt) {
+			system = sys;
+			this.stopAt = stopAt;
+		}
+
+		@Override
+		public void receiveUpdate(EVENT_Updated evt) {
+			updates.add(new double[]{evt.getTime(), system.getEnergyError(), system.getVirialRatio()});
+			if (stopAt > 0 && updates.size() == stopAt + 1) {//the first update is the initial state
+				checkpoint = system.checkpoint();
+				system.stop();
+			}
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package simulation;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import simulation.components.ENUM_StorageType;
+import simulation.components.ENUM_SystemType;
+import simulation.components.ParticleSystem;
+
+/**
+ * This class holds the parameters needed to create a single particle system
+ * for simulation, so that systems can be queued up and created later on.
+ *
+ * @author Erik Nguyen
+ */
+public class SimulationJob {
+
+	/**
+	 * The number of particles in the system.
+	 */
+	public final int size;
+	/**
+	 * The length of time to simulate in characteristic time units.
+	 */
+	public final int length;
+	/**
+	 * The interval at which the system is recorded in characteristic time
+	 * units.
+	 */
+	public final double interval;
+	/**
+	 * The desired virial ratio of the system.
+	 */
+	public final double virial;
+	/**
+	 * The initial configuration of the system.
+	 */
+	public final ENUM_SystemType type;
+	/**
+	 * The seed from which the initial configuration of the system is drawn.
+	 */
+	public final long seed;
+
+	/**
+	 * Creates a job from the parameters of a particle system, with a random
+	 * seed.
+	 *
+	 * @param numParticles the number of particles in the system
+	 * @param simLength the length of time to simulate in characteristic time
+	 * units
+	 * @param intervalSize the interval at which the system is recorded in
+	 * characteristic time units
+	 * @param virial the desired virial ratio of the system
+	 * @param type the initial configuration of the system
+	 */
+	public SimulationJob(int numParticles, int simLength, double intervalSize, double virial, ENUM_SystemType type) {
+		this(numParticles, simLength, intervalSize, virial, type, ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * Creates a job from the parameters of a particle system.
+	 *
+	 * @param numParticles the number of particles in the system
+	 * @param simLength the length of time to simulate in characteristic time
+	 * units
+	 * @param intervalSize the interval at which the system is recorded in
+	 * characteristic time units
+	 * @param virial the desired virial ratio of the system
+	 * @param type the initial configuration of the system
+	 * @param seed the seed of the initial configuration
+	 */
+	public SimulationJob(int numParticles, int simLength, double intervalSize, double virial, ENUM_SystemType type, long seed) {
+		size = numParticles;
+		length = simLength;
+		interval = intervalSize;
+		this.virial = virial;
+		this.type = type;
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns a copy of this job with a different seed.
+	 *
+	 * @param seed the seed of the initial configuration
+	 * @return the job with the new seed
+	 */
+	public SimulationJob withSeed(long seed) {
+		return new SimulationJob(size, length, interval, virial, type, seed);
+	}
+
+	/**
+	 * Derives the seeds of a number of independent realizations from a single
+	 * seed. Each realization receives its own stream split off of the
+	 * generator, so the seed of a realization only depends on the master seed
+	 * and its index.
+	 *
+	 * @param master the seed of the whole ensemble
+	 * @param count the number of realizations
+	 * @return the seed of each realization
+	 */
+	public static long[] deriveSeeds(long master, int count) {
+		SplittableRandom random = new SplittableRandom(master);
+		long[] seeds = new long[count];
+		for (int k = 0; k < count; k++) {
+			seeds[k] = random.split().nextLong();
+		}
+		return seeds;
+	}
+
+	/**
+	 * Creates the particle system described by this job.
+	 *
+	 * @param simulator the simulator the system belongs to
+	 * @return a new particle system
+	 */
+	public ParticleSystem createSystem(Mainframe simulator) {
+		return createSystem(simulator, ENUM_StorageType.HEAP);
+	}
+
+	/**
+	 * Creates the particle system described by this job, keeping its
+	 * particles in the specified kind of storage.
+	 *
+	 * @param simulator the simulator the system belongs to
+	 * @param storage where the state of the particles is kept
+	 * @return a new particle system
+	 */
+	public ParticleSystem createSystem(Mainframe simulator, ENUM_StorageType storage) {
+		return new ParticleSystem(size, length, interval, virial, type, seed, storage, simulator);
+	}
+
+	/**
+	 * Returns a rough estimate of the amount of work needed to simulate this
+	 * job. The number of collisions per characteristic time grows faster than
+	 * the number of particles, so this is only useful for ordering jobs.
+	 *
+	 * @return the estimated cost of this job
+	 */
+	public double cost() {
+		return Math.pow(size, 1.5) * length;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s N=%d length=%d interval=%s virial=%s seed=%d",
+				type, size, length, interval, virial, seed);
+	}
+}
@@ -0,0 +1,44 @@
+package simulation.components;
+
+/**
+ * The {@code ArrayCollisionQueue} class is a {@code CollisionQueue} that keeps
+ * the collision times and the tree in primitive arrays on the heap.
+ *
+ * @author Erik Nguyen
+ */
+final class ArrayCollisionQueue extends CollisionQueue {
+
+	private final double[] time;//collision times by slot
+	private final int[] winner;//winning slots by node
+
+	/**
+	 * Constructs an empty queue for the specified number of slots.
+	 *
+	 * @param numSlots the number of slots in the queue
+	 */
+	ArrayCollisionQueue(int numSlots) {
+		super(numSlots);
+		time = new double[numSlots];
+		winner = new int[2 * leaves];
+	}
+
+	@Override
+	double time(int slot) {
+		return time[slot];
+	}
+
+	@Override
+	void setTime(int slot, double t) {
+		time[slot] = t;
+	}
+
+	@Override
+	int winner(int node) {
+		return winner[node];
+	}
+
+	@Override
+	void setWinner(int node, int slot) {
+		winner[node] = slot;
+	}
+}
@@ -0,0 +1,235 @@
+package simulation.components;
+
+import java.util.Arrays;
+
+/**
+ * The {@code ArrayParticleStore} class is a {@code ParticleStore} that keeps
+ * every value in a separate primitive array on the heap.
+ *
+ * @author Erik Nguyen
+ */
+final class ArrayParticleStore extends ParticleStore {
+
+	private final double[] x;//positions by rank
+	private final double[] v;//velocities by rank
+	private final double[] time;//time frames by rank
+	private final double[] accel;//accelerations by rank
+	private final int[] id;//ID numbers by rank
+	private final int[] rank;//ranks by ID number
+	private final double[] potential;//potential energies by ID number
+	private final double[] kinetic;//kinetic energies by ID number
+	private final long[] crossings;//crossings by ID number
+
+	/**
+	 * Constructs a store for the specified number of particles.
+	 *
+	 * @param numParticles the number of particles in the store
+	 */
+	ArrayParticleStore(int numParticles) {
+		super(numParticles);
+		x = new double[numParticles];
+		v = new double[numParticles];
+		time = new double[numParticles];
+		accel = new double[numParticles];
+		id = new int[numParticles];
+		rank = new int[numParticles];
+		potential = new double[numParticles];
+		kinetic = new double[numParticles];
+		crossings = new long[numParticles];
+	}
+
+	@Override
+	public double getX(int rank) {
+		return x[rank];
+	}
+
+	@Override
+	public double getV(int rank) {
+		return v[rank];
+	}
+
+	@Override
+	public double getTime(int rank) {
+		return time[rank];
+	}
+
+	@Override
+	public double getAcceleration(int rank) {
+		return accel[rank];
+	}
+
+	@Override
+	public int getID(int rank) {
+		return id[rank];
+	}
+
+	@Override
+	public int getRank(int id) {
+		return rank[id];
+	}
+
+	@Override
+	public double getPotentialEnergy(int id) {
+		return potential[id];
+	}
+
+	@Override
+	public double getKineticEnergy(int id) {
+		return kinetic[id];
+	}
+
+	@Override
+	public long getCrossings(int id) {
+		return crossings[id];
+	}
+
+	@Override
+	void set(int rank, int id, double x, double v) {
+		this.x[rank] = x;
+		this.v[rank] = v;
+		this.id[rank] = id;
+		this.rank[id] = rank;
+	}
+
+	@Override
+	void setX(int rank, double x) {
+		this.x[rank] = x;
+	}
+
+	@Override
+	void setV(int rank, double v) {
+		this.v[rank] = v;
+	}
+
+	@Override
+	void setTime(int rank, double t) {
+		time[rank] = t;
+	}
+
+	@Override
+	void setAcceleration(int rank, double a) {
+		accel[rank] = a;
+	}
+
+	@Override
+	void setEnergy(int id, double potential, double kinetic) {
+		this.potential[id] = potential;
+		this.kinetic[id] = kinetic;
+	}
+
+	@Override
+	void addCrossings(int id, long count) {
+		crossings[id] += count;
+	}
+
+	@Override
+	void update(int rank, double t, double a) {
+		x[rank] = x[rank] + v[rank] * t + .5 * a * t * t;
+		v[rank] = v[rank] + a * t;
+	}
+
+	@Override
+	void advance(int from, int to, double t) {
+		//A plain loop over the arrays, which the compiler can vectorize
+		for (int i = from; i < to; i++) {
+			double dt = t - time[i];
+			x[i] = x[i] + v[i] * dt + .5 * accel[i] * dt * dt;
+			v[i] = v[i] + accel[i] * dt;
+		}
+	}
+
+	@Override
+	void project(int from, int to, double t, double[] positions, double[] velocities) {
+		for (int i = from; i < to; i++) {
+			double dt = t - time[i];
+			positions[id[i]] = x[i] + v[i] * dt + .5 * accel[i] * dt * dt;
+			velocities[id[i]] = v[i] + accel[i] * dt;
+		}
+	}
+
+	@Override
+	void kick(int from, int to, double t) {
+		for (int i = from; i < to; i++) {
+			v[i] = v[i] + accel[i] * t;
+		}
+	}
+
+	@Override
+	void drift(int from, int to, double t) {
+		for (int i = from; i < to; i++) {
+			x[i] = x[i] + v[i] * t;
+		}
+	}
+
+	@Override
+	long sort(int from, int to) {
+		long exchanges = 0;
+		for (int i = from + 1; i < to; i++) {
+			double xi = x[i];
+			if (xi >= x[i - 1]) {
+				continue;
+			}
+			double vi = v[i], ti = time[i];
+			int idi = id[i];
+			int j = i;
+			while (j > from && x[j - 1] > xi) {//shift every particle to its right
+				x[j] = x[j - 1];
+				v[j] = v[j - 1];
+				time[j] = time[j - 1];
+				id[j] = id[j - 1];
+				rank[id[j]] = j;
+				crossings[id[j]]++;
+				j--;
+			}
+			x[j] = xi;
+			v[j] = vi;
+			time[j] = ti;
+			id[j] = idi;
+			rank[idi] = j;
+			crossings[idi] += i - j;
+			exchanges += i - j;
+		}
+		return exchanges;
+	}
+
+	@Override
+	void swap(int left, int right) {
+		double tempX = x[left];
+		if (tempX < x[right]) {
+			x[left] = x[right];
+			x[right] = tempX;
+		}
+
+		//swap every value of the two particles
+		tempX = x[left];
+		x[left] = x[right];
+		x[right] = tempX;
+
+		double tempV = v[left];
+		v[left] = v[right];
+		v[right] = tempV;
+
+		double tempT = time[left];
+		time[left] = time[right];
+		time[right] = tempT;
+
+		int tempID = id[left];
+		id[left] = id[right];
+		id[right] = tempID;
+
+		rank[id[left]] = left;
+		rank[id[right]] = right;
+		crossings[id[left]]++;
+		crossings[id[right]]++;
+	}
+
+	@Override
+	void resetTimes() {
+		Arrays.fill(time, 0.0);
+	}
+
+	@Override
+	void setTimes(double t) {
+		Arrays.fill(time, t);
+	}
+}
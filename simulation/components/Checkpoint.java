@@ -0,0 +1,221 @@
+package simulation.components;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The {@code Checkpoint} class holds a copy of the complete state of a
+ * {@code ParticleSystem} at the end of an interval, from which the simulation
+ * can be resumed.
+ *
+ * <p>Besides the particles and the predicted collisions, a checkpoint may also
+ * hold the directory and file lengths of the data writer recording the system,
+ * so that a resumed simulation can append to the same files.</p>
+ *
+ * <p>Checkpoints are stored in a binary file made up of a header, the
+ * parameters of the system including its initial energy, the state of each particle ordered by rank along
+ * with its number of crossings, the collision predictions of each pair, and finally the state of the data
+ * writer.</p>
+ *
+ * @author Erik Nguyen
+ */
+public final class Checkpoint {
+
+	/**
+	 * Identifies a checkpoint file.
+	 */
+	private static final int MAGIC = 0x4F445343;
+	/**
+	 * The version of the checkpoint file format.
+	 */
+	private static final int VERSION = 1;
+
+	final int size;
+	final int maxSimulationTime;
+	final double characteristicInterval;
+	final ENUM_SystemType systemType;
+	final long seed;
+	final double initialVirialRatio;
+	final double initialEnergy;
+	final double simulationTime;
+	final int[] id;
+	final double[] x, v, time;
+	final long[] crossings;
+	final double[] nextCollisionTime, baseCollisionTime;
+	private String writerDirectory;
+	private String writerFormat = "TEXT";
+	private long[] writerOffsets = new long[0];
+
+	Checkpoint(int size, int maxSimulationTime, double characteristicInterval, ENUM_SystemType systemType,
+			long seed, double initialVirialRatio, double initialEnergy, double simulationTime) {
+		this.size = size;
+		this.maxSimulationTime = maxSimulationTime;
+		this.characteristicInterval = characteristicInterval;
+		this.systemType = systemType;
+		this.seed = seed;
+		this.initialVirialRatio = initialVirialRatio;
+		this.initialEnergy = initialEnergy;
+		this.simulationTime = simulationTime;
+		id = new int[size];
+		x = new double[size];
+		v = new double[size];
+		time = new double[size];
+		crossings = new long[size];
+		nextCollisionTime = new double[size - 1];
+		baseCollisionTime = new double[size - 1];
+	}
+
+	/**
+	 * Returns the time at which this checkpoint was taken in characteristic
+	 * time units.
+	 *
+	 * @return the simulation time of the checkpoint
+	 */
+	public double getSimulationTime() {
+		return simulationTime;
+	}
+
+	/**
+	 * Records the state of the data writer at the moment this checkpoint was
+	 * taken.
+	 *
+	 * @param directory the directory the writer stores its files in
+	 * @param format the name of the format of the writer's files
+	 * @param offsets the length of each file written by the writer
+	 */
+	public void setWriterState(String directory, String format, long[] offsets) {
+		writerDirectory = directory;
+		writerFormat = format;
+		writerOffsets = offsets.clone();
+	}
+
+	/**
+	 * Returns the directory of the data writer recording the system, or null
+	 * if none was recorded.
+	 *
+	 * @return the directory of the data writer
+	 */
+	public String getWriterDirectory() {
+		return writerDirectory;
+	}
+
+	/**
+	 * Returns the name of the format of the data writer's files.
+	 *
+	 * @return the format of the data writer
+	 */
+	public String getWriterFormat() {
+		return writerFormat;
+	}
+
+	/**
+	 * Returns the length of each file written by the data writer at the
+	 * moment this checkpoint was taken.
+	 *
+	 * @return the file lengths of the data writer
+	 */
+	public long[] getWriterOffsets() {
+		return writerOffsets.clone();
+	}
+
+	/**
+	 * Writes this checkpoint into a file. The checkpoint is first written into
+	 * a temporary file that then replaces the original, so that an existing
+	 * checkpoint is never left half written.
+	 *
+	 * @param file the file to write the checkpoint into
+	 * @throws IOException if the checkpoint could not be written
+	 */
+	public void write(File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(size);
+			out.writeInt(maxSimulationTime);
+			out.writeDouble(characteristicInterval);
+			out.writeUTF(systemType.name());
+			out.writeLong(seed);
+			out.writeDouble(initialVirialRatio);
+			out.writeDouble(initialEnergy);
+			out.writeDouble(simulationTime);
+			for (int i = 0; i < size; i++) {
+				out.writeInt(id[i]);
+				out.writeDouble(x[i]);
+				out.writeDouble(v[i]);
+				out.writeDouble(time[i]);
+				out.writeLong(crossings[i]);
+			}
+			for (int i = 0; i < size - 1; i++) {
+				out.writeDouble(nextCollisionTime[i]);
+				out.writeDouble(baseCollisionTime[i]);
+			}
+			out.writeBoolean(writerDirectory != null);
+			if (writerDirectory != null) {
+				out.writeUTF(writerDirectory);
+				out.writeUTF(writerFormat);
+			}
+			out.writeInt(writerOffsets.length);
+			for (long offset : writerOffsets) {
+				out.writeLong(offset);
+			}
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a checkpoint from a file.
+	 *
+	 * @param file the file holding the checkpoint
+	 * @return the checkpoint held within the file
+	 * @throws IOException if the file could not be read or is not a
+	 * checkpoint
+	 */
+	public static Checkpoint read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a checkpoint");
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException(file + " has unsupported checkpoint version " + version);
+			}
+			int size = in.readInt(), maxSimulationTime = in.readInt();
+			double characteristicInterval = in.readDouble();
+			ENUM_SystemType systemType = ENUM_SystemType.valueOf(in.readUTF());
+			long seed = in.readLong();
+			double initialVirialRatio = in.readDouble();
+			double initialEnergy = in.readDouble();
+			Checkpoint cp = new Checkpoint(size, maxSimulationTime, characteristicInterval, systemType,
+					seed, initialVirialRatio, initialEnergy, in.readDouble());
+			for (int i = 0; i < cp.size; i++) {
+				cp.id[i] = in.readInt();
+				cp.x[i] = in.readDouble();
+				cp.v[i] = in.readDouble();
+				cp.time[i] = in.readDouble();
+				cp.crossings[i] = in.readLong();
+			}
+			for (int i = 0; i < cp.size - 1; i++) {
+				cp.nextCollisionTime[i] = in.readDouble();
+				cp.baseCollisionTime[i] = in.readDouble();
+			}
+			if (in.readBoolean()) {
+				cp.writerDirectory = in.readUTF();
+				cp.writerFormat = in.readUTF();
+			}
+			cp.writerOffsets = new long[in.readInt()];
+			for (int i = 0; i < cp.writerOffsets.length; i++) {
+				cp.writerOffsets[i] = in.readLong();
+			}
+			return cp;
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package simulation.components;
+
+/**
+ * The {@code CollisionQueue} class is an indexed priority queue over the
+ * collision slots of a system, where slot {@code i} represents the pair of
+ * particles at indeces {@code (i, i + 1)}.
+ *
+ * <p>The queue is built as a tournament tree. Every slot is a leaf of a
+ * complete binary tree and every inner node holds the slot with the earliest
+ * collision time of its two children. The root therefore always holds the next
+ * collision. Changing the time of a single slot only requires replaying the
+ * matches along the path from its leaf to the root, which takes
+ * {@code O(log N)} time.</p>
+ *
+ * <p>Ties are resolved in favor of the slot with the lower index, and
+ * {@code NaN} times never win a match. This mirrors the behavior of a linear
+ * scan using a strict comparison, so both ways of searching select the exact
+ * same collision.</p>
+ *
+ * <p>The times and the tree are kept by subclasses where the state of the
+ * particles is kept, so that a system kept outside of the heap leaves nothing
+ * on the heap that grows with its size. See {@code create}.</p>
+ *
+ * @author Erik Nguyen
+ */
+public abstract class CollisionQueue {
+
+	/**
+	 * The number of slots held within the queue.
+	 */
+	public final int size;
+	/**
+	 * The number of leaves in the tree. This is the smallest power of 2 that is
+	 * greater than or equal to {@code size}.
+	 */
+	final int leaves;
+
+	/**
+	 * Constructs an empty queue for the specified number of slots.
+	 *
+	 * @param numSlots the number of slots in the queue
+	 */
+	CollisionQueue(int numSlots) {
+		size = numSlots;
+		int l = 1;
+		while (l < Math.max(numSlots, 1)) {
+			l <<= 1;
+		}
+		leaves = l;
+	}
+
+	/**
+	 * Creates an empty queue for the specified number of slots.
+	 *
+	 * @param numSlots the number of slots in the queue
+	 * @param storage where the queue is kept
+	 * @return the new queue
+	 */
+	public static CollisionQueue create(int numSlots, ENUM_StorageType storage) {
+		CollisionQueue queue = storage == ENUM_StorageType.DIRECT
+				? new DirectCollisionQueue(numSlots) : new ArrayCollisionQueue(numSlots);
+		for (int node = 1; node < 2 * queue.leaves; node++) {
+			queue.setWinner(node, node >= queue.leaves && node - queue.leaves < numSlots ? node - queue.leaves : -1);
+		}
+		return queue;
+	}
+
+	/**
+	 * Returns the collision time of a slot.
+	 *
+	 * @param slot the index of the slot
+	 * @return the collision time of the slot
+	 */
+	abstract double time(int slot);
+
+	/**
+	 * Stores the collision time of a slot.
+	 *
+	 * @param slot the index of the slot
+	 * @param t the collision time of the slot
+	 */
+	abstract void setTime(int slot, double t);
+
+	/**
+	 * Returns the winning slot of a node in the tree. The root is located at
+	 * index 1, the children of node {@code n} are located at {@code 2n} and
+	 * {@code 2n + 1}, and the leaves start at index {@code leaves}. Unused
+	 * leaves hold the value -1.
+	 *
+	 * @param node the index of the node
+	 * @return the slot that won the match of the node
+	 */
+	abstract int winner(int node);
+
+	/**
+	 * Stores the winning slot of a node in the tree.
+	 *
+	 * @param node the index of the node
+	 * @param slot the slot that won the match of the node
+	 */
+	abstract void setWinner(int node, int slot);
+
+	/**
+	 * Changes the collision time of a single slot without replaying any
+	 * matches. {@code rebuild()} must be called once all of the slots have been
+	 * set.
+	 *
+	 * @param slot the index of the slot to be changed
+	 * @param t the new collision time of the slot
+	 */
+	public void set(int slot, double t) {
+		setTime(slot, t);
+	}
+
+	/**
+	 * Replays every match in the tree in {@code O(N)} time. This is cheaper than
+	 * updating every slot individually when the times of most slots changed.
+	 */
+	public void rebuild() {
+		for (int node = leaves - 1; node > 0; node--) {
+			setWinner(node, match(winner(2 * node), winner(2 * node + 1)));
+		}
+	}
+
+	/**
+	 * Replays every match that a range of slots took part in, after their
+	 * times were changed by {@code set}. The matches above a range of m slots
+	 * take {@code O(m + log N)} time to replay, rather than the
+	 * {@code O(m log N)} of updating each of them.
+	 *
+	 * @param from the index of the first slot in the range
+	 * @param to the index of the last slot in the range
+	 */
+	public void rebuild(int from, int to) {
+		for (int lo = (leaves + from) >> 1, hi = (leaves + to) >> 1; lo > 0; lo >>= 1, hi >>= 1) {
+			for (int node = lo; node <= hi; node++) {
+				setWinner(node, match(winner(2 * node), winner(2 * node + 1)));
+			}
+		}
+	}
+
+	/**
+	 * Changes the collision time of a single slot and replays every match
+	 * that the slot took part in.
+	 *
+	 * @param slot the index of the slot to be changed
+	 * @param t the new collision time of the slot
+	 */
+	public void update(int slot, double t) {
+		setTime(slot, t);
+		for (int node = (leaves + slot) >> 1; node > 0; node >>= 1) {
+			setWinner(node, match(winner(2 * node), winner(2 * node + 1)));
+		}
+	}
+
+	/**
+	 * Returns the slot with the earliest collision time.
+	 *
+	 * @return the index of the next slot to collide, or -1 if the queue is
+	 * empty
+	 */
+	public int nextSlot() {
+		return winner(1);
+	}
+
+	/**
+	 * Returns the earliest collision time held within the queue.
+	 *
+	 * @return the time of the next collision
+	 */
+	public double nextTime() {
+		int slot = winner(1);
+		return slot < 0 ? Double.MAX_VALUE : time(slot);
+	}
+
+	/**
+	 * Returns the collision time currently stored for a slot.
+	 *
+	 * @param slot the index of the slot
+	 * @return the collision time of the slot
+	 */
+	public double timeOf(int slot) {
+		return time(slot);
+	}
+
+	/**
+	 * Returns the winner of a match between two slots.
+	 *
+	 * @param a the slot on the left
+	 * @param b the slot on the right
+	 * @return the slot with the earlier collision time
+	 */
+	private int match(int a, int b) {
+		if (b < 0) {
+			return a;
+		}
+		if (a < 0) {
+			return b;
+		}
+		//The left slot wins ties and a NaN time never beats a number
+		double ta = time(a), tb = time(b);
+		return (ta <= tb || tb != tb) ? a : b;
+	}
+}
@@ -0,0 +1,57 @@
+package simulation.components;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * The {@code DirectCollisionQueue} class is a {@code CollisionQueue} that
+ * keeps the collision times and the tree in direct buffers outside of the
+ * heap, alongside a {@code DirectParticleStore}.
+ *
+ * <p>Only the inner nodes of the tree are stored. The winner of a leaf
+ * follows from its index, which halves the memory of the tree and keeps it
+ * within a single buffer for as many slots as a store has particles.</p>
+ *
+ * @author Erik Nguyen
+ */
+final class DirectCollisionQueue extends CollisionQueue {
+
+	private final DoubleBuffer time;//collision times by slot
+	private final IntBuffer winner;//winning slots by inner node
+
+	/**
+	 * Constructs an empty queue for the specified number of slots.
+	 *
+	 * @param numSlots the number of slots in the queue
+	 */
+	DirectCollisionQueue(int numSlots) {
+		super(numSlots);
+		time = DirectParticleStore.doubles(numSlots);
+		winner = DirectParticleStore.ints(leaves);
+	}
+
+	@Override
+	double time(int slot) {
+		return time.get(slot);
+	}
+
+	@Override
+	void setTime(int slot, double t) {
+		time.put(slot, t);
+	}
+
+	@Override
+	int winner(int node) {
+		if (node < leaves) {
+			return winner.get(node);
+		}
+		return node - leaves < size ? node - leaves : -1;
+	}
+
+	@Override
+	void setWinner(int node, int slot) {
+		if (node < leaves) {
+			winner.put(node, slot);
+		}
+	}
+}
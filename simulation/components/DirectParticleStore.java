@@ -0,0 +1,287 @@
+package simulation.components;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * The {@code DirectParticleStore} class is a {@code ParticleStore} that keeps
+ * every value in a separate direct buffer outside of the heap.
+ *
+ * <p>The heap then only holds a handful of buffer objects no matter how many
+ * particles there are, so systems far larger than the heap can be simulated
+ * with direct memory to spare (see {@code -XX:MaxDirectMemorySize}). The
+ * {@code ParticleSystem} keeps its predicted collisions and its
+ * {@code CollisionQueue} in buffers from {@code doubles} and {@code ints}
+ * alongside. Each
+ * buffer is addressed by an int, which limits a store to
+ * {@code MAX_PARTICLES} particles. The memory is released once the store is
+ * garbage collected.</p>
+ *
+ * @author Erik Nguyen
+ */
+final class DirectParticleStore extends ParticleStore {
+
+	/**
+	 * The largest number of particles a store can hold, as the buffer of
+	 * every double value may not exceed {@code Integer.MAX_VALUE} bytes.
+	 */
+	static final int MAX_PARTICLES = Integer.MAX_VALUE / Double.BYTES;
+
+	private final DoubleBuffer x;//positions by rank
+	private final DoubleBuffer v;//velocities by rank
+	private final DoubleBuffer time;//time frames by rank
+	private final DoubleBuffer accel;//accelerations by rank
+	private final IntBuffer id;//ID numbers by rank
+	private final IntBuffer rank;//ranks by ID number
+	private final DoubleBuffer potential;//potential energies by ID number
+	private final DoubleBuffer kinetic;//kinetic energies by ID number
+	private final LongBuffer crossings;//crossings by ID number
+
+	/**
+	 * Constructs a store for the specified number of particles.
+	 *
+	 * @param numParticles the number of particles in the store
+	 */
+	DirectParticleStore(int numParticles) {
+		super(numParticles);
+		if (numParticles > MAX_PARTICLES) {
+			throw new IllegalArgumentException("A direct store holds at most " + MAX_PARTICLES + " particles");
+		}
+		x = doubles(numParticles);
+		v = doubles(numParticles);
+		time = doubles(numParticles);
+		accel = doubles(numParticles);
+		id = ints(numParticles);
+		rank = ints(numParticles);
+		potential = doubles(numParticles);
+		kinetic = doubles(numParticles);
+		crossings = allocate(numParticles, Long.BYTES).asLongBuffer();
+	}
+
+	static DoubleBuffer doubles(int count) {
+		return allocate(count, Double.BYTES).asDoubleBuffer();
+	}
+
+	static IntBuffer ints(int count) {
+		return allocate(count, Integer.BYTES).asIntBuffer();
+	}
+
+	/**
+	 * Allocates a direct buffer for the specified number of values.
+	 *
+	 * @param count the number of values
+	 * @param width the number of bytes of each value
+	 * @return the buffer in native byte order
+	 * @throws IllegalArgumentException if the values take up more than
+	 * {@code Integer.MAX_VALUE} bytes
+	 */
+	private static ByteBuffer allocate(int count, int width) {
+		long bytes = (long) count * width;
+		if (bytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("A direct buffer holds at most " + Integer.MAX_VALUE / width
+					+ " values of " + width + " bytes, not " + count);
+		}
+		return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+	}
+
+	@Override
+	public double getX(int rank) {
+		return x.get(rank);
+	}
+
+	@Override
+	public double getV(int rank) {
+		return v.get(rank);
+	}
+
+	@Override
+	public double getTime(int rank) {
+		return time.get(rank);
+	}
+
+	@Override
+	public double getAcceleration(int rank) {
+		return accel.get(rank);
+	}
+
+	@Override
+	public int getID(int rank) {
+		return id.get(rank);
+	}
+
+	@Override
+	public int getRank(int id) {
+		return rank.get(id);
+	}
+
+	@Override
+	public double getPotentialEnergy(int id) {
+		return potential.get(id);
+	}
+
+	@Override
+	public double getKineticEnergy(int id) {
+		return kinetic.get(id);
+	}
+
+	@Override
+	public long getCrossings(int id) {
+		return crossings.get(id);
+	}
+
+	@Override
+	void set(int rank, int id, double x, double v) {
+		this.x.put(rank, x);
+		this.v.put(rank, v);
+		this.id.put(rank, id);
+		this.rank.put(id, rank);
+	}
+
+	@Override
+	void setX(int rank, double x) {
+		this.x.put(rank, x);
+	}
+
+	@Override
+	void setV(int rank, double v) {
+		this.v.put(rank, v);
+	}
+
+	@Override
+	void setTime(int rank, double t) {
+		time.put(rank, t);
+	}
+
+	@Override
+	void setAcceleration(int rank, double a) {
+		accel.put(rank, a);
+	}
+
+	@Override
+	void setEnergy(int id, double potential, double kinetic) {
+		this.potential.put(id, potential);
+		this.kinetic.put(id, kinetic);
+	}
+
+	@Override
+	void addCrossings(int id, long count) {
+		crossings.put(id, crossings.get(id) + count);
+	}
+
+	@Override
+	void update(int rank, double t, double a) {
+		double x0 = x.get(rank), v0 = v.get(rank);
+		x.put(rank, x0 + v0 * t + .5 * a * t * t);
+		v.put(rank, v0 + a * t);
+	}
+
+	@Override
+	void advance(int from, int to, double t) {
+		for (int i = from; i < to; i++) {
+			double dt = t - time.get(i);
+			double x0 = x.get(i), v0 = v.get(i);
+			x.put(i, x0 + v0 * dt + .5 * accel.get(i) * dt * dt);
+			v.put(i, v0 + accel.get(i) * dt);
+		}
+	}
+
+	@Override
+	void project(int from, int to, double t, double[] positions, double[] velocities) {
+		for (int i = from; i < to; i++) {
+			double dt = t - time.get(i);
+			int n = id.get(i);
+			positions[n] = x.get(i) + v.get(i) * dt + .5 * accel.get(i) * dt * dt;
+			velocities[n] = v.get(i) + accel.get(i) * dt;
+		}
+	}
+
+	@Override
+	void kick(int from, int to, double t) {
+		for (int i = from; i < to; i++) {
+			v.put(i, v.get(i) + accel.get(i) * t);
+		}
+	}
+
+	@Override
+	void drift(int from, int to, double t) {
+		for (int i = from; i < to; i++) {
+			x.put(i, x.get(i) + v.get(i) * t);
+		}
+	}
+
+	@Override
+	long sort(int from, int to) {
+		long exchanges = 0;
+		for (int i = from + 1; i < to; i++) {
+			double xi = x.get(i);
+			if (xi >= x.get(i - 1)) {
+				continue;
+			}
+			double vi = v.get(i), ti = time.get(i);
+			int idi = id.get(i);
+			int j = i;
+			while (j > from && x.get(j - 1) > xi) {//shift every particle to its right
+				x.put(j, x.get(j - 1));
+				v.put(j, v.get(j - 1));
+				time.put(j, time.get(j - 1));
+				id.put(j, id.get(j - 1));
+				rank.put(id.get(j), j);
+				addCrossings(id.get(j), 1);
+				j--;
+			}
+			x.put(j, xi);
+			v.put(j, vi);
+			time.put(j, ti);
+			id.put(j, idi);
+			rank.put(idi, j);
+			addCrossings(idi, i - j);
+			exchanges += i - j;
+		}
+		return exchanges;
+	}
+
+	@Override
+	void swap(int left, int right) {
+		double lx = x.get(left), rx = x.get(right);
+		if (lx < rx) {//exchange the positions first, as ArrayParticleStore does
+			double temp = lx;
+			lx = rx;
+			rx = temp;
+		}
+		//swap every value of the two particles
+		x.put(left, rx);
+		x.put(right, lx);
+
+		double tempV = v.get(left);
+		v.put(left, v.get(right));
+		v.put(right, tempV);
+
+		double tempT = time.get(left);
+		time.put(left, time.get(right));
+		time.put(right, tempT);
+
+		int tempID = id.get(left);
+		id.put(left, id.get(right));
+		id.put(right, tempID);
+
+		rank.put(id.get(left), left);
+		rank.put(id.get(right), right);
+		addCrossings(id.get(left), 1);
+		addCrossings(id.get(right), 1);
+	}
+
+	@Override
+	void resetTimes() {
+		setTimes(0.0);
+	}
+
+	@Override
+	void setTimes(double t) {
+		for (int i = 0; i < size; i++) {
+			time.put(i, t);
+		}
+	}
+}
@@ -0,0 +1,487 @@
+package simulation.components;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import simulation.listeners.LISTENER_Crossing;
+
+/**
+ * The {@code DomainEngine} class handles the crossings of a system on several
+ * threads at once, with the exact same results as handling them one at a
+ * time.
+ *
+ * <p>The ranks of the system are split into contiguous domains. A crossing
+ * only changes the two particles involved and the collision times of the
+ * neighboring pairs, so crossings within different domains are independent of
+ * each other. Only the boundary pairs, whose particles belong to two domains,
+ * couple them, along with the edge pairs at either end of every domain, whose
+ * crossings change a particle of a boundary pair. The engine therefore works
+ * in rounds:
+ * <br>1. The horizon of the round is the earliest collision of any boundary or
+ * edge pair. Every domain handles its own crossings up to the horizon on a
+ * separate thread, while the boundary pairs are left alone.</br>
+ * <br>2. A crossing within a domain may still move the collision of an edge
+ * pair before the horizon, and so change a particle of a boundary pair. The
+ * trajectory of every particle of a boundary pair was recorded, so each
+ * boundary pair is checked for a collision before the horizon.</br>
+ * <br>3. If one is found, every domain rolls back the crossings after the
+ * earliest such collision using its undo log, so that collision is handled
+ * next. The crossings that remain are committed and passed on to the
+ * listeners in order of time.</br>
+ * <br>4. Boundary pairs whose particles changed are predicted again. Once the
+ * earliest crossing of the system is that of a boundary or edge pair, it is
+ * handled on its own, exactly as the serial engine would.</br></p>
+ *
+ * <p>Rounds therefore only end at a small fraction of all crossings, roughly
+ * three for every domain out of every pair of the system, which makes the
+ * engine worthwhile for very large systems only.</p>
+ *
+ * <p>Every collision time is calculated from the same values and in the same
+ * order as in {@code ParticleSystem.simulate}, so the crossings and the state
+ * of the system are identical to those of the serial engine. Only crossings at
+ * the very same moment in different domains may be handled in another
+ * order.</p>
+ *
+ * @author Erik Nguyen
+ */
+final class DomainEngine {
+
+	/**
+	 * The number of values saved in the undo log for every crossing: its time,
+	 * the position, velocity and time frame of both particles, and the
+	 * collision times of the three pairs it changes.
+	 */
+	private static final int UNDO_VALUES = 13;
+	/**
+	 * The number of values recorded for every trajectory of a particle next to
+	 * a boundary: its time frame, position and velocity.
+	 */
+	private static final int EDGE_VALUES = 3;
+
+	private final ParticleSystem owner;
+	private final ParticleStore system;
+	private final DoubleBuffer next, base;
+	private final ENUM_StorageType storage;
+	private final int size;
+	private final Domain[] domains;
+	/**
+	 * The first rank of every domain, to find the domain of a rank.
+	 */
+	private final int[] firsts;
+	/**
+	 * The absolute collision time of every boundary pair, where boundary b lies
+	 * between domains b and b + 1.
+	 */
+	private final double[] boundary;
+	/**
+	 * Receives every crossing once it is committed, or null if nobody is
+	 * interested.
+	 */
+	private final LISTENER_Crossing output;
+	/**
+	 * The number of crossings committed since it was last taken.
+	 */
+	private long crossings;
+
+	/**
+	 * Splits a system into domains. The collision times must already be set.
+	 *
+	 * @param owner the system whose collisions are calculated
+	 * @param system the store of the system
+	 * @param next the collision time of every pair from its base time
+	 * @param base the base time of every pair
+	 * @param storage where the queues of the domains are kept
+	 * @param count the number of domains, each of which must hold at least 3
+	 * particles
+	 * @param output the listener committed crossings are passed on to, or null
+	 */
+	DomainEngine(ParticleSystem owner, ParticleStore system, DoubleBuffer next, DoubleBuffer base,
+			ENUM_StorageType storage, int count, LISTENER_Crossing output) {
+		this.owner = owner;
+		this.system = system;
+		this.next = next;
+		this.base = base;
+		this.storage = storage;
+		this.output = output;
+		size = system.size;
+		domains = new Domain[count];
+		firsts = new int[count];
+		for (int k = 0; k < count; k++) {
+			domains[k] = new Domain((int) ((long) size * k / count), (int) ((long) size * (k + 1) / count) - 1);
+			firsts[k] = domains[k].first;
+		}
+		boundary = new double[count - 1];
+		rebuild();
+	}
+
+	/**
+	 * Rebuilds the queue of every domain and the boundary times after the
+	 * collision times of the entire system were changed.
+	 */
+	void rebuild() {
+		for (Domain d : domains) {
+			for (int s = d.first; s < d.last; s++) {
+				d.queue.set(s - d.first, next.get(s) + base.get(s));
+			}
+			d.queue.rebuild();
+		}
+		for (int b = 0; b < boundary.length; b++) {
+			int s = domains[b].last;
+			boundary[b] = next.get(s) + base.get(s);
+		}
+	}
+
+	/**
+	 * Returns the number of crossings committed since the last call.
+	 *
+	 * @return the number of crossings
+	 */
+	long takeCrossings() {
+		long c = crossings;
+		crossings = 0;
+		return c;
+	}
+
+	/**
+	 * Handles every crossing before the specified time.
+	 *
+	 * @param until the time to stop at in system time units
+	 * @return the time of the next crossing, which is not before
+	 * {@code until}
+	 */
+	double advance(double until) {
+		while (true) {
+			//The earliest crossing of a boundary or edge pair
+			int sync = -1;
+			double syncTime = Double.MAX_VALUE;
+			for (int b = 0; b < boundary.length; b++) {
+				if (boundary[b] < syncTime) {
+					syncTime = boundary[b];
+					sync = domains[b].last;
+				}
+			}
+			double interior = Double.MAX_VALUE;
+			for (Domain d : domains) {
+				interior = Math.min(interior, d.queue.nextTime());
+				int edge = d.queue.size - 1;
+				if (d.queue.timeOf(0) < syncTime) {
+					syncTime = d.queue.timeOf(0);
+					sync = d.first;
+				}
+				if (d.queue.timeOf(edge) < syncTime) {
+					syncTime = d.queue.timeOf(edge);
+					sync = d.first + edge;
+				}
+			}
+
+			double t = Math.min(syncTime, interior);
+			if (!(t < until)) {
+				return t;
+			}
+			if (syncTime <= interior) {
+				crossAlone(sync, syncTime);
+			} else {
+				round(Math.min(syncTime, until));
+			}
+		}
+	}
+
+	/**
+	 * Lets every domain handle its crossings up to the horizon, and then
+	 * commits those that did not come after a boundary collision.
+	 *
+	 * @param horizon the time before which every domain handles its crossings
+	 */
+	private void round(final double horizon) {
+		IntStream.range(0, domains.length).parallel().forEach(k -> domains[k].process(horizon));
+
+		double missed = Double.MAX_VALUE;
+		for (int b = 0; b < boundary.length; b++) {
+			missed = Math.min(missed, firstCollision(domains[b], domains[b + 1], boundary[b], horizon));
+		}
+		if (missed < horizon) {
+			final double until = missed;
+			IntStream.range(0, domains.length).parallel().forEach(k -> domains[k].undo(until));
+		}
+
+		commit();
+		for (int b = 0; b < boundary.length; b++) {
+			if (domains[b].rightEdges > 1 || domains[b + 1].leftEdges > 1) {
+				int s = domains[b].last;
+				recalculate(s);
+				boundary[b] = next.get(s) + base.get(s);
+			}
+		}
+	}
+
+	/**
+	 * Finds the first collision of a boundary pair before the horizon, given
+	 * the trajectories its particles followed during the round.
+	 *
+	 * @param left the domain on the left of the boundary
+	 * @param right the domain on the right of the boundary
+	 * @param predicted the collision time of the pair at the start of the round
+	 * @param horizon the horizon of the round
+	 * @return the time of the collision, or {@code Double.MAX_VALUE} if there
+	 * is none before the horizon
+	 */
+	private double firstCollision(Domain left, Domain right, double predicted, double horizon) {
+		double[] l = left.right, r = right.left;
+		int i = 0, j = 0;
+		while (true) {
+			double lEnd = i + 1 < left.rightEdges ? l[(i + 1) * EDGE_VALUES] : horizon;
+			double rEnd = j + 1 < right.leftEdges ? r[(j + 1) * EDGE_VALUES] : horizon;
+			double end = Math.min(lEnd, rEnd);
+
+			double t = predicted;
+			if (i > 0 || j > 0) {
+				//Predicted as ParticleSystem.simulate does for the neighbors of a crossing
+				double lt = l[i * EDGE_VALUES], rt = r[j * EDGE_VALUES];
+				double b = Math.max(lt, rt);
+				double dt = ParticleSystem.collisionTime(
+						l[i * EDGE_VALUES + 1], l[i * EDGE_VALUES + 2], system.getAcceleration(left.last),
+						r[j * EDGE_VALUES + 1], r[j * EDGE_VALUES + 2], system.getAcceleration(right.first),
+						Math.abs(b - lt), Math.abs(b - rt));
+				t = (dt >= 0 ? dt : 0.0) + b;//negative times are treated as immediate
+			}
+			if (t < end) {
+				return t;
+			}
+			if (end >= horizon) {
+				return Double.MAX_VALUE;
+			}
+			if (lEnd == end) {
+				i++;
+			}
+			if (rEnd == end) {
+				j++;
+			}
+		}
+	}
+
+	/**
+	 * Passes every crossing handled by the domains during the round on to the
+	 * listener in order of time, and clears the undo logs.
+	 */
+	private void commit() {
+		for (Domain d : domains) {
+			crossings += d.events;
+		}
+		if (output != null) {
+			int[] heads = new int[domains.length];
+			while (true) {
+				int k = -1;
+				double t = Double.MAX_VALUE;
+				for (int d = 0; d < domains.length; d++) {
+					if (heads[d] < domains[d].events && domains[d].undo[heads[d] * UNDO_VALUES] < t) {
+						t = domains[d].undo[heads[d] * UNDO_VALUES];
+						k = d;
+					}
+				}
+				if (k < 0) {
+					break;
+				}
+				output.receiveCrossing(t, domains[k].slots[heads[k]++]);
+			}
+		}
+		for (Domain d : domains) {
+			d.events = 0;
+		}
+	}
+
+	/**
+	 * Handles a single crossing on its own, exactly as
+	 * {@code ParticleSystem.simulate} does.
+	 *
+	 * @param i the index of the left particle in the pair
+	 * @param t the time of the crossing
+	 */
+	private void crossAlone(int i, double t) {
+		cross(i, t);
+		crossings++;
+		if (output != null) {
+			output.receiveCrossing(t, i);
+		}
+		requeue(i);
+		if (i > 0) {
+			recalculate(i - 1);
+			requeue(i - 1);
+		}
+		if (i + 1 < size - 1) {
+			recalculate(i + 1);
+			requeue(i + 1);
+		}
+	}
+
+	/**
+	 * Passes the collision time of a pair on to the domain it belongs to, or
+	 * to the boundaries.
+	 *
+	 * @param s the index of the left particle in the pair
+	 */
+	private void requeue(int s) {
+		int k = Arrays.binarySearch(firsts, s);
+		Domain d = domains[k < 0 ? -k - 2 : k];
+		if (s == d.last) {
+			boundary[k < 0 ? -k - 2 : k] = next.get(s) + base.get(s);
+		} else {
+			d.queue.update(s - d.first, next.get(s) + base.get(s));
+		}
+	}
+
+	/**
+	 * Moves two neighboring particles to the moment of their crossing, lets
+	 * them pass through each other, and predicts their next collision, exactly
+	 * as {@code ParticleSystem.simulate} does.
+	 *
+	 * @param i the index of the left particle in the pair
+	 * @param t the time of the crossing
+	 */
+	private void cross(int i, double t) {
+		system.update(i, t - system.getTime(i), system.getAcceleration(i));
+		system.update(i + 1, t - system.getTime(i + 1), system.getAcceleration(i + 1));
+		system.swap(i, i + 1);
+		system.setTime(i, t);
+		system.setTime(i + 1, t);
+		base.put(i, t);
+		next.put(i, owner.calculateCollision(i, i + 1, 0.0, 0.0));
+	}
+
+	/**
+	 * Predicts the next collision of a pair whose particles may be in
+	 * different time frames, exactly as {@code ParticleSystem.simulate} does
+	 * for the neighbors of a crossing.
+	 *
+	 * @param s the index of the left particle in the pair
+	 */
+	private void recalculate(int s) {
+		base.put(s, Math.max(system.getTime(s), system.getTime(s + 1)));
+		next.put(s, owner.calculateCollision(s, s + 1,
+				Math.abs(base.get(s) - system.getTime(s)),
+				Math.abs(base.get(s) - system.getTime(s + 1))));
+	}
+
+	/**
+	 * A contiguous block of ranks along with the pairs within it.
+	 */
+	private final class Domain {
+
+		final int first, last;//the ranks of the domain, inclusive
+		final CollisionQueue queue;//the pairs from first to last - 1
+		int events;//the number of crossings in the undo log
+		int[] slots = new int[256], ids = new int[512];
+		double[] undo = new double[256 * UNDO_VALUES];
+		//The trajectories of the particles at both ends of the domain during the round
+		int leftEdges, rightEdges;
+		double[] left = new double[16 * EDGE_VALUES], right = new double[16 * EDGE_VALUES];
+
+		Domain(int first, int last) {
+			this.first = first;
+			this.last = last;
+			queue = CollisionQueue.create(last - first, storage);
+		}
+
+		/**
+		 * Handles every crossing within the domain before the horizon.
+		 */
+		void process(double horizon) {
+			leftEdges = 0;
+			rightEdges = 0;
+			left = edge(left, leftEdges++, first);
+			right = edge(right, rightEdges++, last);
+			while (true) {
+				int s = queue.nextSlot();
+				double t = queue.nextTime();
+				if (s < 0 || !(t < horizon)) {
+					return;
+				}
+				int i = first + s;
+				save(i, t);
+				cross(i, t);
+				queue.update(s, next.get(i) + base.get(i));
+				if (i > first) {
+					recalculate(i - 1);
+					queue.update(s - 1, next.get(i - 1) + base.get(i - 1));
+				} else {
+					left = edge(left, leftEdges++, first);
+				}
+				if (i + 1 < last) {
+					recalculate(i + 1);
+					queue.update(s + 1, next.get(i + 1) + base.get(i + 1));
+				} else {
+					right = edge(right, rightEdges++, last);
+				}
+			}
+		}
+
+		/**
+		 * Rolls back every crossing after the specified time.
+		 */
+		void undo(double until) {
+			while (events > 0 && undo[(events - 1) * UNDO_VALUES] > until) {
+				events--;
+				int i = slots[events], u = events * UNDO_VALUES;
+				system.set(i, ids[2 * events], undo[u + 1], undo[u + 2]);
+				system.setTime(i, undo[u + 3]);
+				system.set(i + 1, ids[2 * events + 1], undo[u + 4], undo[u + 5]);
+				system.setTime(i + 1, undo[u + 6]);
+				system.addCrossings(ids[2 * events], -1);
+				system.addCrossings(ids[2 * events + 1], -1);
+				for (int s = Math.max(i - 1, first); s <= Math.min(i + 1, last - 1); s++) {
+					int k = u + 7 + 2 * (s - i + 1);
+					next.put(s, undo[k]);
+					base.put(s, undo[k + 1]);
+					queue.update(s - first, next.get(s) + base.get(s));
+				}
+			}
+			while (leftEdges > 1 && left[(leftEdges - 1) * EDGE_VALUES] > until) {
+				leftEdges--;
+			}
+			while (rightEdges > 1 && right[(rightEdges - 1) * EDGE_VALUES] > until) {
+				rightEdges--;
+			}
+		}
+
+		/**
+		 * Saves everything a crossing is about to change into the undo log.
+		 */
+		private void save(int i, double t) {
+			if (events == slots.length) {
+				slots = Arrays.copyOf(slots, 2 * events);
+				ids = Arrays.copyOf(ids, 4 * events);
+				undo = Arrays.copyOf(undo, 2 * events * UNDO_VALUES);
+			}
+			int u = events * UNDO_VALUES;
+			slots[events] = i;
+			ids[2 * events] = system.getID(i);
+			ids[2 * events + 1] = system.getID(i + 1);
+			undo[u] = t;
+			undo[u + 1] = system.getX(i);
+			undo[u + 2] = system.getV(i);
+			undo[u + 3] = system.getTime(i);
+			undo[u + 4] = system.getX(i + 1);
+			undo[u + 5] = system.getV(i + 1);
+			undo[u + 6] = system.getTime(i + 1);
+			for (int s = Math.max(i - 1, first); s <= Math.min(i + 1, last - 1); s++) {
+				int k = u + 7 + 2 * (s - i + 1);
+				undo[k] = next.get(s);
+				undo[k + 1] = base.get(s);
+			}
+			events++;
+		}
+
+		/**
+		 * Records the current trajectory of the particle at an end of the
+		 * domain.
+		 */
+		private double[] edge(double[] log, int index, int rank) {
+			if ((index + 1) * EDGE_VALUES > log.length) {
+				log = Arrays.copyOf(log, 2 * log.length);
+			}
+			log[index * EDGE_VALUES] = system.getTime(rank);
+			log[index * EDGE_VALUES + 1] = system.getX(rank);
+			log[index * EDGE_VALUES + 2] = system.getV(rank);
+			return log;
+		}
+	}
+}
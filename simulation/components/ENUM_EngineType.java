@@ -0,0 +1,34 @@
+package simulation.components;
+
+/**
+ * This enum represents the ways a {@code ParticleSystem} can evolve its
+ * particles through time.
+ *
+ * @author Erik Nguyen
+ */
+public enum ENUM_EngineType {
+    /**
+     * Handles every crossing between two particles at the exact moment it
+     * happens. The energy of the system is conserved up to rounding errors.
+     */
+    EXACT,
+    /**
+     * Handles every crossing exactly like {@code EXACT}, but splits the ranks
+     * of the system into domains whose crossings are handled on separate
+     * threads. See {@code DomainEngine}.
+     */
+    PARALLEL,
+    /**
+     * Moves every particle at once by a fixed time step with a leapfrog
+     * integrator, taking each particle's acceleration from its rank, and
+     * re-sorts the particles by position after every step. Crossings within a
+     * step are not resolved, so crossing listeners are never notified and the
+     * energy of the system slowly drifts.
+     */
+    LEAPFROG,
+    /**
+     * Like {@code LEAPFROG}, but the time step shrinks along with the
+     * crossing time of the system, i.e. whenever the system collapses.
+     */
+    LEAPFROG_ADAPTIVE
+}
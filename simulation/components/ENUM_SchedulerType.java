@@ -0,0 +1,19 @@
+package simulation.components;
+
+/**
+ * This enum represents the ways a {@code ParticleSystem} can search for the
+ * next collision among its adjacent pairs of particles.
+ *
+ * @author Erik Nguyen
+ */
+public enum ENUM_SchedulerType {
+    /**
+     * Walks every pair for each collision. Kept for comparison purposes.
+     */
+    LINEAR_SCAN,
+    /**
+     * Keeps the pairs in a {@code CollisionQueue} so that each collision only
+     * costs a logarithmic amount of work.
+     */
+    TOURNAMENT_TREE
+}
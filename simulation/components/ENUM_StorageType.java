@@ -0,0 +1,22 @@
+package simulation.components;
+
+/**
+ * This enum represents the places a {@code ParticleSystem} can keep the state
+ * of its particles in.
+ *
+ * @author Erik Nguyen
+ */
+public enum ENUM_StorageType {
+    /**
+     * Keeps every value in primitive arrays on the heap.
+     */
+    HEAP,
+    /**
+     * Keeps every value in direct buffers outside of the heap, so that very
+     * large systems are neither limited by the size of the heap nor copied
+     * around by the garbage collector. This includes the predicted collision
+     * of every pair and the {@code CollisionQueue}. See
+     * {@code DirectParticleStore}.
+     */
+    DIRECT
+}
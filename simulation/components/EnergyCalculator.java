@@ -0,0 +1,152 @@
+package simulation.components;
+
+import java.util.stream.IntStream;
+
+/**
+ * The {@code EnergyCalculator} class calculates the energies of every particle
+ * in a system, along with the total kinetic and potential energies of the
+ * system, in {@code O(N)} time.
+ *
+ * <p>The potential of the particle with rank i is proportional to the sum of
+ * its distances to every other particle. Since the particles are sorted by
+ * position, this sum can be split into the particles on its left and the
+ * particles on its right:
+ * <br>{@code x_i * i - P_i + (S - P_i - x_i) - x_i * (N - 1 - i)}</br>
+ * <br>where {@code P_i} is the sum of the positions of every particle with a
+ * rank lower than i and {@code S} is the sum of all positions. Only a single
+ * running prefix sum is needed to find every potential.</br></p>
+ *
+ * <p>For very large systems the prefix sum can be found in parallel. The
+ * particles are split into blocks whose sums are found concurrently, the block
+ * sums are then scanned to find the offset of each block, and finally every
+ * block calculates the energies of its particles concurrently.</p>
+ *
+ * @author Erik Nguyen
+ */
+final class EnergyCalculator {
+
+	/**
+	 * The default number of particles at which the parallel path is used.
+	 */
+	static final int PARALLEL_THRESHOLD = 1 << 16;
+	/**
+	 * The number of blocks given to each available processor in the parallel
+	 * path, which allows uneven blocks to be balanced out.
+	 */
+	private static final int BLOCKS_PER_PROCESSOR = 4;
+
+	private final ParticleStore system;
+	private final int size;
+	private final double sizeSquared;
+	private final double sizeDoubled;
+	/**
+	 * Whether or not the parallel path is used.
+	 */
+	private boolean parallel;
+	/**
+	 * The total potential energy found by the last calculation.
+	 */
+	double potentialEnergy;
+	/**
+	 * The total kinetic energy found by the last calculation.
+	 */
+	double kineticEnergy;
+
+	/**
+	 * Constructs a calculator for the particles within a store.
+	 *
+	 * @param store the store holding the particles, ordered by position
+	 */
+	EnergyCalculator(ParticleStore store) {
+		system = store;
+		size = store.size;
+		sizeSquared = (double) size * size;
+		sizeDoubled = 2.0 * size;
+		parallel = size >= PARALLEL_THRESHOLD;
+	}
+
+	/**
+	 * Sets whether or not the parallel path is used.
+	 *
+	 * @param parallel true if the energies should be calculated in parallel
+	 */
+	void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Calculates the energy of every particle, storing them within the store,
+	 * along with the total energies of the system.
+	 *
+	 * <p>The particles must be sorted by position. The total energies are
+	 * available through {@code potentialEnergy} and {@code kineticEnergy}
+	 * afterwards.</p>
+	 */
+	void calculate() {
+		int blocks = 1;
+		if (parallel) {
+			blocks = Math.min(size, Runtime.getRuntime().availableProcessors() * BLOCKS_PER_PROCESSOR);
+		}
+		final int blockLength = (size + blocks - 1) / blocks;
+		final int numBlocks = (size + blockLength - 1) / blockLength;
+
+		//Find the sum of the positions in every block
+		final double[] offset = new double[numBlocks];
+		blockRange(numBlocks).forEach(b -> {
+			double sum = 0.0;
+			for (int i = b * blockLength; i < Math.min(size, (b + 1) * blockLength); i++) {
+				sum += system.getX(i);
+			}
+			offset[b] = sum;
+		});
+
+		//Turn the block sums into the prefix sum at the start of each block
+		double total = 0.0;
+		for (int b = 0; b < numBlocks; b++) {
+			double sum = offset[b];
+			offset[b] = total;
+			total += sum;
+		}
+
+		//Find the energies of every particle in every block
+		final double positionSum = total;
+		final double[] potential = new double[numBlocks];
+		final double[] kinetic = new double[numBlocks];
+		blockRange(numBlocks).forEach(b -> {
+			double prefix = offset[b];
+			double pSum = 0.0, kSum = 0.0;
+			for (int i = b * blockLength; i < Math.min(size, (b + 1) * blockLength); i++) {
+				double x = system.getX(i), v = system.getV(i);
+				double sum = (x * i - prefix) + (positionSum - prefix - x - x * (size - 1 - i));
+				system.setEnergy(system.getID(i), sum / sizeSquared, v * v / sizeDoubled);
+				pSum += sum;
+				kSum += v * v;
+				prefix += x;
+			}
+			potential[b] = pSum;
+			kinetic[b] = kSum;
+		});
+
+		potentialEnergy = 0.0;
+		kineticEnergy = 0.0;
+		for (int b = 0; b < numBlocks; b++) {
+			potentialEnergy += potential[b];
+			kineticEnergy += kinetic[b];
+		}
+
+		//Correct the energy values by the missing scale factor
+		potentialEnergy /= 2 * sizeSquared;
+		kineticEnergy /= sizeDoubled;
+	}
+
+	/**
+	 * Returns the indeces of every block, in parallel if requested.
+	 *
+	 * @param numBlocks the number of blocks
+	 * @return a stream over the index of every block
+	 */
+	private IntStream blockRange(int numBlocks) {
+		IntStream range = IntStream.range(0, numBlocks);
+		return parallel ? range.parallel() : range;
+	}
+}
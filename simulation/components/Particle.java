@@ -197,6 +197,20 @@ public class Particle implements Comparable<Particle> {
 		time += t;
 	}
 
+	/**
+	 * Brings this particle up to date with the state held for it within a
+	 * {@code ParticleStore}.
+	 *
+	 * @param position the position of the particle
+	 * @param velocity the velocity of the particle
+	 * @param timeFrame the time frame that the particle stands in
+	 */
+	void sync(double position, double velocity, double timeFrame) {
+		x = position;
+		v = velocity;
+		time = timeFrame;
+	}
+
 	/**
 	 * Returns a string representation of the particle with its ID number first,
 	 * followed by it's position, followed by it's velocity, followed by the
@@ -0,0 +1,350 @@
+package simulation.components;
+
+/**
+ * The {@code ParticleStore} class holds the state of every particle in a
+ * {@code ParticleSystem} ordered by rank, where the rank of a particle is its
+ * index in the system when sorted by position.
+ *
+ * <p>Rather than keeping an array of {@code Particle} objects, a store keeps
+ * positions, velocities, accelerations, time frames and ID numbers as
+ * primitive values. This
+ * avoids following a pointer to a separate object for every access during a
+ * collision and drastically reduces the memory needed by very large systems.
+ * Values are addressed by rank, with the exception of the energies which are
+ * addressed by ID number since they are only valid at the moment they were
+ * calculated, and the crossing counters, which follow each particle.</p>
+ *
+ * <p>Consumers that still require {@code Particle} objects may request them
+ * through {@code getParticles()}. These are only created upon the first
+ * request.</p>
+ *
+ * @author Erik Nguyen
+ */
+public abstract class ParticleStore {
+
+	/**
+	 * The number of particles in the store.
+	 */
+	public final int size;
+	/**
+	 * The view of this store as particles, ordered by rank. This is null until
+	 * it is first requested.
+	 */
+	private Particle[] view;
+	/**
+	 * The particles of the view, ordered by ID number.
+	 */
+	private Particle[] viewByID;
+
+	/**
+	 * Constructs a store for the specified number of particles.
+	 *
+	 * @param numParticles the number of particles in the store
+	 */
+	ParticleStore(int numParticles) {
+		size = numParticles;
+	}
+
+	/**
+	 * Returns the position of the particle with the specified rank.
+	 *
+	 * @param rank the rank of the particle
+	 * @return the position of the particle
+	 */
+	public abstract double getX(int rank);
+
+	/**
+	 * Returns the velocity of the particle with the specified rank.
+	 *
+	 * @param rank the rank of the particle
+	 * @return the velocity of the particle
+	 */
+	public abstract double getV(int rank);
+
+	/**
+	 * Returns the time frame that the particle with the specified rank is
+	 * located at in system time units.
+	 *
+	 * @param rank the rank of the particle
+	 * @return the time frame of the particle
+	 */
+	public abstract double getTime(int rank);
+
+	/**
+	 * Returns the ID number of the particle with the specified rank.
+	 *
+	 * @param rank the rank of the particle
+	 * @return the ID number of the particle
+	 */
+	public abstract int getID(int rank);
+
+	/**
+	 * Returns the acceleration of the particle with the specified rank, which
+	 * only depends on the rank.
+	 *
+	 * @param rank the rank of the particle
+	 * @return the acceleration of the particle
+	 */
+	public abstract double getAcceleration(int rank);
+
+	/**
+	 * Returns the rank of the particle with the specified ID number.
+	 *
+	 * @param id the ID number of the particle
+	 * @return the rank of the particle
+	 */
+	public abstract int getRank(int id);
+
+	/**
+	 * Returns the potential energy of the particle with the specified ID number
+	 * as of the last time energies were calculated.
+	 *
+	 * @param id the ID number of the particle
+	 * @return the potential energy of the particle
+	 */
+	public abstract double getPotentialEnergy(int id);
+
+	/**
+	 * Returns the kinetic energy of the particle with the specified ID number
+	 * as of the last time energies were calculated.
+	 *
+	 * @param id the ID number of the particle
+	 * @return the kinetic energy of the particle
+	 */
+	public abstract double getKineticEnergy(int id);
+
+	/**
+	 * Returns the total energy of the particle with the specified ID number as
+	 * of the last time energies were calculated.
+	 *
+	 * @param id the ID number of the particle
+	 * @return the total energy of the particle
+	 */
+	public double getEnergy(int id) {
+		return getPotentialEnergy(id) + getKineticEnergy(id);
+	}
+
+	/**
+	 * Returns the number of times the particle with the specified ID number
+	 * passed through another particle. Every exchange of two neighbors by
+	 * {@code swap} or {@code sort} counts once for each of them.
+	 *
+	 * @param id the ID number of the particle
+	 * @return the number of crossings of the particle
+	 */
+	public abstract long getCrossings(int id);
+
+	/**
+	 * Places a particle at the specified rank.
+	 *
+	 * @param rank the rank of the particle
+	 * @param id the ID number of the particle
+	 * @param x the position of the particle
+	 * @param v the velocity of the particle
+	 */
+	abstract void set(int rank, int id, double x, double v);
+
+	/**
+	 * Sets the position of the particle with the specified rank.
+	 *
+	 * @param rank the rank of the particle
+	 * @param x the new position of the particle
+	 */
+	abstract void setX(int rank, double x);
+
+	/**
+	 * Sets the velocity of the particle with the specified rank.
+	 *
+	 * @param rank the rank of the particle
+	 * @param v the new velocity of the particle
+	 */
+	abstract void setV(int rank, double v);
+
+	/**
+	 * Sets the time frame of the particle with the specified rank.
+	 *
+	 * @param rank the rank of the particle
+	 * @param t the new time frame of the particle in system time units
+	 */
+	abstract void setTime(int rank, double t);
+
+	/**
+	 * Sets the acceleration of the particle with the specified rank.
+	 *
+	 * @param rank the rank of the particle
+	 * @param a the acceleration of every particle at this rank
+	 */
+	abstract void setAcceleration(int rank, double a);
+
+	/**
+	 * Sets the energies of the particle with the specified ID number.
+	 *
+	 * @param id the ID number of the particle
+	 * @param potential the potential energy of the particle
+	 * @param kinetic the kinetic energy of the particle
+	 */
+	abstract void setEnergy(int id, double potential, double kinetic);
+
+	/**
+	 * Adds to the number of crossings of the particle with the specified ID
+	 * number, e.g. to restore it from a checkpoint or to take back a crossing
+	 * that was rolled back.
+	 *
+	 * @param id the ID number of the particle
+	 * @param count the number of crossings to add, which may be negative
+	 */
+	abstract void addCrossings(int id, long count);
+
+	/**
+	 * Updates the particle with the specified rank by an amount of time at a
+	 * given acceleration according to basic kinematic equations. This matches
+	 * {@code Particle.update}, although the time frame is left untouched.
+	 *
+	 * @param rank the rank of the particle
+	 * @param t the amount of time the particle spends moving
+	 * @param a the acceleration of the particle
+	 */
+	abstract void update(int rank, double t, double a);
+
+	/**
+	 * Updates every particle with a rank from {@code from} up to but not
+	 * including {@code to} to the same time frame, as if each was updated by
+	 * {@code update} for the time between its own time frame and the new one.
+	 * The time frames themselves are left untouched.
+	 *
+	 * @param from the first rank to be updated
+	 * @param to the rank after the last one to be updated
+	 * @param t the time frame to update the particles to in system time units
+	 */
+	abstract void advance(int from, int to, double t);
+
+	/**
+	 * Finds where every particle with a rank from {@code from} up to but not
+	 * including {@code to} would be at the same time frame, without updating
+	 * any of them. The results are stored by ID number.
+	 *
+	 * @param from the first rank to be projected
+	 * @param to the rank after the last one to be projected
+	 * @param t the time frame to project the particles to in system time units
+	 * @param positions the array the positions are stored in by ID number
+	 * @param velocities the array the velocities are stored in by ID number
+	 */
+	abstract void project(int from, int to, double t, double[] positions, double[] velocities);
+
+	/**
+	 * Changes the velocity of every particle with a rank from {@code from} up
+	 * to but not including {@code to} as if it were accelerated for an amount
+	 * of time, without moving it.
+	 *
+	 * @param from the first rank to be updated
+	 * @param to the rank after the last one to be updated
+	 * @param t the amount of time the particles are accelerated
+	 */
+	abstract void kick(int from, int to, double t);
+
+	/**
+	 * Moves every particle with a rank from {@code from} up to but not
+	 * including {@code to} at its current velocity for an amount of time.
+	 *
+	 * @param from the first rank to be updated
+	 * @param to the rank after the last one to be updated
+	 * @param t the amount of time the particles move
+	 */
+	abstract void drift(int from, int to, double t);
+
+	/**
+	 * Sorts the particles with a rank from {@code from} up to but not
+	 * including {@code to} by position, so that they are ranked correctly
+	 * again after being moved by {@code drift}.
+	 *
+	 * <p>Particles rarely move far from their previous ranks, so this is done
+	 * by insertion sort, whose cost is proportional to the number of pairs out
+	 * of order. This is also the number of crossings that took place, which
+	 * are counted for every particle involved.</p>
+	 *
+	 * @param from the first rank to be sorted
+	 * @param to the rank after the last one to be sorted
+	 * @return the number of pairs of particles that were out of order
+	 */
+	abstract long sort(int from, int to);
+
+	/**
+	 * Swaps the particles located at two neighboring ranks.
+	 *
+	 * <p>If the particle on the left does not physically lie to the right of
+	 * the particle on the right, their positions are exchanged before the
+	 * particles themselves are exchanged. See
+	 * {@code ParticleSystem.swap}. The exchange counts as a crossing of both
+	 * particles.</p>
+	 *
+	 * @param left the rank of the left particle in the pair
+	 * @param right the rank of the right particle in the pair
+	 */
+	abstract void swap(int left, int right);
+
+	/**
+	 * Resets the time frame of every particle to 0.
+	 */
+	abstract void resetTimes();
+
+	/**
+	 * Sets the time frame of every particle to the same value.
+	 *
+	 * @param t the time frame in system time units
+	 */
+	abstract void setTimes(double t);
+
+	/**
+	 * Shifts every particle by the amounts specified. See
+	 * {@code Particle.shift}.
+	 *
+	 * @param position the amount to shift each position by
+	 * @param velocity the amount to shift each velocity by
+	 */
+	void shift(double position, double velocity) {
+		for (int i = 0; i < size; i++) {
+			setX(i, getX(i) - position);
+			setV(i, getV(i) - velocity);
+		}
+	}
+
+	/**
+	 * Scales every particle according to the total energy of the system. See
+	 * {@code Particle.scale}.
+	 *
+	 * @param systemEnergy the energy of the system
+	 */
+	void scale(double systemEnergy) {
+		for (int i = 0; i < size; i++) {
+			setV(i, (getV(i) / 2) * Math.sqrt(3 / systemEnergy));
+			setX(i, 3 * getX(i) / (4 * systemEnergy));
+		}
+	}
+
+	/**
+	 * Returns the particles of this store as {@code Particle} objects ordered
+	 * by rank.
+	 *
+	 * <p>The same array is returned by every call, and its particles are
+	 * brought up to date with the store each time. Changes made to the returned
+	 * particles are not reflected in the store.</p>
+	 *
+	 * @return the particles of this store ordered by rank
+	 */
+	public synchronized Particle[] getParticles() {
+		if (view == null) {
+			view = new Particle[size];
+			viewByID = new Particle[size];
+			for (int i = 0; i < size; i++) {
+				viewByID[i] = new Particle(i, 0.0, 0.0);
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			int id = getID(i);
+			view[i] = viewByID[id];
+			view[i].sync(getX(i), getV(i), getTime(i));
+			view[i].setEnergy(getPotentialEnergy(id), getKineticEnergy(id));
+		}
+		return view;
+	}
+}
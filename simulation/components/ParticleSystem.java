@@ -1,10 +1,19 @@
 package simulation.components;
 
+import simulation.listeners.EVENT_Sampled;
 import simulation.listeners.EVENT_Updated;
+import simulation.listeners.LISTENER_Crossing;
+import simulation.listeners.LISTENER_Sampled;
 import simulation.listeners.LISTENER_Updated;
 import static simulation.Mainframe.*;
+import java.nio.DoubleBuffer;
 import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 import simulation.EXCEPTION_Simulation;
 import simulation.Mainframe;
 
@@ -17,7 +26,11 @@ import simulation.Mainframe;
  * <p>Unfortunately this class is currently designed assuming that no more than
  * 2 particles can ever collide at the same location at the same time. This is 
  * a HUGE error and a completely false assumption and breaks down in highly 
- * symmetric systems.</p>
+ * symmetric systems. Collision times that come out negative through
+ * rounding, as they do in such systems, are treated as immediate rather than
+ * ending the simulation. Where many particles meet at once, a batch window
+ * (see {@code setBatchWindow}) resolves every crossing of neighboring pairs
+ * within the window together, at a small loss of precision.</p>
  * @author Erik Nguyen
  */
 public final class ParticleSystem {
@@ -32,26 +45,31 @@ public final class ParticleSystem {
 	 */
 	public static final double CHARACTERISTIC_TIME = Math.PI * 2;
 	/**
-	 * The number of particles in the ParticleSystem.
-	 */
-	public final int size;
-	/**
-	 * Useful constant that holds the value {@code size * 2}.
+	 * The number of particles drawn from each random stream when a system is
+	 * generated. Blocks are drawn in parallel for very large systems.
 	 */
-	private final int sizeDoubled;
+	private static final int GENERATION_BLOCK = 1 << 14;
 	/**
-	 * Useful constant that holds the value {@code size * size}.
+	 * The number of particles in the ParticleSystem.
 	 */
-	private final int sizeSquared;
+	public final int size;
 	/**
 	 * The maximum amount of characteristic time units in which the simulation
 	 * will run.
 	 */
 	public final int maxSimulationTime;
+	/**
+	 * The seed from which the initial configuration of the system was drawn.
+	 */
+	public final long seed;
 	/**
 	 * The virial ratio of the system of particles.
 	 */
 	private double virialRatio;
+	/**
+	 * The virial ratio of the system of particles once it was generated.
+	 */
+	private final double initialVirialRatio;
 	/**
 	 * The interval length at which the system's data is recorded for viewing in
 	 * system time units.
@@ -82,30 +100,126 @@ public final class ParticleSystem {
 	 * Holds all of the listeners for this simulated system.
 	 */
 	private final ArrayDeque<LISTENER_Updated> _listeners = new ArrayDeque<LISTENER_Updated>();
+	/**
+	 * Holds all of the crossing listeners for this simulated system. An array
+	 * is used as it is read after every single crossing.
+	 */
+	private LISTENER_Crossing[] _crossingListeners = new LISTENER_Crossing[0];
+	/**
+	 * Holds all of the sample listeners for this simulated system.
+	 */
+	private final ArrayDeque<LISTENER_Sampled> _sampleListeners = new ArrayDeque<LISTENER_Sampled>();
+	/**
+	 * The times at which samples were requested in characteristic time units,
+	 * earliest first.
+	 */
+	private final PriorityQueue<Double> sampleTimes = new PriorityQueue<Double>();
+	/**
+	 * The positions and velocities of the particles handed to sample listeners
+	 * by ID number. These are only created upon the first sample.
+	 */
+	private double[] samplePositions, sampleVelocities;
 	/**
 	 * Holds the amount of time the system has been evolving in characteristic
 	 * time units.
 	 */
 	private double simulationTime = 0.0;
 	/**
-	 * The accelerations of each particle in the system by index.
-	 *
-	 * <p>The values within this array are constant and apply to the particle in
-	 * the respective index of {@code system}. As such this requires the
-	 * particles in the corresponding array to change indeces as they move
-	 * around in the system.</p>
+	 * The state of every particle within this specific system, ordered by
+	 * position.
+	 */
+	private final ParticleStore system;
+	/**
+	 * Where the state of every particle is kept.
 	 */
-	private final double[] accel;
+	private final ENUM_StorageType storage;
 	/**
-	 * The array of particles within this specific system.
+	 * Calculates the energies of the particles within {@code system}.
 	 */
-	private final Particle[] system;
+	private final EnergyCalculator energies;
 	
+	/**
+	 * Whether or not the whole system is updated in parallel at the end of each
+	 * interval.
+	 */
+	private boolean parallelUpdate;
+	/**
+	 * The number of blocks given to each available processor when the whole
+	 * system is updated in parallel.
+	 */
+	private static final int BLOCKS_PER_PROCESSOR = 4;
+
 	/**
 	 * The type of system (configuration wise) that the particles are initialized
 	 * in.
 	 */
 	public final ENUM_SystemType systemType;
+	/**
+	 * The way in which the next collision is searched for.
+	 */
+	private ENUM_SchedulerType scheduler = ENUM_SchedulerType.TOURNAMENT_TREE;
+	/**
+	 * The way in which the particles are evolved through time.
+	 */
+	private ENUM_EngineType engine = ENUM_EngineType.EXACT;
+	/**
+	 * The time step of the leapfrog engines in characteristic time units. The
+	 * adaptive engine never takes a longer step than this.
+	 */
+	private double timeStep = 0.001;
+	/**
+	 * The total energy of the system once it was generated or resumed, against
+	 * which the energy error is measured.
+	 */
+	private final double initialEnergy;
+	/**
+	 * The number of domains the parallel engine splits the system into, or 0
+	 * for one per available processor.
+	 */
+	private int domains = 0;
+	/**
+	 * The smallest number of particles in a domain when the number of domains
+	 * is chosen automatically, so that every domain has enough crossings of
+	 * its own to be worth a thread.
+	 */
+	private static final int MIN_DOMAIN_SIZE = 256;
+	/**
+	 * The window in characteristic time units within which the crossings of
+	 * neighboring pairs are resolved together as one batch, or 0 to handle
+	 * every crossing on its own.
+	 */
+	private double batchWindow = 0.0;
+	/**
+	 * The number of pairs on either side of a batch that are looked at for
+	 * crossings before its end. A crossing further out only reaches the batch
+	 * after a chain of as many crossings within the window, which is rare
+	 * enough that it is left to be treated as immediate at the end of the
+	 * batch.
+	 */
+	private static final int BATCH_MARGIN = 6;
+	/**
+	 * The massless tracer particles of the system, or null if it has none.
+	 */
+	private TracerSet tracers;
+	/**
+	 * The longest step the tracers are advanced by in characteristic time
+	 * units.
+	 */
+	private double tracerStep = 0.001;
+	/**
+	 * The number of tracer steps taken within the current interval.
+	 */
+	private int tracerStepsTaken;
+	/**
+	 * The time at which the tracers are advanced next in system time units
+	 * within the current interval.
+	 */
+	private double nextTracerTime = Double.POSITIVE_INFINITY;
+	/**
+	 * Mixed into the seed of the system to draw its tracers from a stream of
+	 * their own.
+	 */
+	private static final long TRACER_SEED = 0x5452414345525321L;
 
 	/**
 	 * Constructs a system of particles based upon the desired parameters.
@@ -134,25 +248,122 @@ public final class ParticleSystem {
 	 * @param type the initial configuration of the system
 	 */
 	public ParticleSystem(int numParticles, int simLength, double intervalSize, double virial, ENUM_SystemType type, Mainframe simulator) {
+		this(numParticles, simLength, intervalSize, virial, type, ThreadLocalRandom.current().nextLong(), simulator);
+	}
+
+	/**
+	 * Constructs a system of particles based upon the desired parameters, with
+	 * an initial configuration drawn from a fixed seed. Systems constructed
+	 * from the same parameters and seed are identical.
+	 *
+	 * @param numParticles the number of particles to be put in the system
+	 * @param simLength the length of time to allow the system to evolve in
+	 * characteristic time units
+	 * @param intervalSize the size of the interval at which the system will be
+	 * recorded in characteristic time units
+	 * @param virial the desired virial ratio for the system
+	 * @param type the initial configuration of the system
+	 * @param seed the seed of the initial configuration
+	 */
+	public ParticleSystem(int numParticles, int simLength, double intervalSize, double virial, ENUM_SystemType type, long seed, Mainframe simulator) {
+		this(numParticles, simLength, intervalSize, virial, type, seed, ENUM_StorageType.HEAP, simulator);
+	}
+
+	/**
+	 * Constructs a system of particles based upon the desired parameters, with
+	 * an initial configuration drawn from a fixed seed, whose particles are
+	 * kept in the specified kind of storage. The storage has no effect on the
+	 * simulation itself.
+	 *
+	 * @param numParticles the number of particles to be put in the system
+	 * @param simLength the length of time to allow the system to evolve in
+	 * characteristic time units
+	 * @param intervalSize the size of the interval at which the system will be
+	 * recorded in characteristic time units
+	 * @param virial the desired virial ratio for the system
+	 * @param type the initial configuration of the system
+	 * @param seed the seed of the initial configuration
+	 * @param storage where the state of the particles is kept
+	 */
+	public ParticleSystem(int numParticles, int simLength, double intervalSize, double virial, ENUM_SystemType type, long seed,
+			ENUM_StorageType storage, Mainframe simulator) {
 		this.simulator = simulator;
+		this.seed = seed;
+		this.storage = storage;
 		size = numParticles;
-		sizeSquared = size * size;
-		sizeDoubled = size * 2;
 		maxSimulationTime = simLength;
-		system = new Particle[size];
-		accel = new double[size];
+		system = createStore(size, storage);
+		energies = new EnergyCalculator(system);
 		systemType = type;
+		parallelUpdate = size >= EnergyCalculator.PARALLEL_THRESHOLD;
 
 		setAccelerations();//initialize the acceleration values
 
 		switch (type) {//Generate the system
 			case WATERBAG_RECTANGULAR:
-				generateRectangular(virial);
+				generateRectangular(virial, new SplittableRandom(seed));
 				break;
 		}
 
 		characteristicInterval = intervalSize;
 		systemInterval = characteristicInterval * CHARACTERISTIC_TIME;
+		initialVirialRatio = virialRatio;
+		initialEnergy = getEnergy();
+	}
+
+	/**
+	 * Reconstructs a system of particles from a checkpoint. Calling
+	 * {@code simulate()} resumes the simulation from the moment the checkpoint
+	 * was taken, without notifying listeners of the state at that moment a
+	 * second time.
+	 *
+	 * @param checkpoint the checkpoint to resume from
+	 * @param simulator the simulator the system belongs to
+	 */
+	public ParticleSystem(Checkpoint checkpoint, Mainframe simulator) {
+		this(checkpoint, ENUM_StorageType.HEAP, simulator);
+	}
+
+	/**
+	 * Reconstructs a system of particles from a checkpoint, keeping its
+	 * particles in the specified kind of storage. See
+	 * {@code ParticleSystem(Checkpoint, Mainframe)}.
+	 *
+	 * @param checkpoint the checkpoint to resume from
+	 * @param storage where the state of the particles is kept
+	 * @param simulator the simulator the system belongs to
+	 */
+	public ParticleSystem(Checkpoint checkpoint, ENUM_StorageType storage, Mainframe simulator) {
+		this.simulator = simulator;
+		this.storage = storage;
+		size = checkpoint.size;
+		maxSimulationTime = checkpoint.maxSimulationTime;
+		system = createStore(size, storage);
+		energies = new EnergyCalculator(system);
+		systemType = checkpoint.systemType;
+		parallelUpdate = size >= EnergyCalculator.PARALLEL_THRESHOLD;
+		seed = checkpoint.seed;
+		characteristicInterval = checkpoint.characteristicInterval;
+		systemInterval = characteristicInterval * CHARACTERISTIC_TIME;
+		initialVirialRatio = checkpoint.initialVirialRatio;
+		simulationTime = checkpoint.simulationTime;
+
+		setAccelerations();
+		for (int i = 0; i < size; i++) {
+			system.set(i, checkpoint.id[i], checkpoint.x[i], checkpoint.v[i]);
+			system.setTime(i, checkpoint.time[i]);
+			system.addCrossings(checkpoint.id[i], checkpoint.crossings[i]);
+		}
+		nextCollisionTime = doubles(size - 1);
+		baseCollisionTime = doubles(size - 1);
+		for (int i = 0; i < size - 1; i++) {
+			nextCollisionTime.put(i, checkpoint.nextCollisionTime[i]);
+			baseCollisionTime.put(i, checkpoint.baseCollisionTime[i]);
+		}
+		resumed = true;
+
+		calculateEnergy();
+		initialEnergy = checkpoint.initialEnergy;
 	}
 
 	/**
@@ -165,20 +376,53 @@ public final class ParticleSystem {
 	 * Therefore, posBound = 1 / 2 * Vr.</p>
 	 * <p>The system is then shifted and scaled.<\p>
 	 *
+	 * <p>Every block of {@code GENERATION_BLOCK} particles is drawn from its own
+	 * stream split off of the generator, so blocks can be drawn in parallel
+	 * while the system only depends on the seed. Since positions and
+	 * velocities are drawn independently of each other, the positions are
+	 * sorted on their own and paired with the velocities in the order they
+	 * were drawn. Particles are numbered by their initial rank.</p>
+	 *
 	 * @param virial the desired virial ratio for the waterbag
+	 * @param random the generator to draw the particles from
 	 */
-	private void generateRectangular(double virial) {
-		double xRange = 1.0 / (2 * virial);
-		double vRange = 1;
-		for (int i = 0; i < size; i++) {
-			double tempP = Math.random() * xRange;//position before correction
-			double tempV = Math.random() * vRange;//velocity before correction
-			positionAccum += tempP;//accumulate positions
-			velocityAccum += tempV;//accumulate velocities
-			system[i] = new Particle(i, tempP, tempV);
+	private void generateRectangular(double virial, SplittableRandom random) {
+		final double xRange = 1.0 / (2 * virial);
+		final double vRange = 1;
+		final double[] x = new double[size];
+		final double[] v = new double[size];
+		final int blocks = (size + GENERATION_BLOCK - 1) / GENERATION_BLOCK;
+		final SplittableRandom[] streams = new SplittableRandom[blocks];
+		for (int b = 0; b < blocks; b++) {
+			streams[b] = random.split();
 		}
 
-		Arrays.sort(system);//Sort the system by position
+		final double[] xSum = new double[blocks], vSum = new double[blocks];
+		IntStream range = IntStream.range(0, blocks);
+		if (size >= EnergyCalculator.PARALLEL_THRESHOLD) {
+			range = range.parallel();
+		}
+		range.forEach(b -> {
+			SplittableRandom stream = streams[b];
+			double posSum = 0.0, velSum = 0.0;
+			for (int i = b * GENERATION_BLOCK; i < Math.min(size, (b + 1) * GENERATION_BLOCK); i++) {
+				x[i] = stream.nextDouble() * xRange;//position before correction
+				v[i] = stream.nextDouble() * vRange;//velocity before correction
+				posSum += x[i];
+				velSum += v[i];
+			}
+			xSum[b] = posSum;
+			vSum[b] = velSum;
+		});
+		for (int b = 0; b < blocks; b++) {
+			positionAccum += xSum[b];//accumulate positions
+			velocityAccum += vSum[b];//accumulate velocities
+		}
+
+		Arrays.parallelSort(x);//Sort the system by position
+		for (int i = 0; i < size; i++) {
+			system.set(i, i, x[i], v[i]);
+		}
 		shiftAndScale();//Shift the system and then scale it
 	}
 
@@ -197,7 +441,7 @@ public final class ParticleSystem {
 	 */
 	private void setAccelerations() {
 		for (int i = 0; i < size; i++) {
-			accel[i] = (size - 2 * (i + 1) + 1.0) / size;
+			system.setAcceleration(i, (size - 2 * (i + 1) + 1.0) / size);
 		}
 	}
 
@@ -221,45 +465,52 @@ public final class ParticleSystem {
 		velocityAccum /= size;//Find the current center of momentum
 
 		//shift the particles
-		for (Particle p : system) {
-			p.shift(positionAccum, velocityAccum);
-		}
+		system.shift(positionAccum, velocityAccum);
 
 		calculateEnergy();
 		double initialEnergy = kineticEnergy + potentialEnergy;
 
-		for (Particle p : system) {//Scale the system by the energy
-			p.scale(initialEnergy);
-		}
+		system.scale(initialEnergy);//Scale the system by the energy
 
 		calculateEnergy();//Recalculate energy values
 	}
 
 	/**
 	 * Calculates the total energy of the system at the current frame in time.
+	 *
+	 * <p>This relies on the particles being sorted by position, which allows
+	 * the energies to be found in {@code O(N)} time. See
+	 * {@code EnergyCalculator}.</p>
 	 */
 	private void calculateEnergy() {
-		//reset the energy;
-		potentialEnergy = 0.0;
-		kineticEnergy = 0.0;
-
-		for (Particle p1 : system) {
-			double sum = 0.0;
-			for (Particle p2 : system) {
-				sum += Math.abs(p1.x - p2.x);//accumulate potentials
-			}
-			p1.setEnergy(sum / sizeSquared, p1.v * p1.v / sizeDoubled);
-			//Accumulate the energies
-			potentialEnergy += sum;
-			kineticEnergy += p1.v * p1.v;
-		}
-
-		//Correct the energy values by the missing scale factor
-		potentialEnergy /= 2 * sizeSquared;
-		kineticEnergy /= sizeDoubled;
+		energies.calculate();
+		potentialEnergy = energies.potentialEnergy;
+		kineticEnergy = energies.kineticEnergy;
 		virialRatio = 2 * kineticEnergy / potentialEnergy;
 	}
 
+	/**
+	 * Sets whether or not the energies of the system are calculated in
+	 * parallel. By default this is only done for systems of at least
+	 * 65536 particles.
+	 *
+	 * @param parallel true if the energies should be calculated in parallel
+	 */
+	public void setParallelEnergy(boolean parallel) {
+		energies.setParallel(parallel);
+	}
+
+	/**
+	 * Sets whether or not the whole system is updated in parallel at the end
+	 * of each interval. By default this is only done for systems of at least
+	 * 65536 particles. Either way the results are identical.
+	 *
+	 * @param parallel true if the system should be updated in parallel
+	 */
+	public void setParallelUpdate(boolean parallel) {
+		parallelUpdate = parallel;
+	}
+
 	/**
 	 * Returns the total energy of the system as calculated by summing the
 	 * system's potential and kinetic energies.
@@ -270,6 +521,36 @@ public final class ParticleSystem {
 		return kineticEnergy + potentialEnergy;
 	}
 
+	/**
+	 * Returns the kinetic energy of the system as of the last update.
+	 *
+	 * @return the kinetic energy of the system
+	 */
+	public double getKineticEnergy() {
+		return kineticEnergy;
+	}
+
+	/**
+	 * Returns the potential energy of the system as of the last update.
+	 *
+	 * @return the potential energy of the system
+	 */
+	public double getPotentialEnergy() {
+		return potentialEnergy;
+	}
+
+	/**
+	 * Returns the change in the total energy of the system since it was
+	 * generated or resumed, relative to the energy it had then. The exact engine keeps this
+	 * down to rounding errors, so for the leapfrog engines this is the error
+	 * against the exact engine.
+	 *
+	 * @return the relative energy error of the system
+	 */
+	public double getEnergyError() {
+		return (getEnergy() - initialEnergy) / Math.abs(initialEnergy);
+	}
+
 	/**
 	 * Returns the virial ratio of this system of particles.
 	 *
@@ -279,164 +560,1083 @@ public final class ParticleSystem {
 		return virialRatio;
 	}
 
+	/**
+	 * Returns the virial ratio of this system of particles once it was
+	 * generated.
+	 *
+	 * @return the initial virial ratio of the system
+	 */
+	public double getInitialVirialRatio() {
+		return initialVirialRatio;
+	}
+
+	/**
+	 * Returns the amount of time the system has been evolving in
+	 * characteristic time units.
+	 *
+	 * @return the simulation time of the system
+	 */
+	public double getSimulationTime() {
+		return simulationTime;
+	}
+
+	/**
+	 * Takes a copy of the complete state of this system, from which the
+	 * simulation can later be resumed.
+	 *
+	 * <p>This must only be called by a listener while it is being notified of
+	 * an update, as that is the only moment the state of the system is
+	 * consistent. Copying the state is cheap compared to writing it, so the
+	 * returned checkpoint can be written out on a separate thread while the
+	 * simulation continues.</p>
+	 *
+	 * @return a checkpoint of this system
+	 */
+	public Checkpoint checkpoint() {
+		Checkpoint cp = new Checkpoint(size, maxSimulationTime, characteristicInterval, systemType,
+				seed, initialVirialRatio, initialEnergy, simulationTime);
+		for (int i = 0; i < size; i++) {
+			cp.id[i] = system.getID(i);
+			cp.x[i] = system.getX(i);
+			cp.v[i] = system.getV(i);
+			cp.time[i] = system.getTime(i);
+			cp.crossings[i] = system.getCrossings(cp.id[i]);
+		}
+		if (nextCollisionTime != null) {
+			for (int i = 0; i < size - 1; i++) {
+				cp.nextCollisionTime[i] = nextCollisionTime.get(i);
+				cp.baseCollisionTime[i] = baseCollisionTime.get(i);
+			}
+		} else {
+			//The leapfrog engines never find collisions, but every time frame is 0 here
+			for (int i = 0; i < size - 1; i++) {
+				cp.nextCollisionTime[i] = calculateCollision(i, i + 1, 0.0, 0.0);
+			}
+		}
+		return cp;
+	}
+
 	/**
 	 * Returns the system as represented by an array of constituent particles.
 	 *
+	 * <p>The particles are only a view of the system as it is at the moment
+	 * of the call. See {@code ParticleStore.getParticles}.</p>
+	 *
 	 * @return the array of particles in this system
 	 */
 	public Particle[] getSystem() {
+		return system.getParticles();
+	}
+
+	/**
+	 * Returns the store that holds the state of every particle in this system
+	 * ordered by position.
+	 *
+	 * @return the particle store of this system
+	 */
+	public ParticleStore getStore() {
 		return system;
 	}
 
 	/**
-	 * Adds a listener to the this system.
+	 * Returns where the state of every particle in this system is kept.
 	 *
-	 * @param listener the listener to be added
-	 * @return true if the listener could be added as specified by
-	 * {@code Collections.add}
+	 * @return the type of storage of this system
 	 */
-	public synchronized boolean addListener(LISTENER_Updated listener) {
-		return _listeners.add(listener);
+	public ENUM_StorageType getStorage() {
+		return storage;
 	}
 
 	/**
-	 * Removes a listener from this system.
+	 * Creates an empty store of the specified kind.
 	 *
-	 * @param listener the {@code LISTENER_Updated} object to be removed
-	 * @return true if it was removed
+	 * @param numParticles the number of particles in the store
+	 * @param storage where the state of the particles is kept
+	 * @return the new store
 	 */
-	public synchronized boolean removeListener(LISTENER_Updated listener) {
-		return _listeners.remove(listener);
+	private static ParticleStore createStore(int numParticles, ENUM_StorageType storage) {
+		return storage == ENUM_StorageType.DIRECT
+				? new DirectParticleStore(numParticles) : new ArrayParticleStore(numParticles);
 	}
 
 	/**
-	 * Notifies all listeners that the entire system has been updated after
-	 * passing another interval of time within the system's simulation.
-	 * <p> The reference to time has no relation to the amount of time passed in
-	 * the real world while the simulation is running. </p>
+	 * Creates a buffer of doubles kept where the state of the particles is
+	 * kept, for the collision times of the pairs.
+	 *
+	 * @param count the number of values in the buffer
+	 * @return the new buffer
 	 */
-	private synchronized void _fireUpdatedEvent() {
-		EVENT_Updated evt = new EVENT_Updated(this, system, simulationTime);
-		for (LISTENER_Updated l : _listeners) {
-			l.receiveUpdate(evt);
-		}
+	private DoubleBuffer doubles(int count) {
+		return storage == ENUM_StorageType.DIRECT
+				? DirectParticleStore.doubles(count) : DoubleBuffer.allocate(count);
 	}
+
 	/**
-	 * This array holds the time of the next collision in system time units
-	 * assuming that both particles are in the same time frame.
-	 * <p>To ensure this, more necessary data is held in two other arrays:
-	 * {@code baseCollisionTime} and {@code particleTimeFrame}</p>
+	 * Sets the way in which the next collision is searched for. This must be
+	 * called before the simulation is started.
+	 *
+	 * @param type the type of scheduler to use
 	 */
-	private double[] nextCollisionTime;
+	public void setScheduler(ENUM_SchedulerType type) {
+		scheduler = type;
+	}
+
 	/**
-	 * This array holds the "standard" time from which a collision is projected
-	 * to occur.
-	 * <p>This "standard" time can be unique for each collision between two
-	 * particles and can be seen as the (t = 0) for the collision. It is defined
-	 * as the same as the particle in the time frame furthest along for
-	 * convenience in calculating the collision. </p>
-	 * <p>E.g. if one particle is at (t = .1), whereas the second is at (t =
-	 * .2), the array will store (t = .2) as the "standard" time of the
-	 * collision, and the simulation will automatically update the first
-	 * particle to (t = .2) before updating both to the actual moment of
-	 * collision.</p>
+	 * Returns the way in which the next collision is searched for.
+	 *
+	 * @return the type of scheduler in use
 	 */
-	private double[] baseCollisionTime;
+	public ENUM_SchedulerType getScheduler() {
+		return scheduler;
+	}
+
 	/**
-	 * This array stores the actual time frame that each individual particle is
-	 * located at.
-	 * <p> This refers to the fact that particles are only ever updated to a
-	 * specific time during a collision involving the particle or when the
-	 * entire system is updated to a standard time to allow the data to be
-	 * written out. This allows the system to drastically reduce the number of
-	 * needed computations for speed purposes.</p>
+	 * Sets the way in which the particles are evolved through time. This must
+	 * be called before the simulation is started, and is not part of a
+	 * checkpoint.
+	 *
+	 * @param type the type of engine to use
 	 */
-	private double[] particleTime;
+	public void setEngine(ENUM_EngineType type) {
+		engine = type;
+	}
+
 	/**
-	 * Holds the index of the left particle in the pair involved in the current
-	 * collision of interest.
+	 * Returns the way in which the particles are evolved through time.
+	 *
+	 * @return the type of engine in use
 	 */
-	private int collisionLeft;
+	public ENUM_EngineType getEngine() {
+		return engine;
+	}
 
 	/**
-	 * Begins the simulation of this system of particles.
-	 * <p>The simulation will only end once the system evolves past the maximum
-	 * alloted time frame given, or if the program terminates.</p>
-	 * <p>The simulation is run in a very special way to reduce computational
-	 * time. When a collision between two particles occurs, rather than updating
-	 * the entire system by a small amount of time, only those 2 particles are
-	 * updated. However, this means that every particle could be in a different
-	 * time frame from every other particle. In order to do this, collision
-	 * times are stored in a slightly awkward way. "Time" is split up into 3
-	 * components. The time of every particle is stored in one array. In
-	 * another array, baseCollisionTime, the time from which the collision
-	 * should be projected is stored. i.e. if p1 and p2 are at times t1 = 0, and
-	 * t2 = t, respectively baseCollisionTime will store max(t1, t2) = t because
-	 * p1 needs to be updated to t before the collision between the two
-	 * particles can be projected. Lastly, the array nextCollisionTime stores
-	 * the time of collision from the baseCollisionTime for a pair of particles.
-	 * Therefore, when one collision is handled, up to 3 new collision need to
-	 * be formed. The first between the pair the just collided, the second
-	 * concerning the collision time between the left particle in the pair 
-	 * and its left neighbor, and the last between the right particle in the
-	 * pair and its right neighbor (e.g. [i-1, i], [i, i + 1], [i + 1, i + 2]
-	 * represent the collision pairs that need to be updated).</p>
+	 * Sets the number of domains the parallel engine splits the system into.
+	 * Every domain holds at least 3 particles. With a single domain the
+	 * system is simulated like with the exact engine.
+	 *
+	 * @param count the number of domains, or 0 for one per available
+	 * processor, as long as each holds at least 256 particles
 	 */
-	public void simulate() {
-		//For N particles, there are N - 1 collisions to look at
-		nextCollisionTime = new double[size - 1];
+	public void setDomains(int count) {
+		domains = Math.max(0, count);
+	}
 
-		for (int i = 0; i < nextCollisionTime.length; i++) {
-			//Generate the first set of possible collisions from the initial configurations
-			nextCollisionTime[i] = calculateCollision(i, i + 1, 0.0, 0.0);
+	/**
+	 * Returns the number of domains the system is split into when it is
+	 * simulated.
+	 *
+	 * @return the number of domains, which is 1 unless the parallel engine
+	 * is in use
+	 */
+	public int getDomains() {
+		if (engine != ENUM_EngineType.PARALLEL) {
+			return 1;
 		}
-		//Essentially initializes the time frames and tells any listener that the initial configurations have been set
-		resetTimeFrames();
-
-		while (simulationTime < maxSimulationTime) {//The brunt of the simulation
-			double nextTime = findNextCollision();
+		if (domains > 0) {
+			return Math.max(1, Math.min(domains, size / 3));
+		}
+		return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), size / MIN_DOMAIN_SIZE));
+	}
 
-			//If the next collision will occur after the time interval that marks exporting of data
-			//This also helps prevent loss of precision as numbers get larger
-			if (nextTime > systemInterval) {
-				massUpdate();
-				calculateEnergy();
-				simulationTime += characteristicInterval;//increment the "clock"
-				resetTimeFrames();
-				nextTime -= systemInterval;//Adjust the time of the collision
-			}
+	/**
+	 * Sets the time step of the leapfrog engines. Each interval is split into
+	 * equal steps no longer than this, so that updates still happen at the
+	 * end of every interval. The adaptive engine shrinks the step further
+	 * whenever the system is more compact than it was initially.
+	 *
+	 * @param step the time step in characteristic time units
+	 */
+	public void setTimeStep(double step) {
+		if (!(step > 0)) {
+			throw new IllegalArgumentException("The time step must be positive");
+		}
+		timeStep = step;
+	}
 
-			//Update the two collided particles to the collision moment
-			system[collisionLeft].update(nextTime - particleTime[collisionLeft], accel[collisionLeft]);
-			system[collisionLeft + 1].update(nextTime - particleTime[collisionLeft + 1], accel[collisionLeft + 1]);
+	/**
+	 * Returns the time step of the leapfrog engines in characteristic time
+	 * units.
+	 *
+	 * @return the time step
+	 */
+	public double getTimeStep() {
+		return timeStep;
+	}
+
+	/**
+	 * Sets the window within which crossings are resolved together. Once the
+	 * next crossing is found, every neighboring pair that also crosses within
+	 * the window joins it, and the whole range of ranks involved is permuted
+	 * into order at once by {@code crossBatch}. This saves handling crossings
+	 * one at a time where many particles meet at once, at the price of an
+	 * error that grows with the window, so the results are close to, but no
+	 * longer the same as, those of the exact engine. Only
+	 * the exact engine forms batches, and {@code simulate} rejects a window
+	 * with any other engine.
+	 *
+	 * @param window the window in characteristic time units, or 0 to handle
+	 * every crossing on its own
+	 */
+	public void setBatchWindow(double window) {
+		if (!(window >= 0)) {
+			throw new IllegalArgumentException("The batch window must not be negative");
+		}
+		batchWindow = window;
+	}
+
+	/**
+	 * Returns the window within which crossings are resolved together in
+	 * characteristic time units.
+	 *
+	 * @return the batch window, or 0 if every crossing is handled on its own
+	 */
+	public double getBatchWindow() {
+		return batchWindow;
+	}
+
+	/**
+	 * Places the specified number of massless tracer particles in the system,
+	 * replacing any placed before. This must be called before the simulation
+	 * is started, and tracers are not part of a checkpoint.
+	 *
+	 * <p>Tracers are drawn uniformly from the smallest rectangle in phase
+	 * space that holds every particle, which for a rectangular waterbag is the
+	 * waterbag itself. They are drawn from their own stream of the seed of the
+	 * system, so they do not change the particles in any way. See
+	 * {@code TracerSet}.</p>
+	 *
+	 * @param count the number of tracers, or 0 for none
+	 */
+	public void setTracers(int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("The number of tracers must not be negative");
+		}
+		if (count == 0) {
+			tracers = null;
+			return;
+		}
+		double xMin = system.getX(0), xMax = system.getX(size - 1);
+		double vMin = Double.POSITIVE_INFINITY, vMax = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < size; i++) {
+			vMin = Math.min(vMin, system.getV(i));
+			vMax = Math.max(vMax, system.getV(i));
+		}
+		SplittableRandom random = new SplittableRandom(seed ^ TRACER_SEED);
+		tracers = new TracerSet(count, size);
+		for (int i = 0; i < count; i++) {
+			tracers.set(i, xMin + random.nextDouble() * (xMax - xMin),
+					vMin + random.nextDouble() * (vMax - vMin), system);
+		}
+		tracerStepsTaken = 0;
+		nextTracerTime = tracerTime();
+	}
+
+	/**
+	 * Returns the massless tracer particles of the system.
+	 *
+	 * @return the tracers, or null if the system has none
+	 */
+	public TracerSet getTracers() {
+		return tracers;
+	}
+
+	/**
+	 * Sets the longest step the tracers are advanced by. Each interval is
+	 * split into equal steps no longer than this. Shorter steps follow the
+	 * field of the particles more closely, at a cost proportional to the
+	 * number of tracers per step.
+	 *
+	 * @param step the tracer step in characteristic time units
+	 */
+	public void setTracerStep(double step) {
+		if (!(step > 0)) {
+			throw new IllegalArgumentException("The tracer step must be positive");
+		}
+		tracerStep = step;
+	}
+
+	/**
+	 * Returns the longest step the tracers are advanced by in characteristic
+	 * time units.
+	 *
+	 * @return the tracer step
+	 */
+	public double getTracerStep() {
+		return tracerStep;
+	}
+
+	/**
+	 * Adds a listener to the this system.
+	 *
+	 * @param listener the listener to be added
+	 * @return true if the listener could be added as specified by
+	 * {@code Collections.add}
+	 */
+	public synchronized boolean addListener(LISTENER_Updated listener) {
+		return _listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener from this system.
+	 *
+	 * @param listener the {@code LISTENER_Updated} object to be removed
+	 * @return true if it was removed
+	 */
+	public synchronized boolean removeListener(LISTENER_Updated listener) {
+		return _listeners.remove(listener);
+	}
+
+	/**
+	 * Adds a crossing listener to this system. This must be called before the
+	 * simulation is started.
+	 *
+	 * @param listener the listener to be added
+	 */
+	public synchronized void addCrossingListener(LISTENER_Crossing listener) {
+		_crossingListeners = Arrays.copyOf(_crossingListeners, _crossingListeners.length + 1);
+		_crossingListeners[_crossingListeners.length - 1] = listener;
+	}
+
+	/**
+	 * Removes a crossing listener from this system.
+	 *
+	 * @param listener the {@code LISTENER_Crossing} object to be removed
+	 * @return true if it was removed
+	 */
+	public synchronized boolean removeCrossingListener(LISTENER_Crossing listener) {
+		for (int i = 0; i < _crossingListeners.length; i++) {
+			if (_crossingListeners[i] == listener) {
+				LISTENER_Crossing[] temp = new LISTENER_Crossing[_crossingListeners.length - 1];
+				System.arraycopy(_crossingListeners, 0, temp, 0, i);
+				System.arraycopy(_crossingListeners, i + 1, temp, i, temp.length - i);
+				_crossingListeners = temp;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a sample listener to this system.
+	 *
+	 * @param listener the listener to be added
+	 * @return true if the listener could be added as specified by
+	 * {@code Collections.add}
+	 */
+	public synchronized boolean addSampleListener(LISTENER_Sampled listener) {
+		return _sampleListeners.add(listener);
+	}
+
+	/**
+	 * Removes a sample listener from this system.
+	 *
+	 * @param listener the {@code LISTENER_Sampled} object to be removed
+	 * @return true if it was removed
+	 */
+	public synchronized boolean removeSampleListener(LISTENER_Sampled listener) {
+		return _sampleListeners.remove(listener);
+	}
+
+	/**
+	 * Requests a sample of the system at the specified time. Once the
+	 * simulation reaches that time, every particle is projected to it and the
+	 * sample listeners are notified. Samples do not affect the simulation in
+	 * any way, so they may be taken as often and as irregularly as needed.
+	 *
+	 * <p>This must be called before the simulation starts or by a listener
+	 * while it is being notified. Requested samples are not part of a
+	 * checkpoint.</p>
+	 *
+	 * @param time the time of the sample in characteristic time units
+	 * @return true if the sample was scheduled, or false if the time has
+	 * already passed or lies beyond the end of the simulation
+	 */
+	public boolean scheduleSample(double time) {
+		if (time < simulationTime || time > maxSimulationTime) {
+			return false;
+		}
+		return sampleTimes.add(time);
+	}
+
+	/**
+	 * Finds the position and velocity of every particle at the specified time
+	 * without changing the state of the system.
+	 *
+	 * <p>Between crossings every particle moves along a parabola given by its
+	 * rank, so each one is projected from its own time frame. The time must
+	 * therefore lie within the current interval and must not precede the last
+	 * crossing handled, which always holds for listeners of this system. Like
+	 * the update of the whole system, this is done in parallel for very large
+	 * systems.</p>
+	 *
+	 * @param time the time to sample in characteristic time units
+	 * @param positions the array the positions are stored in by ID number
+	 * @param velocities the array the velocities are stored in by ID number
+	 */
+	public void sample(double time, double[] positions, double[] velocities) {
+		if (positions.length < size || velocities.length < size) {
+			throw new IllegalArgumentException("Sample arrays must hold " + size + " particles");
+		}
+		//Clamp at the start of the interval, as interval times are sums of floats
+		final double local = Math.max(0.0, (time - simulationTime) * CHARACTERISTIC_TIME);
+		final int blockLength = blockLength();
+		blockRange(blockLength).forEach(b -> {
+			int from = b * blockLength;
+			system.project(from, Math.min(size, from + blockLength), local, positions, velocities);
+		});
+	}
+
+	/**
+	 * Takes every requested sample up to the specified time and notifies all
+	 * sample listeners of each.
+	 *
+	 * @param limit the time up to which samples are taken in system time units
+	 * within the current interval
+	 */
+	private synchronized void _fireSampledEvents(double limit) {
+		while (!sampleTimes.isEmpty()
+				&& (sampleTimes.peek() - simulationTime) * CHARACTERISTIC_TIME <= limit) {
+			double time = sampleTimes.poll();
+			if (samplePositions == null) {
+				samplePositions = new double[size];
+				sampleVelocities = new double[size];
+			}
+			sample(time, samplePositions, sampleVelocities);
+			EVENT_Sampled evt = new EVENT_Sampled(this, time, samplePositions, sampleVelocities);
+			for (LISTENER_Sampled l : _sampleListeners) {
+				l.receiveSample(evt);
+			}
+		}
+	}
+
+	/**
+	 * Notifies all crossing listeners that two particles have passed through
+	 * each other.
+	 *
+	 * @param time the time of the crossing in system time units within the
+	 * current interval
+	 * @param left the index of the left particle in the pair before the
+	 * crossing
+	 */
+	private void _fireCrossingEvent(double time, int left) {
+		for (LISTENER_Crossing l : _crossingListeners) {
+			l.receiveCrossing(time, left);
+		}
+	}
+
+	/**
+	 * Notifies all listeners that the entire system has been updated after
+	 * passing another interval of time within the system's simulation.
+	 * <p> The reference to time has no relation to the amount of time passed in
+	 * the real world while the simulation is running. </p>
+	 */
+	private synchronized void _fireUpdatedEvent() {
+		EVENT_Updated evt = new EVENT_Updated(this, system, simulationTime);
+		for (LISTENER_Updated l : _listeners) {
+			l.receiveUpdate(evt);
+		}
+	}
+	/**
+	 * This array holds the time of the next collision in system time units
+	 * assuming that both particles are in the same time frame.
+	 * <p>To ensure this, more necessary data is held in two other arrays:
+	 * {@code baseCollisionTime} and {@code particleTimeFrame}</p>
+	 */
+	private DoubleBuffer nextCollisionTime;
+	/**
+	 * This array holds the "standard" time from which a collision is projected
+	 * to occur.
+	 * <p>This "standard" time can be unique for each collision between two
+	 * particles and can be seen as the (t = 0) for the collision. It is defined
+	 * as the same as the particle in the time frame furthest along for
+	 * convenience in calculating the collision. </p>
+	 * <p>E.g. if one particle is at (t = .1), whereas the second is at (t =
+	 * .2), the array will store (t = .2) as the "standard" time of the
+	 * collision, and the simulation will automatically update the first
+	 * particle to (t = .2) before updating both to the actual moment of
+	 * collision.</p>
+	 */
+	private DoubleBuffer baseCollisionTime;
+	/**
+	 * Holds the absolute collision time of every pair when the tournament tree
+	 * scheduler is used. Otherwise this is null.
+	 */
+	private CollisionQueue queue;
+	/**
+	 * Holds the index of the left particle in the pair involved in the current
+	 * collision of interest.
+	 */
+	private int collisionLeft;
+	/**
+	 * Whether or not this system was reconstructed from a checkpoint and has
+	 * yet to resume its simulation.
+	 */
+	private boolean resumed;
+	/**
+	 * The number of crossings handled since the simulation started.
+	 */
+	private long crossings;
+	/**
+	 * The number of batches resolved since the simulation started.
+	 */
+	private long batches;
+	/**
+	 * The number of crossings that were part of a batch.
+	 */
+	private long batchedCrossings;
+	/**
+	 * The number of collision times that came out negative and were treated
+	 * as immediate. These may be calculated by several threads at once.
+	 */
+	private final AtomicLong clampedCollisions = new AtomicLong();
+	/**
+	 * The number of negative collision times already reported.
+	 */
+	private long reportedClamps = 0;
+	/**
+	 * Whether or not the simulation was asked to stop early.
+	 */
+	private volatile boolean stopped;
+	/**
+	 * The number of relaxation times after which the simulation stops on its
+	 * own, or 0 if it runs up to the maximum simulation time.
+	 */
+	private double relaxationLimit = 0;
+
+	/**
+	 * Returns the number of times two particles have passed through each
+	 * other since the simulation of this system started.
+	 *
+	 * @return the number of crossings
+	 */
+	public long getCrossingCount() {
+		return crossings;
+	}
+
+	/**
+	 * Returns the number of batches of simultaneous crossings resolved since
+	 * the simulation of this system started. See {@code setBatchWindow}.
+	 *
+	 * @return the number of batches
+	 */
+	public long getBatchCount() {
+		return batches;
+	}
+
+	/**
+	 * Returns the number of crossings that were resolved as part of a batch.
+	 * These are included in {@code getCrossingCount()}.
+	 *
+	 * @return the number of batched crossings
+	 */
+	public long getBatchedCrossingCount() {
+		return batchedCrossings;
+	}
+
+	/**
+	 * Returns the number of collision times that came out negative, which
+	 * happens when rounding leaves two particles that just met slightly past
+	 * each other. Each was treated as a collision that is due immediately.
+	 *
+	 * @return the number of negative collision times
+	 */
+	public long getClampedCollisionCount() {
+		return clampedCollisions.get();
+	}
+
+	/**
+	 * Returns the mean number of crossings per particle since the system was
+	 * generated, including those before it was resumed from a checkpoint. See
+	 * {@code ParticleStore.getCrossings}.
+	 *
+	 * @return the mean number of crossings of a particle
+	 */
+	public double getMeanCrossings() {
+		long sum = 0;
+		for (int id = 0; id < size; id++) {
+			sum += system.getCrossings(id);
+		}
+		return (double) sum / size;
+	}
+
+	/**
+	 * Returns an estimate of the relaxation time of this system in
+	 * characteristic time units.
+	 *
+	 * <p>Every crossing changes the field a particle feels by 2 / N. These
+	 * changes add up like a random walk, so a particle has forgotten its
+	 * initial energy after about N^2 crossings. The relaxation time is
+	 * therefore estimated as the time it takes a particle to cross N^2 others
+	 * at the mean rate of crossings so far. Since a particle crosses about
+	 * every other one per crossing time, this grows as N crossing times.</p>
+	 *
+	 * @return the relaxation time, or infinity if no crossing took place yet
+	 */
+	public double getRelaxationTime() {
+		double mean = getMeanCrossings();
+		return mean > 0 ? (double) size * size * simulationTime / mean : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Sets the number of relaxation times after which the simulation stops on
+	 * its own. This is checked at the end of every interval, once a particle
+	 * crossed this many times N^2 others on average. See
+	 * {@code getRelaxationTime}.
+	 *
+	 * @param relaxations the number of relaxation times, or 0 to only stop
+	 * at the maximum simulation time
+	 */
+	public void setRelaxationLimit(double relaxations) {
+		if (!(relaxations >= 0)) {
+			throw new IllegalArgumentException("The relaxation limit must not be negative");
+		}
+		relaxationLimit = relaxations;
+	}
+
+	/**
+	 * Returns the number of relaxation times after which the simulation stops
+	 * on its own. See {@code setRelaxationLimit}.
+	 *
+	 * @return the number of relaxation times, or 0 if there is no limit
+	 */
+	public double getRelaxationLimit() {
+		return relaxationLimit;
+	}
+
+	/**
+	 * Asks the simulation to stop before the next collision is handled. This
+	 * may be called from a listener or from another thread.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * Begins the simulation of this system of particles.
+	 * <p>The simulation will only end once the system evolves past the maximum
+	 * alloted time frame given, once it relaxed as often as was requested by
+	 * {@code setRelaxationLimit}, if it is stopped by {@code stop()}, or if
+	 * the program terminates.</p>
+	 * <p>The simulation is run in a very special way to reduce computational
+	 * time. When a collision between two particles occurs, rather than updating
+	 * the entire system by a small amount of time, only those 2 particles are
+	 * updated. However, this means that every particle could be in a different
+	 * time frame from every other particle. In order to do this, collision
+	 * times are stored in a slightly awkward way. "Time" is split up into 3
+	 * components. The time of every particle is stored in the store. In
+	 * another array, baseCollisionTime, the time from which the collision
+	 * should be projected is stored. i.e. if p1 and p2 are at times t1 = 0, and
+	 * t2 = t, respectively baseCollisionTime will store max(t1, t2) = t because
+	 * p1 needs to be updated to t before the collision between the two
+	 * particles can be projected. Lastly, the array nextCollisionTime stores
+	 * the time of collision from the baseCollisionTime for a pair of particles.
+	 * Therefore, when one collision is handled, up to 3 new collision need to
+	 * be formed. The first between the pair the just collided, the second
+	 * concerning the collision time between the left particle in the pair 
+	 * and its left neighbor, and the last between the right particle in the
+	 * pair and its right neighbor (e.g. [i-1, i], [i, i + 1], [i + 1, i + 2]
+	 * represent the collision pairs that need to be updated).</p>
+	 * <p>Unless the linear scan scheduler was requested, the absolute collision
+	 * time of every pair is also kept in a {@code CollisionQueue} so the next
+	 * collision can be found without looking through every pair.</p>
+	 * <p>Requested samples are taken in between collisions, once the next
+	 * collision lies beyond them, so taking them never changes the course of
+	 * the simulation. The tracers of the system, if any, are advanced the same
+	 * way at the end of every tracer step.</p>
+	 * <p>A system reconstructed from a checkpoint skips straight to the main
+	 * loop, as its collisions and time frames were restored along with it.</p>
+	 * <p>If a leapfrog engine was requested, the system is evolved by
+	 * {@code simulateLeapfrog()} instead. The parallel engine starts out the
+	 * same way, but hands the main loop to {@code simulateDomains}.</p>
+	 * <p>With a batch window, neighboring crossings within the window of the
+	 * next one are resolved together by {@code crossBatch}.</p>
+	 *
+	 * @throws IllegalArgumentException if a batch window is set for any
+	 * engine but the exact one
+	 */
+	public void simulate() {
+		if (batchWindow > 0 && engine != ENUM_EngineType.EXACT) {
+			throw new IllegalArgumentException("Only the EXACT engine resolves crossings in batches, not the "
+					+ engine + " engine");
+		}
+		if (engine == ENUM_EngineType.LEAPFROG || engine == ENUM_EngineType.LEAPFROG_ADAPTIVE) {
+			simulateLeapfrog();
+			return;
+		}
+
+		if (!resumed) {
+			//For N particles, there are N - 1 collisions to look at
+			nextCollisionTime = doubles(size - 1);
+
+			for (int i = 0; i < size - 1; i++) {
+				//Generate the first set of possible collisions from the initial configurations
+				nextCollisionTime.put(i, calculateCollision(i, i + 1, 0.0, 0.0));
+			}
+			//Essentially initializes the time frames and tells any listener that the initial configurations have been set
+			resetTimeFrames();
+		}
+		resumed = false;
+		int count = getDomains();
+		if (count > 1) {
+			queue = null;
+			simulateDomains(count);
+			return;
+		}
+		queue = scheduler == ENUM_SchedulerType.TOURNAMENT_TREE
+				? CollisionQueue.create(size - 1, storage) : null;
+		rebuildQueue();
+
+		while (simulationTime < maxSimulationTime && !stopped) {//The brunt of the simulation
+			double nextTime = findNextCollision();
+
+			//If the next collision will occur after the time interval that marks exporting of data
+			//This also helps prevent loss of precision as numbers get larger
+			if (nextTime > systemInterval) {
+				if (!sampleTimes.isEmpty()) {
+					_fireSampledEvents(systemInterval);
+				}
+				if (tracers != null) {
+					stepTracers(systemInterval);
+				}
+				massUpdate();
+				calculateEnergy();
+				simulationTime += characteristicInterval;//increment the "clock"
+				resetTimeFrames();
+				rebuildQueue();
+				nextTime -= systemInterval;//Adjust the time of the collision
+			}
+			if (!sampleTimes.isEmpty()) {
+				_fireSampledEvents(nextTime);
+			}
+			if (tracers != null && nextTime >= nextTracerTime) {
+				stepTracers(nextTime);
+			}
+			if (batchWindow > 0 && crossBatch(nextTime)) {
+				continue;
+			}
+
+			//Update the two collided particles to the collision moment
+			system.update(collisionLeft, nextTime - system.getTime(collisionLeft), system.getAcceleration(collisionLeft));
+			system.update(collisionLeft + 1, nextTime - system.getTime(collisionLeft + 1), system.getAcceleration(collisionLeft + 1));
 			swap(collisionLeft, collisionLeft + 1);//swap their locations (let them "pass through each other")
+			crossings++;
+			if (_crossingListeners.length > 0) {
+				_fireCrossingEvent(nextTime, collisionLeft);
+			}
 
 			//Update the stored times of the collision and particles to their updated status
-			particleTime[collisionLeft] = nextTime;
-			particleTime[collisionLeft + 1] = nextTime;
-			baseCollisionTime[collisionLeft] = nextTime;
+			system.setTime(collisionLeft, nextTime);
+			system.setTime(collisionLeft + 1, nextTime);
+			baseCollisionTime.put(collisionLeft, nextTime);
 
 			//Calculate the next collision between these two particles
-			nextCollisionTime[collisionLeft] = calculateCollision(collisionLeft, collisionLeft + 1, 0.0, 0.0);
+			nextCollisionTime.put(collisionLeft, calculateCollision(collisionLeft, collisionLeft + 1, 0.0, 0.0));
+			requeue(collisionLeft);
 
 			//Adjust the collision time of the particle neighboring the collided pair to the left
 			if (collisionLeft > 0) {//If there is a particle to the left
-				baseCollisionTime[collisionLeft - 1] = 
-						Math.max(particleTime[collisionLeft - 1], particleTime[collisionLeft]);
-				nextCollisionTime[collisionLeft - 1] = calculateCollision(collisionLeft - 1, collisionLeft,
-						Math.abs(baseCollisionTime[collisionLeft - 1] - particleTime[collisionLeft - 1]),
-						Math.abs(baseCollisionTime[collisionLeft - 1] - particleTime[collisionLeft]));
+				baseCollisionTime.put(collisionLeft - 1, Math.max(system.getTime(collisionLeft - 1), system.getTime(collisionLeft)));
+				nextCollisionTime.put(collisionLeft - 1, calculateCollision(collisionLeft - 1, collisionLeft,
+						Math.abs(baseCollisionTime.get(collisionLeft - 1) - system.getTime(collisionLeft - 1)),
+						Math.abs(baseCollisionTime.get(collisionLeft - 1) - system.getTime(collisionLeft))));
+				requeue(collisionLeft - 1);
 			}
 
 			//Adjust the collision time of the particle neighboring the collided pair to the right
 			if (collisionLeft + 1 < size - 1) {//If there is a particle neighboring to the right
-				baseCollisionTime[collisionLeft + 1] = 
-						Math.max(particleTime[collisionLeft + 1], particleTime[collisionLeft + 2]);
-				nextCollisionTime[collisionLeft + 1] = calculateCollision(collisionLeft + 1, collisionLeft + 2,
-						Math.abs(baseCollisionTime[collisionLeft + 1] - particleTime[collisionLeft + 1]),
-						Math.abs(baseCollisionTime[collisionLeft + 1] - particleTime[collisionLeft + 2]));
+				baseCollisionTime.put(collisionLeft + 1, Math.max(system.getTime(collisionLeft + 1), system.getTime(collisionLeft + 2)));
+				nextCollisionTime.put(collisionLeft + 1, calculateCollision(collisionLeft + 1, collisionLeft + 2,
+						Math.abs(baseCollisionTime.get(collisionLeft + 1) - system.getTime(collisionLeft + 1)),
+						Math.abs(baseCollisionTime.get(collisionLeft + 1) - system.getTime(collisionLeft + 2))));
+				requeue(collisionLeft + 1);
+			}
+		}
+	}
+
+	/**
+	 * Resolves every crossing of neighboring pairs within the batch window of
+	 * the next crossing at once.
+	 *
+	 * <p>Starting from the pair that crosses next, neighboring pairs are added
+	 * for as long as they cross within the window. The batch ends with the
+	 * window, the current interval, the next requested sample or the end of
+	 * the next tracer step, whichever comes first, so that samples and
+	 * tracers never see a particle ahead of their time. Every particle in the
+	 * range is moved to the end of the batch with the acceleration of its
+	 * rank, and the range is sorted by position, which permutes its particles
+	 * into the ranks they cross into within the batch.</p>
+	 *
+	 * <p>A particle next to the range joins it if it would cross into the
+	 * range, or if one of the pairs beyond it, up to {@code BATCH_MARGIN} of
+	 * them, crosses before the end of the batch, as its trajectory could then
+	 * change. The particles next to the range therefore keep theirs until the
+	 * end of the batch, and of the pairs outside of the range only the two at
+	 * either end need to be predicted again. Crossings further away are
+	 * independent of the batch and are handled as usual afterwards, even
+	 * those before its end.</p>
+	 *
+	 * <p>This is an approximation: the particles of a batch keep their
+	 * accelerations until its end instead of taking on those of the ranks
+	 * they cross into, so its error grows with the window and shows in the
+	 * energy error. The crossings are counted, but not reported
+	 * to crossing listeners one by one.</p>
+	 *
+	 * @param t the time of the next crossing in system time units
+	 * @return false if no other pair crosses within the window, in which case
+	 * nothing was done
+	 */
+	private boolean crossBatch(double t) {
+		double end = Math.min(t + batchWindow * CHARACTERISTIC_TIME, systemInterval);
+		if (!sampleTimes.isEmpty()) {
+			end = Math.min(end, (sampleTimes.peek() - simulationTime) * CHARACTERISTIC_TIME);
+		}
+		if (tracers != null) {
+			end = Math.min(end, nextTracerTime);
+		}
+		int lo = collisionLeft, hi = collisionLeft;
+		while (lo > 0 && collisionAt(lo - 1) <= end) {
+			lo--;
+		}
+		while (hi + 1 < size - 1 && collisionAt(hi + 1) <= end) {
+			hi++;
+		}
+		if (lo == hi || !(end > t)) {
+			return false;
+		}
+
+		system.advance(lo, hi + 2, end);
+		for (int i = lo; i <= hi + 1; i++) {
+			system.setTime(i, end);
+		}
+		long exchanges = system.sort(lo, hi + 2);
+		boolean grown;
+		do {//take in any neighbor that crosses into the range or changes its trajectory within the batch
+			grown = false;
+			if (lo > 0 && system.getTime(lo - 1) <= end
+					&& (positionAt(lo - 1, end) > system.getX(lo) || crossesBefore(lo - 1, -1, end))) {
+				lo--;
+				system.advance(lo, lo + 1, end);
+				system.setTime(lo, end);
+				grown = true;
+			}
+			if (hi + 2 < size && system.getTime(hi + 2) <= end
+					&& (positionAt(hi + 2, end) < system.getX(hi + 1) || crossesBefore(hi + 1, 1, end))) {
+				hi++;
+				system.advance(hi + 1, hi + 2, end);
+				system.setTime(hi + 1, end);
+				grown = true;
+			}
+			if (grown) {
+				exchanges += system.sort(lo, hi + 2);
+			}
+		} while (grown);
+		crossings += exchanges;
+		batches++;
+		batchedCrossings += exchanges;
+
+		for (int i = lo; i <= hi; i++) {
+			baseCollisionTime.put(i, end);
+			nextCollisionTime.put(i, calculateCollision(i, i + 1, 0.0, 0.0));
+		}
+		if (lo > 0) {
+			predictPair(--lo);
+		}
+		if (hi + 1 < size - 1) {
+			predictPair(++hi);
+		}
+		requeue(lo, hi);
+		return true;
+	}
+
+	/**
+	 * Returns whether any of the pairs next to a batch, up to
+	 * {@code BATCH_MARGIN} of them, crosses before the end of the batch. Such
+	 * a crossing changes the trajectory of the particle next to the batch,
+	 * either directly or through the crossings it sets off in turn.
+	 *
+	 * @param slot the index of the pair at the edge of the batch
+	 * @param step -1 to look to the left of the batch, or 1 to its right
+	 * @param end the end of the batch in system time units
+	 * @return true if one of the pairs crosses before the end of the batch
+	 */
+	private boolean crossesBefore(int slot, int step, double end) {
+		for (int k = 0; k < BATCH_MARGIN && slot >= 0 && slot < size - 1; k++, slot += step) {
+			if (collisionAt(slot) <= end) {
+				return true;
 			}
 		}
+		return false;
+	}
+
+	/**
+	 * Returns the position of a particle at a time without moving it.
+	 *
+	 * @param rank the rank of the particle
+	 * @param t the time in system time units
+	 * @return the position the particle would have at that time
+	 */
+	private double positionAt(int rank, double t) {
+		double dt = t - system.getTime(rank);
+		return system.getX(rank) + system.getV(rank) * dt + .5 * system.getAcceleration(rank) * dt * dt;
+	}
+
+	/**
+	 * Returns the absolute time of the next collision of a pair.
+	 *
+	 * @param slot the index of the left particle in the pair
+	 * @return the collision time in system time units within the current
+	 * interval
+	 */
+	private double collisionAt(int slot) {
+		return nextCollisionTime.get(slot) + baseCollisionTime.get(slot);
+	}
+
+	/**
+	 * Predicts the next collision of a pair whose particles may be in
+	 * different time frames, as {@code simulate} does for the neighbors of a
+	 * crossing. The collision queue is left to the caller.
+	 *
+	 * @param slot the index of the left particle in the pair
+	 */
+	private void predictPair(int slot) {
+		baseCollisionTime.put(slot, Math.max(system.getTime(slot), system.getTime(slot + 1)));
+		nextCollisionTime.put(slot, calculateCollision(slot, slot + 1,
+				Math.abs(baseCollisionTime.get(slot) - system.getTime(slot)),
+				Math.abs(baseCollisionTime.get(slot) - system.getTime(slot + 1))));
+	}
+
+	/**
+	 * The main loop of the parallel engine. A {@code DomainEngine} handles
+	 * every crossing up to the end of the interval, the next requested sample
+	 * or the end of the next tracer step, whichever comes first, after which
+	 * the interval is ended, the samples are taken or the tracers are advanced
+	 * just as in {@code simulate}. Crossing listeners are
+	 * notified once the crossings are committed, still in order of time.
+	 *
+	 * @param count the number of domains
+	 */
+	private void simulateDomains(int count) {
+		LISTENER_Crossing output = _crossingListeners.length > 0 ? this::_fireCrossingEvent : null;
+		DomainEngine parallel = new DomainEngine(this, system, nextCollisionTime, baseCollisionTime, storage,
+				count, output);
+
+		while (simulationTime < maxSimulationTime && !stopped) {
+			double until = Math.nextUp(systemInterval);
+			if (!sampleTimes.isEmpty()) {
+				until = Math.min(until, (sampleTimes.peek() - simulationTime) * CHARACTERISTIC_TIME);
+			}
+			until = Math.min(until, nextTracerTime);
+			double nextTime = parallel.advance(until);
+			crossings += parallel.takeCrossings();
+			if (!sampleTimes.isEmpty()) {
+				_fireSampledEvents(Math.min(nextTime, systemInterval));
+			}
+			if (tracers != null && nextTime >= nextTracerTime) {
+				stepTracers(Math.min(nextTime, systemInterval));
+			}
+
+			if (nextTime > systemInterval) {
+				massUpdate();
+				calculateEnergy();
+				simulationTime += characteristicInterval;//increment the "clock"
+				resetTimeFrames();
+				parallel.rebuild();
+				if (simulationTime >= maxSimulationTime || stopped) {
+					//Like simulate, handle the crossing found past the interval before stopping
+					nextTime -= systemInterval;
+					if (!sampleTimes.isEmpty()) {
+						_fireSampledEvents(nextTime);
+					}
+					parallel.advance(Math.nextUp(nextTime));
+					crossings += parallel.takeCrossings();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evolves the system with a kick-drift-kick leapfrog integrator rather
+	 * than by handling each crossing.
+	 *
+	 * <p>Every particle's acceleration is given by its rank, so after each
+	 * drift the particles are sorted by position again before the second kick.
+	 * Each block of ranks is sorted on its own, in parallel for very large
+	 * systems, after which a final pass over the whole system moves the few
+	 * particles that crossed into another block. Each pair found out of order
+	 * is counted as a crossing.</p>
+	 *
+	 * <p>Every interval is split into equal steps, so that listeners are
+	 * notified at the same times as with the exact engine. The adaptive engine
+	 * scales the step by the crossing time of the system, which grows as the
+	 * square root of its size, relative to the crossing time at the start of
+	 * the simulation. Requested samples are projected from the start of the
+	 * step they fall in, while tracers are advanced at the end of each
+	 * step.</p>
+	 */
+	private void simulateLeapfrog() {
+		nextCollisionTime = null;//collisions restored from a checkpoint are never kept up to date
+		if (!resumed) {
+			resetTimeFrames();
+		}
+		resumed = false;
+		final double reference = radius();
+		final int blockLength = blockLength();
+
+		while (simulationTime < maxSimulationTime && !stopped) {
+			double step = timeStep * CHARACTERISTIC_TIME;
+			if (engine == ENUM_EngineType.LEAPFROG_ADAPTIVE) {
+				step *= Math.min(1.0, Math.sqrt(radius() / reference));
+			}
+			int steps = (int) Math.ceil(systemInterval / step);
+			final double h = systemInterval / steps;
+
+			for (int k = 0; k < steps; k++) {
+				if (!sampleTimes.isEmpty()) {
+					system.setTimes(k * h);
+					_fireSampledEvents((k + 1) * h);
+				}
+				blockRange(blockLength).forEach(b -> {
+					int from = b * blockLength, to = Math.min(size, from + blockLength);
+					system.kick(from, to, .5 * h);
+					system.drift(from, to, h);
+				});
+				crossings += blockRange(blockLength).mapToLong(b -> {
+					int from = b * blockLength;
+					return system.sort(from, Math.min(size, from + blockLength));
+				}).sum();
+				if (blockLength < size) {
+					crossings += system.sort(0, size);
+				}
+				blockRange(blockLength).forEach(b -> {
+					int from = b * blockLength;
+					system.kick(from, Math.min(size, from + blockLength), .5 * h);
+				});
+				if (tracers != null) {
+					double end = k + 1 == steps ? systemInterval : (k + 1) * h;
+					system.setTimes(end);
+					stepTracers(end);
+				}
+			}
+
+			calculateEnergy();
+			simulationTime += characteristicInterval;//increment the "clock"
+			resetTimeFrames();
+		}
+	}
+
+	/**
+	 * Returns the root mean square position of the particles, which is a
+	 * measure of the size of the system as its center of mass stays at 0.
+	 *
+	 * @return the size of the system
+	 */
+	private double radius() {
+		double sum = 0.0;
+		for (int i = 0; i < size; i++) {
+			sum += system.getX(i) * system.getX(i);
+		}
+		return Math.sqrt(sum / size);
 	}
 
 	/**
@@ -447,9 +1647,13 @@ public final class ParticleSystem {
 	 * @return the next closest collision time
 	 */
 	private double findNextCollision() {
+		if (queue != null) {
+			collisionLeft = queue.nextSlot();
+			return queue.nextTime();
+		}
 		double ret = Double.MAX_VALUE;
-		for (int i = 0; i < nextCollisionTime.length; i++) {
-			double time = nextCollisionTime[i] + baseCollisionTime[i];
+		for (int i = 0; i < size - 1; i++) {
+			double time = nextCollisionTime.get(i) + baseCollisionTime.get(i);
 			if (ret > time) {
 				ret = time;
 				collisionLeft = i;
@@ -458,17 +1662,94 @@ public final class ParticleSystem {
 		return ret;
 	}
 
+	/**
+	 * Passes the current absolute collision time of a pair on to the
+	 * {@code CollisionQueue}, if one is in use.
+	 *
+	 * @param slot the index of the left particle in the pair
+	 */
+	private void requeue(int slot) {
+		if (queue != null) {
+			queue.update(slot, nextCollisionTime.get(slot) + baseCollisionTime.get(slot));
+		}
+	}
+
+	/**
+	 * Passes the current absolute collision times of a range of pairs on to
+	 * the {@code CollisionQueue}, if one is in use, all at once.
+	 *
+	 * @param from the index of the first pair in the range
+	 * @param to the index of the last pair in the range
+	 */
+	private void requeue(int from, int to) {
+		if (queue != null) {
+			for (int slot = from; slot <= to; slot++) {
+				queue.set(slot, nextCollisionTime.get(slot) + baseCollisionTime.get(slot));
+			}
+			queue.rebuild(from, to);
+		}
+	}
+
+	/**
+	 * Rebuilds the {@code CollisionQueue}, if one is in use, after the time
+	 * frames of the entire system were reset.
+	 */
+	private void rebuildQueue() {
+		if (queue != null) {
+			for (int i = 0; i < size - 1; i++) {
+				queue.set(i, nextCollisionTime.get(i) + baseCollisionTime.get(i));
+			}
+			queue.rebuild();
+		}
+	}
+
 	/**
 	 * Updates the entire system to the next interval and adjusts all time
 	 * values as needed.
+	 *
+	 * <p>Every particle and every pair is independent of the others here, so
+	 * for very large systems the ranks are split into blocks that are updated
+	 * in parallel.</p>
 	 */
 	private void massUpdate() {
-		for (int i = 0; i < size; i++) {//Update all of the particles to the proper time
-			system[i].update(systemInterval - particleTime[i], accel[i]);
-		}
-		for (int i = 0; i < nextCollisionTime.length; i++) {//Adjust the time for each possible collision
-			nextCollisionTime[i] = nextCollisionTime[i] + baseCollisionTime[i] - systemInterval;
+		final double interval = systemInterval;
+		final DoubleBuffer next = nextCollisionTime, base = baseCollisionTime;
+		final int blockLength = blockLength();
+		blockRange(blockLength).forEach(b -> {
+			int from = b * blockLength, to = Math.min(size, from + blockLength);
+			//Update all of the particles to the proper time
+			system.advance(from, to, interval);
+			//Adjust the time for each possible collision
+			for (int i = from; i < Math.min(to, size - 1); i++) {
+				next.put(i, next.get(i) + base.get(i) - interval);
+			}
+		});
+	}
+
+	/**
+	 * Returns the number of ranks in each block when the whole system is
+	 * updated or sampled at once.
+	 *
+	 * @return the length of a block
+	 */
+	private int blockLength() {
+		int blocks = 1;
+		if (parallelUpdate) {
+			blocks = Math.min(size, Runtime.getRuntime().availableProcessors() * BLOCKS_PER_PROCESSOR);
 		}
+		return (size + blocks - 1) / blocks;
+	}
+
+	/**
+	 * Returns the indices of the blocks of the whole system, in parallel if
+	 * the system is updated in parallel.
+	 *
+	 * @param blockLength the length of a block
+	 * @return the stream of block indices
+	 */
+	private IntStream blockRange(int blockLength) {
+		IntStream range = IntStream.range(0, (size + blockLength - 1) / blockLength);
+		return parallelUpdate ? range.parallel() : range;
 	}
 
 	/**
@@ -480,6 +1761,10 @@ public final class ParticleSystem {
 	 * should move in time before calculating the collision. The result returned
 	 * is the amount of time needed for a collision after the offsets have been
 	 * taken into account.</p>
+	 * <p>Rounding may leave two particles that just met slightly past each
+	 * other, which gives a negative or undefined time. Such a collision is
+	 * counted and treated as due immediately, so that the particles are
+	 * exchanged again and the simulation carries on.</p>
 	 *
 	 * @param lIndex the index of the particle on the left in a possible
 	 * collision in the {@code system}
@@ -491,59 +1776,140 @@ public final class ParticleSystem {
 	 * forward in time before a collision can be accurately calculated
 	 * @return the amount of time it will take for the two particles to collide
 	 */
-	private double calculateCollision(int lIndex, int rIndex, double lTimeOffset, double rTimeOffset) {
-		Particle l = system[lIndex], r = system[rIndex];
-		double x1 = l.x + lTimeOffset * l.v + 0.5 * lTimeOffset * lTimeOffset * accel[lIndex];
-		double v1 = l.v + lTimeOffset * accel[lIndex];
-		double x2 = r.x + rTimeOffset * r.v + 0.5 * rTimeOffset * rTimeOffset * accel[rIndex];
-		double v2 = r.v + rTimeOffset * accel[rIndex];
-
-		double dx = x1 - x2;
-		double dv = v1 - v2;
-		double da = accel[lIndex] - accel[rIndex];
-		
-		//This can be derived from solving for the collision time from the two
-		//kinematic equations: 
-		//x1 + v1 * t + .5 * a1 * t^2 = x2 + v2 * t + .5 * a2 * t^2
-		double val = (-dv + Math.sqrt(dv * dv - 2 * da * dx)) / da;
+	double calculateCollision(int lIndex, int rIndex, double lTimeOffset, double rTimeOffset) {
+		double lx = system.getX(lIndex), lv = system.getV(lIndex);
+		double rx = system.getX(rIndex), rv = system.getV(rIndex);
+		double la = system.getAcceleration(lIndex), ra = system.getAcceleration(rIndex);
+		double val = collisionTime(lx, lv, la, rx, rv, ra, lTimeOffset, rTimeOffset);
 		
 		try {
-			if (val < 0) {
+			if (!(val >= 0)) {
 				throw new EXCEPTION_Simulation(
 						"Collision time for particles at indeces "
 						+ "(" + lIndex + ", " + rIndex + ")"
 						+ " was negative after time " + simulationTime);
 			}
 		} catch (EXCEPTION_Simulation ex) {
-			errLog(ex.getMessage());
-			errLog("Particle Data: x v a t_offset");
-			errLog(String.format("Left : %f %f %f %f", l.x, l.v, accel[lIndex], lTimeOffset));
-			errLog(String.format("Right: %f %f %f %f", r.x, r.v, accel[rIndex], rTimeOffset));
-			errLog("Simulation terminated...");
-			simulator.exit(1);
+			//Only the first one is logged in full, as they tend to come in bursts. See resetTimeFrames
+			if (clampedCollisions.getAndIncrement() == 0) {
+				errLog(ex.getMessage());
+				errLog("Particle Data: x v a t_offset");
+				errLog(String.format("Left : %f %f %f %f", lx, lv, la, lTimeOffset));
+				errLog(String.format("Right: %f %f %f %f", rx, rv, ra, rTimeOffset));
+				errLog("Treating it as immediate and continuing...");
+			}
+			val = 0.0;
 		}
 
-		
 		return val;
 	}
 
+	/**
+	 * Calculates the amount of time until two particles collide from their
+	 * values alone. See {@code calculateCollision}.
+	 *
+	 * @param lx the position of the left particle
+	 * @param lv the velocity of the left particle
+	 * @param la the acceleration of the left particle
+	 * @param rx the position of the right particle
+	 * @param rv the velocity of the right particle
+	 * @param ra the acceleration of the right particle
+	 * @param lTimeOffset the amount of time the left particle needs to move
+	 * forward in time before a collision can be accurately calculated
+	 * @param rTimeOffset the amount of time the right particle needs to move
+	 * forward in time before a collision can be accurately calculated
+	 * @return the amount of time it will take for the two particles to collide
+	 */
+	static double collisionTime(double lx, double lv, double la, double rx, double rv, double ra,
+			double lTimeOffset, double rTimeOffset) {
+		double x1 = lx + lTimeOffset * lv + 0.5 * lTimeOffset * lTimeOffset * la;
+		double v1 = lv + lTimeOffset * la;
+		double x2 = rx + rTimeOffset * rv + 0.5 * rTimeOffset * rTimeOffset * ra;
+		double v2 = rv + rTimeOffset * ra;
+
+		double dx = x1 - x2;
+		double dv = v1 - v2;
+		double da = la - ra;
+
+		//This can be derived from solving for the collision time from the two
+		//kinematic equations: 
+		//x1 + v1 * t + .5 * a1 * t^2 = x2 + v2 * t + .5 * a2 * t^2
+		return (-dv + Math.sqrt(dv * dv - 2 * da * dx)) / da;
+	}
+
 	/**
 	 * Resets the base values of the collision time frames and the time frames
 	 * that the particles are in after the entire system has been updated to a
 	 * standard time, and then fires an update to all listeners that the system
-	 * was updated.
+	 * was updated. The simulation is asked to stop here once the system has
+	 * relaxed as often as requested, and any negative collision times treated
+	 * as immediate since the last update are reported.
 	 */
 	private void resetTimeFrames() {
-		baseCollisionTime = new double[size - 1];
-		particleTime = new double[size];
+		if (baseCollisionTime == null) {
+			baseCollisionTime = doubles(size - 1);
+		} else {
+			for (int i = 0; i < size - 1; i++) {
+				baseCollisionTime.put(i, 0.0);
+			}
+		}
+		system.resetTimes();
+		if (tracers != null) {
+			tracers.setTime(0.0);
+			tracerStepsTaken = 0;
+			nextTracerTime = tracerTime();
+		}
+		long clamped = clampedCollisions.get();
+		if (clamped > reportedClamps) {
+			errLog((clamped - reportedClamps) + " negative collision times were treated as immediate by time "
+					+ simulationTime + ", " + clamped + " in total");
+			reportedClamps = clamped;
+		}
+		if (relaxationLimit > 0 && !stopped && getMeanCrossings() >= relaxationLimit * size * size) {
+			dataLog("System relaxed " + relaxationLimit + " times by time " + simulationTime
+					+ ", stopping the simulation");
+			stop();
+		}
 		_fireUpdatedEvent();
 	}
 
+	/**
+	 * Advances the tracers through every tracer step of the current interval
+	 * that ends by the specified time. The particles must have been simulated
+	 * up to that time.
+	 *
+	 * @param limit the time up to which the tracers are advanced in system
+	 * time units within the current interval
+	 */
+	private void stepTracers(double limit) {
+		while (nextTracerTime <= limit) {
+			tracers.advance(nextTracerTime, system);
+			tracerStepsTaken++;
+			nextTracerTime = tracerTime();
+		}
+	}
+
+	/**
+	 * Returns the time at the end of the next tracer step. Every interval is
+	 * split into equal steps, the last of which ends exactly at the end of the
+	 * interval.
+	 *
+	 * @return the end of the next tracer step in system time units within the
+	 * current interval, or infinity if every step was taken
+	 */
+	private double tracerTime() {
+		int steps = (int) Math.ceil(characteristicInterval / tracerStep);
+		if (tracerStepsTaken >= steps) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return tracerStepsTaken + 1 == steps ? systemInterval : (tracerStepsTaken + 1) * (systemInterval / steps);
+	}
+
 	/**
 	 * Swaps two particles in the system itself.
 	 *
 	 * <p>Swapping requires the particles to do two things. Firstly they must
-	 * have their indeces in the array {@code system} swapped. Secondly, the
+	 * have their ranks in the store {@code system} swapped. Secondly, the
 	 * swapped particles MUST have their positions such that the particle on the
 	 * left must now also physically lie to the right in the pair. This ensures
 	 * that the array is accurate and lets the particles be affected by the
@@ -558,16 +1924,7 @@ public final class ParticleSystem {
 	private void swap(int left, int right) {
 		//Ensures that the particles pass through each other by swapping
 		//positions.  Normally, position differences are on the order of E-15
-		//if they need to be swapped.
-		if (system[left].x < system[right].x) {
-			double l = system[left].x;
-			system[left].x = system[right].x;
-			system[right].x = l;
-		}
-
-		//swap index locations
-		Particle temp = system[left];
-		system[left] = system[right];
-		system[right] = temp;
+		//if they need to be swapped. The store handles both steps at once.
+		system.swap(left, right);
 	}
 }
@@ -0,0 +1,265 @@
+package simulation.components;
+
+import java.util.stream.IntStream;
+
+/**
+ * The {@code TracerSet} class holds the massless tracer particles of a
+ * {@code ParticleSystem}. Tracers feel the field of the sheets of the system,
+ * but do not add to it, so they never enter the accelerations or the
+ * collision schedule of the sheets.
+ *
+ * <p>The field of the sheets is piecewise constant. A tracer with k sheets to
+ * its left is accelerated by
+ * <br>(N - 2 * k) / N</br>
+ * <br>which only changes when it crosses a sheet. Every tracer therefore only
+ * keeps track of the gap between sheets it lies in.</br></p>
+ *
+ * <p>Tracers are advanced in steps, each ending at a moment the sheets were
+ * already brought to by the simulation. Within a step every tracer follows a
+ * schedule of its own, crossing the sheets on either side of its gap one at a
+ * time, with each sheet following the path it is on at the end of the step.
+ * This is exact unless a neighboring sheet crossed another sheet during the
+ * step, so the error is controlled by the length of the step. Every tracer
+ * ends the step in the gap its position lies in. The cost of a step is
+ * proportional to the number of tracers plus the number of sheets they cross,
+ * regardless of the crossings among the sheets.</p>
+ *
+ * <p>Tracers are ordered by ID number and share a single time frame.</p>
+ *
+ * @author Erik Nguyen
+ */
+public final class TracerSet {
+
+	/**
+	 * The number of tracers in the set.
+	 */
+	public final int count;
+	/**
+	 * The number of sheets in the system the tracers belong to.
+	 */
+	private final int sheets;
+	private final double[] x;//positions by ID number
+	private final double[] v;//velocities by ID number
+	private final int[] gap;//the number of sheets to the left by ID number
+	/**
+	 * The time frame of every tracer in system time units.
+	 */
+	private double time;
+	/**
+	 * The number of times a tracer crossed a sheet.
+	 */
+	private long crossings;
+
+	/**
+	 * Constructs a set of tracers for a system of sheets.
+	 *
+	 * @param count the number of tracers
+	 * @param sheets the number of sheets in the system
+	 */
+	TracerSet(int count, int sheets) {
+		this.count = count;
+		this.sheets = sheets;
+		x = new double[count];
+		v = new double[count];
+		gap = new int[count];
+	}
+
+	/**
+	 * Returns the position of the tracer with the specified ID number.
+	 *
+	 * @param id the ID number of the tracer
+	 * @return the position of the tracer
+	 */
+	public double getX(int id) {
+		return x[id];
+	}
+
+	/**
+	 * Returns the velocity of the tracer with the specified ID number.
+	 *
+	 * @param id the ID number of the tracer
+	 * @return the velocity of the tracer
+	 */
+	public double getV(int id) {
+		return v[id];
+	}
+
+	/**
+	 * Returns the number of sheets to the left of the tracer with the
+	 * specified ID number.
+	 *
+	 * @param id the ID number of the tracer
+	 * @return the gap between sheets the tracer lies in
+	 */
+	public int getGap(int id) {
+		return gap[id];
+	}
+
+	/**
+	 * Returns the number of times a tracer crossed a sheet since the tracers
+	 * were placed.
+	 *
+	 * @return the number of crossings of tracers
+	 */
+	public long getCrossingCount() {
+		return crossings;
+	}
+
+	/**
+	 * Places a tracer, finding the gap it lies in from the sheets. Every
+	 * sheet must be in the time frame of the tracers.
+	 *
+	 * @param id the ID number of the tracer
+	 * @param x the position of the tracer
+	 * @param v the velocity of the tracer
+	 * @param store the sheets of the system ordered by position
+	 */
+	void set(int id, double x, double v, ParticleStore store) {
+		int lo = 0, hi = sheets;//the gap lies within [lo, hi]
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (store.getX(mid) < x) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		this.x[id] = x;
+		this.v[id] = v;
+		gap[id] = lo;
+	}
+
+	/**
+	 * Sets the time frame of every tracer without moving any of them, e.g.
+	 * after the time frames of the whole system were reset.
+	 *
+	 * @param t the time frame in system time units
+	 */
+	void setTime(double t) {
+		time = t;
+	}
+
+	/**
+	 * Advances every tracer to the specified time. The sheets must have been
+	 * simulated up to at least that time, and none of them may have crossed
+	 * another since. Very large sets are advanced in parallel blocks.
+	 *
+	 * @param t the time to advance the tracers to in system time units
+	 * @param store the sheets of the system ordered by position
+	 */
+	void advance(double t, ParticleStore store) {
+		if (count < EnergyCalculator.PARALLEL_THRESHOLD) {
+			crossings += advance(0, count, t, store);
+		} else {
+			final int blocks = Runtime.getRuntime().availableProcessors() * 4;
+			final int blockLength = (count + blocks - 1) / blocks;
+			crossings += IntStream.range(0, blocks).parallel().mapToLong(b -> {
+				int from = Math.min(count, b * blockLength);
+				return advance(from, Math.min(count, from + blockLength), t, store);
+			}).sum();
+		}
+		time = t;
+	}
+
+	/**
+	 * Advances the tracers with an ID number from {@code from} up to but not
+	 * including {@code to} to the specified time.
+	 *
+	 * <p>The next crossing of a tracer is found with the sheet on either side
+	 * of its gap exactly as for two sheets, see
+	 * {@code ParticleSystem.collisionTime}. The tracer is then moved onto the
+	 * sheet that comes first and on into the next gap. Rounding may leave a
+	 * tracer just past a sheet it has yet to cross, which makes that crossing
+	 * due immediately, while the sheet it just crossed is only crossed again
+	 * after some time has passed, so a tracer can never get stuck on a
+	 * sheet.</p>
+	 *
+	 * @param from the first ID number to be advanced
+	 * @param to the ID number after the last one to be advanced
+	 * @param t the time to advance the tracers to in system time units
+	 * @param store the sheets of the system ordered by position
+	 * @return the number of crossings of these tracers
+	 */
+	private long advance(int from, int to, double t, ParticleStore store) {
+		long crossed = 0;
+		for (int i = from; i < to; i++) {
+			double xi = x[i], vi = v[i], now = time;
+			int k = gap[i], last = -1;//the rank of the sheet crossed last
+			while (true) {
+				double a = (sheets - 2.0 * k) / sheets;
+				double left = Double.POSITIVE_INFINITY, right = Double.POSITIVE_INFINITY;
+				if (k > 0) {
+					int r = k - 1;
+					double ds = now - store.getTime(r), ar = store.getAcceleration(r);
+					left = due(ParticleSystem.collisionTime(position(store, r, now),
+							store.getV(r) + ar * ds, ar, xi, vi, a, 0.0, 0.0), r == last);
+				}
+				if (k < sheets) {
+					double ds = now - store.getTime(k), ak = store.getAcceleration(k);
+					right = due(ParticleSystem.collisionTime(xi, vi, a, position(store, k, now),
+							store.getV(k) + ak * ds, ak, 0.0, 0.0), k == last);
+				}
+				double dt = Math.min(left, right);
+				if (now + dt > t) {
+					dt = t - now;
+					xi = xi + vi * dt + .5 * a * dt * dt;
+					vi = vi + a * dt;
+					break;
+				}
+
+				//Move the tracer onto the sheet and into the neighboring gap
+				now += dt;
+				vi = vi + a * dt;
+				last = left <= right ? k - 1 : k;
+				xi = position(store, last, now);
+				k = left <= right ? k - 1 : k + 1;
+				crossed++;
+			}
+
+			//A sheet that crossed another during the step was followed along its
+			//new path from the start of the step, which may leave the tracer on
+			//the wrong side of it
+			while (k > 0 && xi < position(store, k - 1, t)) {
+				k--;
+				crossed++;
+			}
+			while (k < sheets && xi > position(store, k, t)) {
+				k++;
+				crossed++;
+			}
+			x[i] = xi;
+			v[i] = vi;
+			gap[i] = k;
+		}
+		return crossed;
+	}
+
+	/**
+	 * Returns where a sheet is at the specified time, following the path it
+	 * is on.
+	 *
+	 * @param store the sheets of the system ordered by position
+	 * @param rank the rank of the sheet
+	 * @param t the time in system time units
+	 * @return the position of the sheet
+	 */
+	private static double position(ParticleStore store, int rank, double t) {
+		double ds = t - store.getTime(rank);
+		return store.getX(rank) + store.getV(rank) * ds + .5 * store.getAcceleration(rank) * ds * ds;
+	}
+
+	/**
+	 * Returns the time until a crossing of a tracer is due.
+	 *
+	 * @param dt the time found for the crossing
+	 * @param crossedLast whether or not the tracer crossed the same sheet
+	 * last
+	 * @return the time until the crossing, or infinity if there is none
+	 */
+	private static double due(double dt, boolean crossedLast) {
+		if (crossedLast) {
+			return dt > 0 ? dt : Double.POSITIVE_INFINITY;
+		}
+		return dt >= 0 ? dt : 0.0;
+	}
+}
@@ -0,0 +1,95 @@
+package simulation.listeners;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import simulation.components.ParticleStore;
+
+/**
+ * This class turns frames of values into fixed-size binary records.
+ *
+ * <p>A binary data file starts with a header of {@code HEADER_SIZE} bytes:
+ * <br>the magic number, the format version, the number of particles N, the
+ * channel held in the file (energy, velocity or position), the characteristic
+ * interval between frames as a double, and the number of bytes per value
+ * (4 or 8), followed by 4 unused bytes.</br>
+ * <br>Each frame that follows is the simulation time as a double followed by
+ * the N values ordered by ID number. Everything is little-endian, so frame k
+ * starts at {@code HEADER_SIZE + k * (8 + N * width)}.</br></p>
+ * <p>{@code dataAnalysis.BinaryFrameReader} reads these files.</p>
+ * @author Erik Nguyen
+ */
+class BinaryEncoder extends FrameEncoder {
+	static final int MAGIC = 0x4F444246;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+	static final int CHANNEL_ENERGY = 0, CHANNEL_VELOCITY = 1, CHANNEL_POSITION = 2;
+	private final boolean doubles;
+
+	/**
+	 * Creates an encoder for values of the specified width.
+	 * @param width the number of bytes per value, either 4 or 8
+	 */
+	BinaryEncoder(int width){
+		doubles = width == 8;
+	}
+
+	@Override
+	void encode(double time, double[] values){
+		reserve(8).putDouble(time);
+		if(doubles){
+			for(double d : values){
+				reserve(8).putDouble(d);
+			}
+		} else {
+			for(double d : values){
+				reserve(4).putFloat((float) d);
+			}
+		}
+	}
+
+	/**
+	 * Encodes a single frame of one channel straight from a particle store,
+	 * without copying it into an array first. The values are read in order of
+	 * ID number, so they end up exactly as {@code encode} would write them.
+	 * @param time the time of the frame
+	 * @param store the store holding the values
+	 * @param channel which of the channels to encode
+	 */
+	void encode(double time, ParticleStore store, int channel){
+		reserve(8).putDouble(time);
+		for(int id = 0; id < store.size; id++){
+			double d;
+			if(channel == CHANNEL_ENERGY)
+				d = store.getEnergy(id);
+			else if(channel == CHANNEL_VELOCITY)
+				d = store.getV(store.getRank(id));
+			else
+				d = store.getX(store.getRank(id));
+			if(doubles)
+				reserve(8).putDouble(d);
+			else
+				reserve(4).putFloat((float) d);
+		}
+	}
+
+	/**
+	 * Writes the header of a new binary data file.
+	 * @param channel the channel of the file, positioned at its start
+	 * @param size the number of particles
+	 * @param type which of the channels the file holds
+	 * @param interval the characteristic interval between frames
+	 * @param width the number of bytes per value
+	 * @throws IOException if the header could not be written
+	 */
+	static void writeHeader(FileChannel channel, int size, int type, double interval, int width) throws IOException{
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(type)
+				.putDouble(interval).putInt(width).putInt(0);
+		header.flip();
+		while(header.hasRemaining()){
+			channel.write(header);
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package simulation.listeners;
+
+import static simulation.Mainframe.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import simulation.components.Checkpoint;
+import simulation.components.ParticleSystem;
+
+/**
+ * This class periodically saves a checkpoint of a particle system so that its
+ * simulation can be resumed if it is ever interrupted.
+ *
+ * <p>The state of the system is copied while the simulation is paused for an
+ * update, but the copy is written on a separate thread so that the
+ * simulation only pauses for as long as the copy takes. If the previous
+ * checkpoint is still being written when the next one is due, the next one
+ * is skipped.</p>
+ *
+ * <p>A checkpointer must be added to the system after the data writer whose
+ * files it keeps track of, so that the latest frame is included in the
+ * recorded file lengths. The same holds for a trajectory writer, whose frames
+ * are written before every checkpoint.</p>
+ * @author Erik Nguyen
+ */
+public class Checkpointer implements LISTENER_Updated{
+	private final ParticleSystem system;
+	private final DataWriter writer;
+	private final File file;
+	private final int every;
+	private final ExecutorService executor;
+	private TrajectoryWriter trajectories;
+	private Future<?> pending;
+	private int intervals = 0;
+
+	/**
+	 * Creates a checkpointer for a system.
+	 * @param sys the system to be saved
+	 * @param writer the data writer recording the system, or null
+	 * @param file the file to save the checkpoints in
+	 * @param everyIntervals the number of intervals between checkpoints
+	 */
+	public Checkpointer(ParticleSystem sys, DataWriter writer, File file, int everyIntervals){
+		system = sys;
+		this.writer = writer;
+		this.file = file;
+		every = Math.max(1, everyIntervals);
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r){
+				Thread t = new Thread(r, "Checkpointer");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Sets the trajectory writer whose frames are written before every
+	 * checkpoint, so that its file is complete at the time of the checkpoint.
+	 * @param trajectories the trajectory writer recording the system, or null
+	 */
+	public void setTrajectoryWriter(TrajectoryWriter trajectories){
+		this.trajectories = trajectories;
+	}
+
+	/**
+	 * Takes a checkpoint of the system once enough intervals have passed since
+	 * the previous one.
+	 * @param evt the trigger event for an update of the system
+	 */
+	@Override
+	public void receiveUpdate(EVENT_Updated evt){
+		if(++intervals % every != 0)
+			return;
+		if(pending != null && !pending.isDone()){
+			errLog("Checkpoint at time " + evt.getTime() + " skipped, the previous one is still being written.");
+			return;
+		}
+
+		if(trajectories != null)
+			trajectories.flush();
+		final Checkpoint cp = system.checkpoint();
+		if(writer != null)
+			cp.setWriterState(writer.getRootDir(), writer.getFormat().name(), writer.getOffsets());
+
+		pending = executor.submit(new Runnable(){
+			@Override
+			public void run(){
+				try{
+					cp.write(file);
+				} catch (IOException ex){
+					errLog("Could not write checkpoint " + file + ": " + ex.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Waits for the last checkpoint to be written and stops the thread that
+	 * writes them.
+	 */
+	public void close(){
+		executor.shutdown();
+		try{
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException ex){
+			Thread.currentThread().interrupt();
+		}
+	}
+}
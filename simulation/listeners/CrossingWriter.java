@@ -0,0 +1,103 @@
+package simulation.listeners;
+
+import static simulation.Mainframe.*;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import simulation.components.ParticleStore;
+import simulation.components.ParticleSystem;
+
+/**
+ * This class records the distribution of the number of crossings of every
+ * particle after every update as one line of a CSV file, along with the
+ * relaxation time it implies (see {@code ParticleSystem.getRelaxationTime}).
+ *
+ * <p>Every line holds the time of the update in characteristic time units,
+ * the mean, least and greatest number of crossings of a particle, the
+ * estimated relaxation time and the number of relaxation times that passed.
+ * It ends with a histogram of the number of crossings relative to the mean,
+ * in bins of width {@code BIN_WIDTH} whose upper edges name the columns, the
+ * last of which holds every particle beyond the others. The counters are kept
+ * by the engine itself, so this takes a single pass over the particles.</p>
+ *
+ * <p>A system resumed from a checkpoint continues the file of the run it was
+ * resumed from, as {@code DiagnosticsWriter} does. Its counters were restored
+ * along with it.</p>
+ * @author Erik Nguyen
+ */
+public class CrossingWriter implements LISTENER_Updated{
+	/**
+	 * The number of bins of the histogram, including the last one.
+	 */
+	public static final int BINS = 13;
+	/**
+	 * The width of a bin of the histogram relative to the mean number of
+	 * crossings.
+	 */
+	public static final double BIN_WIDTH = 0.25;
+	private final ParticleSystem system;
+	private final long[] histogram = new long[BINS];
+	private final PrintWriter out;
+
+	/**
+	 * Creates a crossing writer for a system.
+	 * @param sys the system to be recorded
+	 * @param file the CSV file to write, which is replaced if it exists
+	 * unless the system was resumed
+	 * @throws IOException if the file could not be created
+	 */
+	public CrossingWriter(ParticleSystem sys, String file) throws IOException{
+		system = sys;
+		StringBuilder header = new StringBuilder("time,mean,min,max,relaxation_time,relaxations");
+		for(int b = 1; b < BINS; b++){
+			header.append(",hist_").append(b * BIN_WIDTH);
+		}
+		header.append(",hist_inf");
+		out = DiagnosticsWriter.create(file,
+				DiagnosticsWriter.keptLines(file, header.toString(), sys.getSimulationTime()));
+	}
+
+	/**
+	 * Records the crossings of the particles at the time of the update.
+	 * @param evt the trigger event for an update of the system
+	 */
+	@Override
+	public void receiveUpdate(EVENT_Updated evt){
+		ParticleStore store = evt.data;
+		long sum = 0, min = Long.MAX_VALUE, max = 0;
+		for(int id = 0; id < store.size; id++){
+			long c = store.getCrossings(id);
+			sum += c;
+			min = Math.min(min, c);
+			max = Math.max(max, c);
+		}
+		double mean = (double) sum / store.size;
+
+		Arrays.fill(histogram, 0);
+		for(int id = 0; id < store.size; id++){
+			int b = 0;
+			if(mean > 0)
+				b = (int) Math.min(BINS - 1, store.getCrossings(id) / (mean * BIN_WIDTH));
+			histogram[b]++;
+		}
+
+		double relaxationTime = system.getRelaxationTime();
+		StringBuilder line = new StringBuilder();
+		line.append(evt.time).append(',').append(mean).append(',').append(min).append(',').append(max)
+				.append(',').append(relaxationTime).append(',').append(mean / ((double) store.size * store.size));
+		for(long count : histogram){
+			line.append(',').append(count);
+		}
+		out.println(line);
+		out.flush();
+		if(out.checkError())
+			errLog("Could not write the crossings at time " + evt.time);
+	}
+
+	/**
+	 * Closes the CSV file.
+	 */
+	public void close(){
+		out.close();
+	}
+}
@@ -2,54 +2,137 @@ package simulation.listeners;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import static simulation.Mainframe.*;
 import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
-import simulation.components.Particle;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import simulation.components.Checkpoint;
+import simulation.components.ENUM_EngineType;
+import simulation.components.ENUM_StorageType;
+import simulation.components.ParticleStore;
 import simulation.components.ParticleSystem;
 
 /**
  * This class handles writing the particle system's data into data files
  * for storage. Note that some data is truncated to floats in order to reduce
  * file storage sizes, and hence some resolution will be lost.
+ * 
+ * <p>By default every frame is written out on the simulation's own thread.
+ * In pipelined mode the simulation only copies each frame into a buffer taken
+ * from a fixed pool and hands it over to a separate writer thread, which
+ * formats every waiting frame and writes them out together. What happens
+ * when no buffer is free is decided by an {@code ENUM_Backpressure}.</p>
+ * 
+ * <p>The frames are stored as text in {@code energies.dat}, {@code velocity.dat}
+ * and {@code position.dat}, or as fixed-size binary frames in the matching
+ * {@code .bin} files depending on the chosen {@code ENUM_OutputFormat}. The
+ * layout of the binary files is described in {@code BinaryEncoder}. The
+ * {@code EVENTS} format replaces the frames by a log of every crossing in
+ * {@code events.bin}, from which frames can be reconstructed at any time. See
+ * {@code EventLogWriter}.</p>
+ * 
+ * <p>Frames are written after every update unless an {@code OutputCadence}
+ * was set, in which case only the updates it finds worth a frame are written
+ * and the time of every frame is listed in {@code times.dat}. A frame stride
+ * only writes every so many intervals, e.g. while a {@code TrajectoryWriter}
+ * follows a few particles after every interval.</p>
  * @author Erik
  */
 public class DataWriter implements LISTENER_Updated{
 	private static final SimpleDateFormat DATEFORMAT = new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss");
 	private int size;
-	private Particle[] temp;
-	private float[] particle_e, particle_v, particle_x;
-	private PrintWriter write_e, write_v, write_x;
+	private Frame frame;
+	private final ENUM_OutputFormat format;
+	private FrameEncoder encode_e, encode_v, encode_x;
+	private FileChannel write_e, write_v, write_x;
+	private EventLogWriter events;//only in the EVENTS format
+	private boolean direct;//binary frames are encoded straight from an off-heap store
 	private double initialVirial;
 	private final String rootDir;
 	
+	//Frame stride and adaptive cadence
+	private int stride = 1;
+	private double interval, length;
+	private OutputCadence cadence;
+	private PrintWriter times;
+	private boolean resumed;
+	private long timesOffset = -1;//the length of times.dat at the checkpoint resumed from
+	private long skippedOffset = 0;//the frames skipped by the cadence until the checkpoint
+	
+	//Pipelined mode
+	private BlockingQueue<Frame> free, ring;
+	private ENUM_Backpressure backpressure;
+	private Thread writerThread;
+	private long published = 0, written = 0, dropped = 0;
+	private IOException failure;
+	
 	//Prevent default constructor calls
 	private DataWriter(){
 		rootDir = null;
+		format = null;
+	}
+	
+	public DataWriter(ParticleSystem sys){
+		this(sys, "data/" + sys.systemType + "/" + DATEFORMAT.format(new Date())+"/");
+	}
+	
+	/**
+	 * Creates a data writer that stores its files in the specified directory
+	 * rather than a directory named after the current time.
+	 * @param sys the system to be recorded
+	 * @param directory the directory to store the data files in, ending with
+	 * a separator
+	 */
+	public DataWriter(ParticleSystem sys, String directory){
+		this(sys, directory, ENUM_OutputFormat.TEXT);
 	}
 	
-	public DataWriter(ParticleSystem sys){		
+	/**
+	 * Creates a data writer that stores its files in the specified directory
+	 * and format.
+	 * @param sys the system to be recorded
+	 * @param directory the directory to store the data files in, ending with
+	 * a separator
+	 * @param format the format of the data files
+	 */
+	public DataWriter(ParticleSystem sys, String directory, ENUM_OutputFormat format){
 		logHeader();
 		dataLog("Initialized data streams...");
-		rootDir = "data/" + sys.systemType + "/" + DATEFORMAT.format(new Date())+"/";
+		rootDir = directory;
 		File dir = new File(rootDir);
 		if(!dir.exists())
 			dir.mkdirs();
 		
 		size = sys.size;
-		initialVirial = sys.getVirialRatio();
+		interval = sys.characteristicInterval;
+		length = sys.maxSimulationTime;
+		initialVirial = sys.getInitialVirialRatio();
+		this.format = format;
+		createEncoders();
 		
 		try{//Initialize the data writers
-			write_e = new PrintWriter(new File(rootDir + "energies.dat"));
-			write_v = new PrintWriter(new File(rootDir + "velocity.dat"));
-			write_x = new PrintWriter(new File(rootDir + "position.dat"));
-		} catch (FileNotFoundException ex){}
+			if(format == ENUM_OutputFormat.EVENTS){
+				events = new EventLogWriter(open(rootDir + "events.bin"), sys);
+				sys.addCrossingListener(events);
+			} else {
+				openChannels(sys);
+			}
+		} catch (IOException ex){
+			errLog("Could not open data files in " + rootDir + ": " + ex.getMessage());
+		}
 		
 		//Initialize the storage arrays
-		particle_e = new float[size];
-		particle_v = new float[size];
-		particle_x = new float[size];
+		createFrame(sys);
 		
 		dataLog("Recording initial settings");
 		recordInitialSettings(sys);
@@ -58,6 +141,273 @@ public class DataWriter implements LISTENER_Updated{
 		logFooter();
 	}
 	
+	/**
+	 * Creates the data file of each channel, along with its header if the
+	 * format is binary.
+	 * @param sys the system to be recorded
+	 * @throws IOException if a file could not be created
+	 */
+	private void openChannels(ParticleSystem sys) throws IOException{
+		write_e = open(rootDir + "energies" + format.extension);
+		write_v = open(rootDir + "velocity" + format.extension);
+		write_x = open(rootDir + "position" + format.extension);
+		if(format != ENUM_OutputFormat.TEXT){
+			double interval = sys.characteristicInterval;
+			BinaryEncoder.writeHeader(write_e, size, BinaryEncoder.CHANNEL_ENERGY, interval, format.width);
+			BinaryEncoder.writeHeader(write_v, size, BinaryEncoder.CHANNEL_VELOCITY, interval, format.width);
+			BinaryEncoder.writeHeader(write_x, size, BinaryEncoder.CHANNEL_POSITION, interval, format.width);
+		}
+	}
+	
+	/**
+	 * Creates a data writer that continues the files of a previous writer
+	 * from the moment a checkpoint was taken. Anything written to the files
+	 * after the checkpoint is discarded.
+	 * @param sys the system resumed from the checkpoint
+	 * @param checkpoint the checkpoint holding the state of the previous
+	 * writer
+	 * @throws IOException if the files of the previous writer could not be
+	 * reopened
+	 */
+	public DataWriter(ParticleSystem sys, Checkpoint checkpoint) throws IOException{
+		logHeader();
+		dataLog("Reopening data streams...");
+		rootDir = checkpoint.getWriterDirectory();
+		resumed = true;
+		size = sys.size;
+		interval = sys.characteristicInterval;
+		length = sys.maxSimulationTime;
+		initialVirial = sys.getInitialVirialRatio();
+		format = ENUM_OutputFormat.valueOf(checkpoint.getWriterFormat());
+		createEncoders();
+		
+		long[] offsets = checkpoint.getWriterOffsets();
+		if(format == ENUM_OutputFormat.EVENTS){
+			String file = rootDir + "events.bin";
+			events = new EventLogWriter(reopen(file, offsets[0]), sys, EventLogWriter.readKeyframes(file));
+			sys.addCrossingListener(events);
+			createFrame(sys);
+			dataLog("Completed.");
+			logFooter();
+			return;
+		}
+		write_e = reopen(rootDir + "energies" + format.extension, offsets[0]);
+		write_v = reopen(rootDir + "velocity" + format.extension, offsets[1]);
+		write_x = reopen(rootDir + "position" + format.extension, offsets[2]);
+		if(offsets.length > 3)
+			timesOffset = offsets[3];
+		if(offsets.length > 4)
+			skippedOffset = offsets[4];
+		
+		createFrame(sys);
+		
+		dataLog("Completed.");
+		logFooter();
+	}
+	
+	/**
+	 * Creates the buffer of the next frame. Binary frames of a system kept
+	 * off the heap are encoded straight from its store instead, so that no
+	 * copy of the frame is ever made on the heap.
+	 * @param sys the system to be recorded
+	 */
+	private void createFrame(ParticleSystem sys){
+		direct = sys.getStorage() == ENUM_StorageType.DIRECT
+				&& format != ENUM_OutputFormat.TEXT && format != ENUM_OutputFormat.EVENTS;
+		frame = direct ? null : new Frame(size);
+	}
+	
+	/**
+	 * Creates the encoder of each data file for the chosen format.
+	 */
+	private void createEncoders(){
+		if(format == ENUM_OutputFormat.TEXT){
+			encode_e = new TextEncoder();
+			encode_v = new TextEncoder();
+			encode_x = new TextEncoder();
+		} else {
+			encode_e = new BinaryEncoder(format.width);
+			encode_v = new BinaryEncoder(format.width);
+			encode_x = new BinaryEncoder(format.width);
+		}
+	}
+	
+	/**
+	 * Creates a new, empty data file and opens it for writing.
+	 * @param file the data file
+	 * @return a channel writing to the file
+	 * @throws IOException if the file could not be created
+	 */
+	static FileChannel open(String file) throws IOException{
+		return FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+	
+	/**
+	 * Cuts a data file down to a specified length and opens it for appending.
+	 * @param file the data file
+	 * @param length the length to cut the file down to
+	 * @return a channel appending to the file
+	 * @throws IOException if the file could not be cut or opened
+	 */
+	static FileChannel reopen(String file, long length) throws IOException{
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+			if(raf.length() < length)
+				throw new IOException(file + " is shorter than its checkpoint");
+			raf.setLength(length);
+		}
+		return FileChannel.open(Paths.get(file), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+	
+	/**
+	 * Switches this writer to pipelined mode, in which frames are written on
+	 * a separate thread. This must be called before the simulation starts,
+	 * and has no effect in the {@code EVENTS} format as crossings are
+	 * recorded the moment they happen. Since the simulation carries on while
+	 * frames are written, every frame is then copied into a buffer on the
+	 * heap, even for systems kept off the heap.
+	 * @param buffers the number of frames that may wait to be written at once
+	 * @param policy what to do with a frame when no buffer is free
+	 */
+	public synchronized void setPipelined(int buffers, ENUM_Backpressure policy){
+		if(writerThread != null || events != null)
+			return;
+		backpressure = policy;
+		free = new ArrayBlockingQueue<Frame>(Math.max(1, buffers));
+		ring = new ArrayBlockingQueue<Frame>(Math.max(1, buffers) + 1);//room for the end marker
+		if(frame != null)
+			free.add(frame);
+		direct = false;
+		while(free.remainingCapacity() > 0){
+			free.add(new Frame(size));
+		}
+		
+		writerThread = new Thread(new Runnable(){
+			@Override
+			public void run(){
+				drain();
+			}
+		}, "DataWriter " + rootDir);
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+	
+	/**
+	 * Writes a frame only at every multiple of the specified number of
+	 * intervals, and at the end of the simulation. Since the frames are picked
+	 * by their time, a writer resuming a previous run writes the same frames.
+	 * This has no effect in the {@code EVENTS} format. Along with a cadence,
+	 * only the frames at the stride are considered by the cadence.
+	 * @param intervals the number of intervals between frames
+	 */
+	public void setFrameStride(int intervals){
+		stride = Math.max(1, intervals);
+	}
+	
+	/**
+	 * Writes frames at the cadence specified rather than after every update,
+	 * and lists the time of every frame in {@code times.dat}. This must be
+	 * called before the simulation starts, and has no effect in the
+	 * {@code EVENTS} format, which records every crossing anyway.
+	 * <p>A writer resuming a previous run continues its {@code times.dat} and
+	 * compares the following updates against the last frame listed there, so
+	 * it writes the same frames the previous run would have. A run that was
+	 * not recorded at a cadence cannot be resumed at one.</p>
+	 * @param cadence the cadence of the frames
+	 */
+	public void setCadence(OutputCadence cadence){
+		if(events != null)
+			return;
+		String file = rootDir + "times.dat";
+		try{
+			if(resumed){
+				if(timesOffset < 0){
+					errLog("Cannot resume " + rootDir + " at a cadence, as it was recorded without one");
+					return;
+				}
+				try(RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+					if(raf.length() < timesOffset)
+						throw new IOException(file + " is shorter than its checkpoint");
+					raf.setLength(timesOffset);
+				}
+				List<String> lines = Files.readAllLines(Paths.get(file));
+				if(!lines.isEmpty())
+					cadence.restore(lines.get(lines.size() - 1), skippedOffset);
+				times = new PrintWriter(Files.newBufferedWriter(Paths.get(file), StandardOpenOption.APPEND));
+			} else {
+				times = new PrintWriter(new File(file));
+			}
+			this.cadence = cadence;
+		} catch (IOException ex){
+			errLog("Could not open " + file + ": " + ex.getMessage());
+		}
+	}
+	
+	/**
+	 * Sets the number of intervals between keyframes in the {@code EVENTS}
+	 * format. This must be called before the simulation starts. By default a
+	 * keyframe is recorded every 20 intervals.
+	 * @param intervals the number of intervals between keyframes
+	 */
+	public void setKeyframeInterval(int intervals){
+		if(events != null)
+			events.setKeyframes(intervals);
+	}
+	
+	/**
+	 * Returns the number of frames dropped in pipelined mode because no
+	 * buffer was free.
+	 * @return the number of dropped frames
+	 */
+	public synchronized long getDroppedFrames(){
+		return dropped;
+	}
+	
+	/**
+	 * Waits until every frame handed over to the writer thread has been
+	 * written, and returns the length of each data file in the order
+	 * energies, velocities, positions, followed by the length of
+	 * {@code times.dat} and the number of frames skipped so far if a cadence
+	 * was set. In the {@code EVENTS} format only the length of the log is
+	 * returned.
+	 * @return the current lengths of the data files
+	 */
+	public long[] getOffsets(){
+		awaitWritten();
+		try{
+			if(events != null)
+				return new long[]{events.length()};
+			if(times != null){
+				times.flush();
+				return new long[]{write_e.size(), write_v.size(), write_x.size(),
+					new File(rootDir + "times.dat").length(), cadence.getSkippedFrames()};
+			}
+			return new long[]{write_e.size(), write_v.size(), write_x.size()};
+		} catch (IOException ex){
+			errLog("Could not read the length of the data files: " + ex.getMessage());
+			return new long[]{
+				new File(rootDir + "energies" + format.extension).length(),
+				new File(rootDir + "velocity" + format.extension).length(),
+				new File(rootDir + "position" + format.extension).length()};
+		}
+	}
+	
+	/**
+	 * Returns the directory that the data files are stored in.
+	 * @return the root directory of the data files
+	 */
+	public String getRootDir(){
+		return rootDir;
+	}
+	
+	/**
+	 * Returns the format of the data files.
+	 * @return the format of the data files
+	 */
+	public ENUM_OutputFormat getFormat(){
+		return format;
+	}
+	
 	/**
 	 * Records the initial positions and velocities of the particles.
 	 * <p>Each particle is given its own line.</p>
@@ -67,8 +417,9 @@ public class DataWriter implements LISTENER_Updated{
 		try {
 			PrintWriter temp = new PrintWriter(new File(rootDir + "init.dat"));
 			String[] init = new String[size];
-			for(Particle p : sys.getSystem()){
-				init[p.ID_Number] = p.dataString();
+			ParticleStore store = sys.getStore();
+			for(int j = 0; j < size; j++){
+				init[store.getID(j)] = String.format("%f\t%f", store.getX(j), store.getV(j));
 			}
 			for(String s : init){
 				temp.println(s);
@@ -85,31 +436,198 @@ public class DataWriter implements LISTENER_Updated{
 	 * However, the particles are ordered within the line by their ID
 	 * numbers. Hence while the rows of data represent time evolution,
 	 * the columns of data represent 1 distinct particle each.
+	 * <p>Binary files hold the same rows as fixed-size frames, each led by
+	 * the time of the update.</p>
+	 * <p>In pipelined mode the data is only copied into a free buffer here,
+	 * and is written out later on by the writer thread.</p>
+	 * <p>Binary frames of a system kept off the heap are otherwise encoded
+	 * straight from its store into the direct buffers of the encoders.</p>
+	 * <p>If a frame stride was set, updates between the strides are skipped.
+	 * If a cadence was set, updates it does not find worth a frame are
+	 * skipped, and every frame written is listed in {@code times.dat}.</p>
 	 * @param evt the trigger event for an update of the system 
 	 */
 	@Override
 	public void receiveUpdate(EVENT_Updated evt) {
-		temp = evt.data;
+		if(events != null){
+			events.receiveUpdate(evt);
+			return;
+		}
+		if(stride > 1 && Math.round(evt.time / interval) % stride != 0 && evt.time + interval / 2 < length)
+			return;
+		if(cadence != null && !cadence.due(evt))
+			return;
+		if(direct){
+			listTime();
+			try{
+				((BinaryEncoder) encode_e).encode(evt.time, evt.data, BinaryEncoder.CHANNEL_ENERGY);
+				((BinaryEncoder) encode_v).encode(evt.time, evt.data, BinaryEncoder.CHANNEL_VELOCITY);
+				((BinaryEncoder) encode_x).encode(evt.time, evt.data, BinaryEncoder.CHANNEL_POSITION);
+				flush();
+			} catch (IOException ex){
+				errLog("Could not write the frame at time " + evt.time + ": " + ex.getMessage());
+			}
+			return;
+		}
 		
-		//Saves the data into the properly ordered spots and
-		//truncates to data to save space.
-		for(int j = 0; j < size; j++){
-			particle_e[temp[j].ID_Number] = (float)temp[j].getEnergy();
-			particle_v[temp[j].ID_Number] = (float)temp[j].getV();
-			particle_x[temp[j].ID_Number] = (float)temp[j].getX();
+		Frame f = frame;
+		if(writerThread != null){
+			f = acquire();
+			if(f == null)
+				return;
 		}
+		listTime();
 		
-		//Print the data
+		//Saves the data into the properly ordered spots. The encoders
+		//truncate the data to the precision of the files.
+		ParticleStore temp = evt.data;
+		f.time = evt.time;
 		for(int j = 0; j < size; j++){
-			write_e.print(particle_e[j] + "\t");
-			write_v.print(particle_v[j] + "\t");
-			write_x.print(particle_x[j] + "\t");
+			int id = temp.getID(j);
+			f.e[id] = temp.getEnergy(id);
+			f.v[id] = temp.getV(j);
+			f.x[id] = temp.getX(j);
+		}
+		
+		if(writerThread != null){
+			publish(f);
+			return;
 		}
 		
-		//End the lines
-		write_e.println();
-		write_v.println();
-		write_x.println();
+		//Print the data
+		try{
+			encode(f);
+			flush();
+		} catch (IOException ex){
+			errLog("Could not write the frame at time " + evt.time + ": " + ex.getMessage());
+		}
+	}
+	
+	/**
+	 * Takes the frame about to be written as the last one of the cadence and
+	 * lists it in {@code times.dat}, if a cadence was set.
+	 */
+	private void listTime(){
+		if(cadence != null)
+			cadence.written();
+		if(times != null){
+			times.println(cadence.describe());
+			times.flush();
+		}
+	}
+	
+	/**
+	 * Takes a free buffer for the next frame, following the backpressure
+	 * policy if none is free.
+	 * @return a free buffer, or null if the frame is dropped
+	 */
+	private Frame acquire(){
+		if(backpressure == ENUM_Backpressure.DROP){
+			Frame f = free.poll();
+			if(f == null){
+				synchronized(this){
+					dropped++;
+				}
+			}
+			return f;
+		}
+		try{
+			return free.take();
+		} catch (InterruptedException ex){
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+	
+	/**
+	 * Hands a buffer over to the writer thread.
+	 * @param f the filled buffer
+	 */
+	private void publish(Frame f){
+		synchronized(this){
+			published++;
+		}
+		ring.add(f);//the ring always has room for every buffer
+	}
+	
+	/**
+	 * The loop of the writer thread. Every frame waiting in the ring is
+	 * formatted, after which each file receives all of them in a single
+	 * write and the buffers are returned to the pool.
+	 */
+	private void drain(){
+		ArrayList<Frame> batch = new ArrayList<Frame>();
+		boolean closing = false;
+		while(!closing){
+			try{
+				batch.add(ring.take());
+			} catch (InterruptedException ex){
+				return;
+			}
+			ring.drainTo(batch);
+			
+			for(Frame f : batch){
+				if(f == Frame.END)
+					closing = true;
+				else
+					encode(f);
+			}
+			try{
+				flush();
+			} catch (IOException ex){
+				synchronized(this){
+					failure = ex;
+				}
+			}
+			for(Frame f : batch){
+				if(f != Frame.END)
+					free.add(f);
+			}
+			synchronized(this){
+				written += batch.size();
+				notifyAll();
+			}
+			batch.clear();
+		}
+	}
+	
+	/**
+	 * Waits until every frame handed over to the writer thread has been
+	 * written.
+	 */
+	private synchronized void awaitWritten(){
+		while(written < published){
+			try{
+				wait();
+			} catch (InterruptedException ex){
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		if(failure != null){
+			errLog("Could not write data files: " + failure.getMessage());
+			failure = null;
+		}
+	}
+	
+	/**
+	 * Formats a frame as the next line of each data file.
+	 * @param f the frame
+	 */
+	private void encode(Frame f){
+		encode_e.encode(f.time, f.e);
+		encode_v.encode(f.time, f.v);
+		encode_x.encode(f.time, f.x);
+	}
+	
+	/**
+	 * Writes every formatted line into the data files.
+	 * @throws IOException if the lines could not be written
+	 */
+	private void flush() throws IOException{
+		encode_e.writeTo(write_e);
+		encode_v.writeTo(write_v);
+		encode_x.writeTo(write_x);
 	}
 	
 	/**
@@ -131,21 +649,78 @@ public class DataWriter implements LISTENER_Updated{
 			end.println("Initial Virial Ratio: " + initialVirial);
 			end.println("Final Virial Ratio: " + sys.getVirialRatio());
 			end.println("System Time Resolution: " + sys.characteristicInterval + " characteristic time units");
+			end.println("Seed: " + sys.seed);
+			end.println("Energy Error: " + sys.getEnergyError());
+			if(sys.getEngine() == ENUM_EngineType.PARALLEL)
+				end.println("Engine: " + sys.getEngine() + " (" + sys.getDomains() + " domains)");
+			else if(sys.getEngine() != ENUM_EngineType.EXACT)
+				end.println("Engine: " + sys.getEngine() + " (time step " + sys.getTimeStep() + " characteristic time units)");
+			if(sys.getBatchWindow() > 0)
+				end.println("Batched Crossings: " + sys.getBatchedCrossingCount() + " in " + sys.getBatchCount()
+						+ " batches (window " + sys.getBatchWindow() + " characteristic time units)");
+			end.println("Negative Collision Times: " + sys.getClampedCollisionCount());
+			if(sys.getTracers() != null)
+				end.println("Tracers: " + sys.getTracers().count + " (step " + sys.getTracerStep()
+						+ " characteristic time units, " + sys.getTracers().getCrossingCount() + " crossings)");
+			if(sys.getStorage() != ENUM_StorageType.HEAP)
+				end.println("Storage: " + sys.getStorage());
+			if(format != ENUM_OutputFormat.TEXT)
+				end.println("Output Format: " + format);
+			if(writerThread != null)
+				end.println("Dropped Frames: " + getDroppedFrames());
+			if(stride > 1)
+				end.println("Frame Stride: " + stride + " intervals");
+			if(cadence != null)
+				end.println("Adaptive Cadence: tolerance " + cadence.getTolerance() + ", at most "
+						+ cadence.getMaxStride() + " intervals between frames, "
+						+ cadence.getSkippedFrames() + " frames skipped");
 			end.flush();
 			end.close();
 		} catch (FileNotFoundException ex) {}
 		
 		dataLog("Flushing data streams...");
-		write_e.flush();
-		write_v.flush();
-		write_x.flush();
+		if(writerThread != null){
+			publish(Frame.END);
+			awaitWritten();
+			writerThread = null;
+		}
 		
 		dataLog("Closing data streams...");
-		write_e.close();
-		write_v.close();
-		write_x.close();
+		if(times != null)
+			times.close();
+		try{
+			if(events != null){
+				events.close();
+				dataLog("Completed.");
+				logFooter();
+				return;
+			}
+			write_e.close();
+			write_v.close();
+			write_x.close();
+		} catch (IOException ex){
+			errLog("Could not close data files: " + ex.getMessage());
+		}
 		
 		dataLog("Completed.");
 		logFooter();
 	}
+	
+	/**
+	 * A buffer holding a single frame of data ordered by ID number.
+	 */
+	private static class Frame{
+		/**
+		 * Marks the last frame handed over to the writer thread.
+		 */
+		static final Frame END = new Frame(0);
+		double time;
+		final double[] e, v, x;
+		
+		Frame(int size){
+			e = new double[size];
+			v = new double[size];
+			x = new double[size];
+		}
+	}
 }
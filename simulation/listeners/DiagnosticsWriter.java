@@ -0,0 +1,137 @@
+package simulation.listeners;
+
+import static simulation.Mainframe.*;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import simulation.components.ParticleSystem;
+
+/**
+ * This class records a few scalar diagnostics of a particle system after
+ * every update as one line of a CSV file, so that a simulation can be
+ * monitored without reading any of its frames.
+ *
+ * <p>Every line holds the time of the update in characteristic time units,
+ * the kinetic, potential and total energies, the virial ratio, the energy
+ * error relative to the start (see {@code ParticleSystem.getEnergyError}),
+ * the number of crossings so far, the wall time in seconds spent on the
+ * interval and the number of collision times so far that came out negative
+ * and were treated as immediate (see
+ * {@code ParticleSystem.getClampedCollisionCount}). The engine already knows
+ * all of these at every update, so recording them costs next to nothing.
+ * Every line is flushed right away, so the file can be followed while the
+ * simulation runs.</p>
+ * 
+ * <p>A system resumed from a checkpoint continues the file of the run it was
+ * resumed from, dropping every line recorded after the checkpoint. Its
+ * crossings and negative collision times are counted on from the last line
+ * kept.</p>
+ * @author Erik Nguyen
+ */
+public class DiagnosticsWriter implements LISTENER_Updated{
+	private static final String HEADER
+			= "time,kinetic,potential,total,virial,energy_error,crossings,wall_seconds,negative_collision_times";
+	private final ParticleSystem system;
+	private final PrintWriter out;
+	private long lastUpdate;
+	private long crossingOffset = 0;//the crossings before the system was resumed
+	private long clampedOffset = 0;//the negative collision times before the system was resumed
+
+	/**
+	 * Creates a diagnostics writer for a system.
+	 * @param sys the system to be recorded
+	 * @param file the CSV file to write, which is replaced if it exists
+	 * unless the system was resumed
+	 * @throws IOException if the file could not be created
+	 */
+	public DiagnosticsWriter(ParticleSystem sys, String file) throws IOException{
+		system = sys;
+		List<String> kept = keptLines(file, HEADER, sys.getSimulationTime());
+		if(kept.size() > 1){
+			String[] last = kept.get(kept.size() - 1).split(",");
+			try{
+				crossingOffset = Long.parseLong(last[6]);
+				clampedOffset = Long.parseLong(last[8]);
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException ex){}
+		}
+		out = create(file, kept);
+		lastUpdate = System.nanoTime();
+	}
+
+	/**
+	 * Returns the lines of a CSV time series that are kept when a system is
+	 * resumed, i.e. the header followed by every line up to the time the
+	 * system was resumed from. A system that was not resumed keeps nothing
+	 * but the header.
+	 * @param file the CSV file
+	 * @param header the header of the file
+	 * @param time the simulation time of the system in characteristic time
+	 * units
+	 * @return the lines to keep
+	 * @throws IOException if the file could not be read
+	 */
+	static List<String> keptLines(String file, String header, double time) throws IOException{
+		List<String> kept = new ArrayList<String>();
+		kept.add(header);
+		if(time > 0 && new File(file).exists()){
+			List<String> lines = Files.readAllLines(new File(file).toPath());
+			for(int i = 1; i < lines.size(); i++){
+				String line = lines.get(i);
+				int comma = line.indexOf(',');
+				try{
+					if(comma > 0 && Double.parseDouble(line.substring(0, comma)) <= time)
+						kept.add(line);
+				} catch (NumberFormatException ex){}
+			}
+		}
+		return kept;
+	}
+
+	/**
+	 * Creates a CSV file starting with the specified lines.
+	 * @param file the CSV file, which is replaced if it exists
+	 * @param lines the lines to start with
+	 * @return a writer appending to the file
+	 * @throws IOException if the file could not be created
+	 */
+	static PrintWriter create(String file, List<String> lines) throws IOException{
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+		for(String line : lines){
+			out.println(line);
+		}
+		out.flush();
+		return out;
+	}
+
+	/**
+	 * Records the diagnostics of the system at the time of the update. The
+	 * wall time of the first update is measured from the creation of this
+	 * writer.
+	 * @param evt the trigger event for an update of the system
+	 */
+	@Override
+	public void receiveUpdate(EVENT_Updated evt){
+		long now = System.nanoTime();
+		double wall = (now - lastUpdate) / 1e9;
+		lastUpdate = now;
+		out.println(evt.time + "," + system.getKineticEnergy() + "," + system.getPotentialEnergy()
+				+ "," + system.getEnergy() + "," + system.getVirialRatio() + "," + system.getEnergyError()
+				+ "," + (crossingOffset + system.getCrossingCount()) + "," + wall
+				+ "," + (clampedOffset + system.getClampedCollisionCount()));
+		out.flush();
+		if(out.checkError())
+			errLog("Could not write the diagnostics at time " + evt.time);
+	}
+
+	/**
+	 * Closes the CSV file.
+	 */
+	public void close(){
+		out.close();
+	}
+}
@@ -0,0 +1,18 @@
+package simulation.listeners;
+
+/**
+ * This enum represents what a pipelined data writer does when every one of
+ * its frame buffers is still waiting to be written.
+ *
+ * @author Erik Nguyen
+ */
+public enum ENUM_Backpressure {
+    /**
+     * The simulation waits until a buffer is free.
+     */
+    BLOCK,
+    /**
+     * The frame is dropped and the simulation continues.
+     */
+    DROP
+}
@@ -0,0 +1,42 @@
+package simulation.listeners;
+
+/**
+ * This enum represents the formats in which a data writer can store the
+ * frames of a particle system.
+ *
+ * @author Erik Nguyen
+ */
+public enum ENUM_OutputFormat {
+    /**
+     * Tab separated text, one frame per line, in the {@code .dat} files.
+     */
+    TEXT(".dat", 0),
+    /**
+     * Little-endian 32 bit floats in the {@code .bin} files.
+     */
+    FLOAT32(".bin", 4),
+    /**
+     * Little-endian 64 bit floats in the {@code .bin} files.
+     */
+    FLOAT64(".bin", 8),
+    /**
+     * Only the crossings between particles along with periodic keyframes, in
+     * {@code events.bin}. See {@code EventLogWriter}.
+     */
+    EVENTS(".bin", 0);
+
+    /**
+     * The extension of the data files.
+     */
+    public final String extension;
+    /**
+     * The number of bytes taken by each value, or 0 if frames are not stored
+     * as fixed-size binary values.
+     */
+    public final int width;
+
+    private ENUM_OutputFormat(String extension, int width) {
+        this.extension = extension;
+        this.width = width;
+    }
+}
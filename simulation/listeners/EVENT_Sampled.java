@@ -0,0 +1,54 @@
+package simulation.listeners;
+
+/**
+ * This event holds a sample of a system taken in between its updates. The
+ * state of every particle is projected to the time of the sample, so the
+ * system itself is left untouched.
+ *
+ * @author Erik Nguyen
+ */
+public class EVENT_Sampled extends java.util.EventObject {
+
+	private static final long serialVersionUID = 1L;
+	protected final double time;
+	protected final double[] positions;
+	protected final double[] velocities;
+
+	public EVENT_Sampled(Object source, double time, double[] positions, double[] velocities) {
+		super(source);
+		this.time = time;
+		this.positions = positions;
+		this.velocities = velocities;
+	}
+
+	/**
+	 * Returns the time of the sample in characteristic time units.
+	 *
+	 * @return the time of the sample
+	 */
+	public double getTime() {
+		return time;
+	}
+
+	/**
+	 * Returns the position of every particle at the time of the sample,
+	 * ordered by ID number. The array is reused for the next sample, so it
+	 * must be copied if it is needed after the listener returns.
+	 *
+	 * @return the positions of the particles
+	 */
+	public double[] getPositions() {
+		return positions;
+	}
+
+	/**
+	 * Returns the velocity of every particle at the time of the sample,
+	 * ordered by ID number. The array is reused for the next sample, so it
+	 * must be copied if it is needed after the listener returns.
+	 *
+	 * @return the velocities of the particles
+	 */
+	public double[] getVelocities() {
+		return velocities;
+	}
+}
@@ -1,6 +1,7 @@
 package simulation.listeners;
 
 import simulation.components.Particle;
+import simulation.components.ParticleStore;
 
 /**
  *
@@ -8,12 +9,41 @@ import simulation.components.Particle;
  */
 public class EVENT_Updated extends java.util.EventObject {
 
-	protected final Particle[] data;
+	protected final ParticleStore data;
 	protected final double time;
 
-	public EVENT_Updated(Object source, Particle[] system, double time) {
+	public EVENT_Updated(Object source, ParticleStore system, double time) {
 		super(source);
 		data = system;
 		this.time = time;
 	}
+
+	/**
+	 * Returns the store holding the state of every particle in the system,
+	 * ordered by position.
+	 *
+	 * @return the particle store of the updated system
+	 */
+	public ParticleStore getStore() {
+		return data;
+	}
+
+	/**
+	 * Returns the particles of the system ordered by position. These are only
+	 * created upon the first request.
+	 *
+	 * @return the particles of the updated system
+	 */
+	public Particle[] getParticles() {
+		return data.getParticles();
+	}
+
+	/**
+	 * Returns the time of the update in characteristic time units.
+	 *
+	 * @return the time of the update
+	 */
+	public double getTime() {
+		return time;
+	}
 }
@@ -0,0 +1,177 @@
+package simulation.listeners;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import simulation.components.ParticleStore;
+import simulation.components.ParticleSystem;
+
+/**
+ * This class records the history of a system as the sequence of crossings
+ * between its particles rather than as frames.
+ *
+ * <p>Between crossings every particle moves along a parabola, since its
+ * acceleration only depends on its rank. Hence the state of the system at any
+ * moment follows exactly from its state at the start of an interval and the
+ * crossings that have happened since, by repeating the simulation's own
+ * updates. {@code dataAnalysis.EventLogReplay} reconstructs frames at any
+ * time this way.</p>
+ *
+ * <p>The log starts with a header: the magic number, the format version, the
+ * number of particles, the number of intervals between keyframes, and the
+ * characteristic and system lengths of an interval as doubles. Three kinds of
+ * records follow, each starting with a single byte:
+ * <br>'K', a keyframe: the simulation time, followed by the ID, position and
+ * velocity of every particle ordered by rank, at the start of an interval.</br>
+ * <br>'I', the end of an interval: the new simulation time. Every particle is
+ * moved to the end of the interval and the time frames are reset.</br>
+ * <br>'C', a crossing: its time within the interval in system time units, and
+ * the index of the left particle in the pair before the crossing.</br>
+ * Everything is big-endian, as in checkpoints.</p>
+ * @author Erik Nguyen
+ */
+class EventLogWriter implements LISTENER_Crossing{
+	static final int MAGIC = 0x4F44454C;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+	static final byte KEYFRAME = 'K', INTERVAL = 'I', CROSSING = 'C';
+	private static final int BUFFER_SIZE = 1 << 20;
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final int size;
+	private final double characteristicInterval, systemInterval;
+	private int keyframes = 20;
+	private boolean started;
+
+	/**
+	 * Creates a log that writes into a new, empty file.
+	 * @param channel the channel of the file
+	 * @param sys the system to be recorded
+	 */
+	EventLogWriter(FileChannel channel, ParticleSystem sys){
+		this.channel = channel;
+		size = sys.size;
+		characteristicInterval = sys.characteristicInterval;
+		systemInterval = sys.systemInterval;
+	}
+
+	/**
+	 * Creates a log that continues an existing file.
+	 * @param channel the channel appending to the file
+	 * @param sys the system to be recorded
+	 * @param keyframes the number of intervals between keyframes in the file
+	 */
+	EventLogWriter(FileChannel channel, ParticleSystem sys, int keyframes){
+		this(channel, sys);
+		this.keyframes = keyframes;
+		started = true;
+	}
+
+	/**
+	 * Reads the number of intervals between keyframes from the header of an
+	 * existing log.
+	 * @param file the log file
+	 * @return the number of intervals between keyframes
+	 * @throws IOException if the file could not be read or is not a log
+	 */
+	static int readKeyframes(String file) throws IOException{
+		try(DataInputStream in = new DataInputStream(new FileInputStream(file))){
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException(file + " is not a crossing log");
+			in.readInt();
+			return in.readInt();
+		}
+	}
+
+	/**
+	 * Sets the number of intervals between keyframes. This must be called
+	 * before the simulation starts.
+	 * @param intervals the number of intervals between keyframes
+	 */
+	void setKeyframes(int intervals){
+		if(!started)
+			keyframes = Math.max(1, intervals);
+	}
+
+	@Override
+	public void receiveCrossing(double time, int left){
+		reserve(13);
+		buffer.put(CROSSING).putDouble(time).putInt(left);
+	}
+
+	/**
+	 * Records the end of an interval, along with a keyframe once enough
+	 * intervals have passed. The first update starts the log instead.
+	 * @param evt the trigger event for an update of the system
+	 */
+	void receiveUpdate(EVENT_Updated evt){
+		if(!started){
+			started = true;
+			reserve(HEADER_SIZE);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(keyframes)
+					.putDouble(characteristicInterval).putDouble(systemInterval);
+		} else {
+			reserve(9);
+			buffer.put(INTERVAL).putDouble(evt.time);
+		}
+
+		long interval = Math.round(evt.time / characteristicInterval);
+		if(interval % keyframes == 0){
+			ParticleStore store = evt.data;
+			reserve(9);
+			buffer.put(KEYFRAME).putDouble(evt.time);
+			for(int j = 0; j < size; j++){
+				reserve(20);
+				buffer.putInt(store.getID(j)).putDouble(store.getX(j)).putDouble(store.getV(j));
+			}
+		}
+	}
+
+	/**
+	 * Writes everything buffered into the file.
+	 * @throws IOException if the log could not be written
+	 */
+	void flush() throws IOException{
+		buffer.flip();
+		while(buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Returns the length of the file after writing everything buffered.
+	 * @return the length of the log
+	 * @throws IOException if the log could not be written
+	 */
+	long length() throws IOException{
+		flush();
+		return channel.size();
+	}
+
+	/**
+	 * Writes everything buffered and closes the file.
+	 * @throws IOException if the log could not be written
+	 */
+	void close() throws IOException{
+		flush();
+		channel.close();
+	}
+
+	/**
+	 * Makes room in the buffer for a record of the specified size.
+	 * @param bytes the size of the record
+	 */
+	private void reserve(int bytes){
+		if(buffer.remaining() < bytes){
+			try{
+				flush();
+			} catch (IOException ex){
+				throw new UncheckedIOException(ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package simulation.listeners;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * This class gathers encoded frames of a single data file in direct buffers
+ * until they are written out to the file's channel.
+ *
+ * <p>The buffers are reused between writes, so once they have grown to fit
+ * the largest batch of frames, encoding no longer allocates any buffers.
+ * Every buffer is little-endian.</p>
+ * @author Erik Nguyen
+ */
+abstract class FrameEncoder {
+	/**
+	 * The size of each buffer.
+	 */
+	private static final int CHUNK = 1 << 18;
+	private final ArrayList<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+	private int used = 0;//the number of chunks holding encoded data
+	private ByteBuffer[] gather = new ByteBuffer[0];
+
+	/**
+	 * Encodes a single frame of values ordered by ID number.
+	 * @param time the time of the frame
+	 * @param values the values of the frame
+	 */
+	abstract void encode(double time, double[] values);
+
+	/**
+	 * Writes all of the encoded frames into a channel with a single gathering
+	 * write, and empties the buffers for the next batch.
+	 * @param channel the channel to write into
+	 * @return the number of bytes written
+	 * @throws IOException if the frames could not be written
+	 */
+	long writeTo(FileChannel channel) throws IOException{
+		if(gather.length != used)
+			gather = chunks.subList(0, used).toArray(new ByteBuffer[used]);
+		long total = 0;
+		for(ByteBuffer b : gather){
+			b.flip();
+			total += b.remaining();
+		}
+		long written = 0;
+		while(written < total){
+			written += channel.write(gather);
+		}
+		for(ByteBuffer b : gather){
+			b.clear();
+		}
+		used = 0;
+		return written;
+	}
+
+	/**
+	 * Returns a buffer with room for at least the specified number of bytes.
+	 * @param bytes the number of bytes about to be put
+	 * @return the buffer to put them in
+	 */
+	protected ByteBuffer reserve(int bytes){
+		if(used > 0 && chunks.get(used - 1).remaining() >= bytes)
+			return chunks.get(used - 1);
+		if(used == chunks.size())
+			chunks.add(ByteBuffer.allocateDirect(CHUNK).order(ByteOrder.LITTLE_ENDIAN));
+		return chunks.get(used++);
+	}
+}
@@ -0,0 +1,218 @@
+package simulation.listeners;
+
+import static simulation.Mainframe.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import simulation.components.ParticleStore;
+import simulation.components.ParticleSystem;
+
+/**
+ * This class classifies every particle of a system as belonging to the halo
+ * or the core after every update, by comparing its energy against one or more
+ * thresholds, as {@code movie.ColorMarker.haloDist} does with the energies
+ * written by the data writer. A particle belongs to the halo of a threshold
+ * once its energy is at least the threshold.
+ *
+ * <p>The membership is written into {@code halo.bin} as one bit per particle
+ * and threshold. The file starts with a header of {@code HEADER_SIZE} bytes:
+ * <br>the magic number, the format version, the number of particles N, the
+ * number of thresholds L, the characteristic interval between frames as a
+ * double, and 8 unused bytes, followed by the L thresholds as doubles.</br>
+ * <br>Each frame that follows is the simulation time as a double followed by
+ * a bitset of ceil(N / 64) longs for every threshold, in which bit
+ * {@code id % 64} of long {@code id / 64} is set for every particle in the
+ * halo. Everything is little-endian, so every frame has the same size and
+ * {@code movie.ColorMarker.haloMembership} reads any of them directly.</br></p>
+ *
+ * <p>Every particle that entered or left a halo since the previous update is
+ * also written into {@code halo_transitions.csv}, along with the time, the
+ * threshold and +1 if it entered or -1 if it left. Transitions are found a
+ * long at a time, so the cost of an update is a pass over the energies plus
+ * the number of transitions.</p>
+ *
+ * <p>A system resumed from a checkpoint continues both files of the run it was
+ * resumed from, dropping everything recorded after the checkpoint.</p>
+ * @author Erik Nguyen
+ */
+public class HaloWriter implements LISTENER_Updated{
+	static final int MAGIC = 0x4F44484C;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+	private static final String TRANSITION_HEADER = "time,id,threshold,change";
+	private final double[] thresholds;
+	private final int words;//longs per bitset
+	private long[][] previous, current;//bitsets by threshold
+	private boolean first = true;
+	private final ByteBuffer frame;
+	private final FileChannel bits;
+	private final PrintWriter transitions;
+
+	/**
+	 * Creates a halo writer for a system.
+	 * @param sys the system to be recorded
+	 * @param directory the directory to store the files in, ending with a
+	 * separator
+	 * @param thresholds the energies at which a particle joins the halo,
+	 * increasing
+	 * @throws IOException if the files could not be created
+	 */
+	public HaloWriter(ParticleSystem sys, String directory, double[] thresholds) throws IOException{
+		if(thresholds.length == 0)
+			throw new IllegalArgumentException("At least one halo threshold is needed");
+		for(int i = 1; i < thresholds.length; i++){
+			if(!(thresholds[i] > thresholds[i - 1]))
+				throw new IllegalArgumentException("Halo thresholds must be increasing");
+		}
+		this.thresholds = thresholds.clone();
+		int size = sys.size;
+		words = (size + 63) / 64;
+		previous = new long[thresholds.length][words];
+		current = new long[thresholds.length][words];
+		frame = ByteBuffer.allocate(8 + thresholds.length * words * 8).order(ByteOrder.LITTLE_ENDIAN);
+		int headerBytes = HEADER_SIZE + thresholds.length * 8;
+
+		String file = directory + "halo.bin";
+		long kept = resumedLength(file, sys, headerBytes);
+		if(kept > headerBytes){
+			//Pick up the membership of the last frame kept
+			try(FileChannel in = FileChannel.open(Paths.get(file), StandardOpenOption.READ)){
+				frame.clear();
+				while(frame.hasRemaining() && in.read(frame, kept - frame.capacity() + frame.position()) >= 0);
+				frame.flip();
+				frame.getDouble();
+				for(long[] set : previous){
+					for(int w = 0; w < words; w++){
+						set[w] = frame.getLong();
+					}
+				}
+			}
+			first = false;
+		}
+		if(kept > 0){
+			bits = DataWriter.reopen(file, kept);
+		} else {
+			bits = DataWriter.open(file);
+			ByteBuffer header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(thresholds.length)
+					.putDouble(sys.characteristicInterval).putLong(0);
+			for(double threshold : thresholds){
+				header.putDouble(threshold);
+			}
+			header.flip();
+			while(header.hasRemaining()){
+				bits.write(header);
+			}
+		}
+		String csv = directory + "halo_transitions.csv";
+		transitions = DiagnosticsWriter.create(csv,
+				DiagnosticsWriter.keptLines(csv, TRANSITION_HEADER, kept > 0 ? sys.getSimulationTime() : 0));
+	}
+
+	/**
+	 * Returns the length of the membership file of a resumed run up to the
+	 * time the system was resumed from, or 0 if there is no such file or it
+	 * was recorded with other thresholds.
+	 * @param file the membership file
+	 * @param sys the system to be recorded
+	 * @param headerBytes the length of the header including the thresholds
+	 * @return the length of the file to keep
+	 * @throws IOException if the file could not be read
+	 */
+	private long resumedLength(String file, ParticleSystem sys, int headerBytes) throws IOException{
+		if(!(sys.getSimulationTime() > 0) || !new File(file).exists())
+			return 0;
+		try(FileChannel in = FileChannel.open(Paths.get(file), StandardOpenOption.READ)){
+			ByteBuffer header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+			while(header.hasRemaining() && in.read(header) >= 0);
+			header.flip();
+			if(header.remaining() < headerBytes || header.getInt() != MAGIC || header.getInt() != VERSION
+					|| header.getInt() != sys.size || header.getInt() != thresholds.length)
+				return 0;
+			header.position(HEADER_SIZE);
+			for(double threshold : thresholds){
+				if(header.getDouble() != threshold)
+					return 0;
+			}
+			long length = headerBytes;
+			ByteBuffer time = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+			while(length + frame.capacity() <= in.size()){
+				time.clear();
+				while(time.hasRemaining() && in.read(time, length + time.position()) >= 0);
+				if(time.getDouble(0) > sys.getSimulationTime())
+					break;
+				length += frame.capacity();
+			}
+			return length;
+		}
+	}
+
+	/**
+	 * Classifies every particle at the time of the update and records the
+	 * membership along with every transition since the previous update.
+	 * @param evt the trigger event for an update of the system
+	 */
+	@Override
+	public void receiveUpdate(EVENT_Updated evt){
+		ParticleStore store = evt.data;
+		for(long[] set : current){
+			Arrays.fill(set, 0L);
+		}
+		for(int id = 0; id < store.size; id++){
+			double e = store.getEnergy(id);
+			for(int l = 0; l < thresholds.length && e >= thresholds[l]; l++){
+				current[l][id >>> 6] |= 1L << id;
+			}
+		}
+
+		frame.clear();
+		frame.putDouble(evt.time);
+		for(int l = 0; l < thresholds.length; l++){
+			for(int w = 0; w < words; w++){
+				long bitsNow = current[l][w];
+				frame.putLong(bitsNow);
+				long changed = first ? 0L : bitsNow ^ previous[l][w];
+				while(changed != 0){
+					int bit = Long.numberOfTrailingZeros(changed);
+					changed &= changed - 1;
+					transitions.println(evt.time + "," + (w * 64 + bit) + "," + thresholds[l] + ","
+							+ ((bitsNow >>> bit & 1L) != 0 ? "1" : "-1"));
+				}
+			}
+		}
+		first = false;
+		long[][] swap = previous;
+		previous = current;
+		current = swap;
+
+		frame.flip();
+		try{
+			while(frame.hasRemaining()){
+				bits.write(frame);
+			}
+		} catch (IOException ex){
+			errLog("Could not write the halo membership at time " + evt.time + ": " + ex.getMessage());
+		}
+		transitions.flush();
+		if(transitions.checkError())
+			errLog("Could not write the halo transitions at time " + evt.time);
+	}
+
+	/**
+	 * Closes both files.
+	 */
+	public void close(){
+		transitions.close();
+		try{
+			bits.close();
+		} catch (IOException ex){
+			errLog("Could not close halo.bin: " + ex.getMessage());
+		}
+	}
+}
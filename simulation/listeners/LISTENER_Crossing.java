@@ -0,0 +1,22 @@
+package simulation.listeners;
+
+/**
+ * This class defines a listener interface that is notified every time two
+ * neighboring particles of a system pass through each other.
+ * 
+ * <p>Crossings happen far more often than updates, so rather than creating an
+ * event object for each one, the listener is handed the crossing's values
+ * directly. Listeners are called on the simulation thread while the
+ * simulation waits, and must be added before the simulation starts.</p>
+ * 
+ * @author Erik Nguyen
+ */
+public interface LISTENER_Crossing {
+    /**
+     * @param time the time of the crossing in system time units, measured
+     * from the start of the current interval
+     * @param left the index of the left particle in the pair before the
+     * crossing
+     */
+    public void receiveCrossing(double time, int left);
+}
@@ -0,0 +1,14 @@
+package simulation.listeners;
+
+/**
+ * This class defines a listener interface that is notified whenever a sample
+ * scheduled through {@code ParticleSystem.scheduleSample} is taken.
+ * 
+ * <p>Listeners are called on the simulation thread while the simulation
+ * waits, and may schedule further samples from within the call.</p>
+ * 
+ * @author Erik Nguyen
+ */
+public interface LISTENER_Sampled {
+    public void receiveSample(EVENT_Sampled evt);
+}
@@ -0,0 +1,202 @@
+package simulation.listeners;
+
+import static simulation.Mainframe.*;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import simulation.components.ParticleStore;
+import simulation.components.ParticleSystem;
+
+/**
+ * This class records the Lagrangian radii of a particle system after every
+ * update, along with the velocity dispersion within every mass shell they
+ * bound, as one line of a CSV file.
+ *
+ * <p>The Lagrangian radius of a mass fraction f is the distance from the
+ * center of mass within which a fraction f of the particles lie. Since the
+ * particles are kept sorted by position, the distances on either side of the
+ * center of mass form two sorted sequences, and every radius is the k-th
+ * smallest of their union, which is found in {@code O(log N)} time. The center
+ * of mass and the dispersions take a single pass over the particles.</p>
+ *
+ * <p>Every line holds the time of the update in characteristic time units,
+ * the center of mass, a radius for every mass fraction, and the velocity
+ * dispersion of the particles in every shell between consecutive radii,
+ * starting with the shell within the first radius and ending with the shell
+ * beyond the last one. A system resumed from a checkpoint continues the file
+ * of the run it was resumed from, as {@code DiagnosticsWriter} does.</p>
+ * @author Erik Nguyen
+ */
+public class LagrangianWriter implements LISTENER_Updated{
+	/**
+	 * The mass fractions recorded by default.
+	 */
+	public static final double[] DEFAULT_FRACTIONS = {0.1, 0.25, 0.5, 0.75, 0.9};
+	private final double[] fractions;
+	private final double[] radii;
+	private final double[] count, sum, squares;//per shell
+	private final PrintWriter out;
+
+	/**
+	 * Creates a writer recording the default mass fractions of a system.
+	 * @param sys the system to be recorded
+	 * @param file the CSV file to write, which is replaced if it exists
+	 * unless the system was resumed
+	 * @throws IOException if the file could not be created
+	 */
+	public LagrangianWriter(ParticleSystem sys, String file) throws IOException{
+		this(sys, file, DEFAULT_FRACTIONS);
+	}
+
+	/**
+	 * Creates a writer recording the specified mass fractions of a system.
+	 * @param sys the system to be recorded
+	 * @param file the CSV file to write, which is replaced if it exists
+	 * unless the system was resumed
+	 * @param fractions the mass fractions, increasing and within (0, 1]
+	 * @throws IOException if the file could not be created
+	 */
+	public LagrangianWriter(ParticleSystem sys, String file, double[] fractions) throws IOException{
+		for(int i = 0; i < fractions.length; i++){
+			if(!(fractions[i] > 0 && fractions[i] <= 1) || (i > 0 && fractions[i] <= fractions[i - 1]))
+				throw new IllegalArgumentException("Mass fractions must be increasing and within (0, 1]");
+		}
+		this.fractions = fractions.clone();
+		radii = new double[fractions.length];
+		count = new double[fractions.length + 1];
+		sum = new double[fractions.length + 1];
+		squares = new double[fractions.length + 1];
+
+		StringBuilder header = new StringBuilder("time,center");
+		for(double f : fractions){
+			header.append(",r").append(percent(f));
+		}
+		for(int s = 0; s <= fractions.length; s++){
+			header.append(",sigma").append(s == 0 ? 0 : percent(fractions[s - 1])).append('_')
+					.append(s == fractions.length ? 100 : percent(fractions[s]));
+		}
+		out = DiagnosticsWriter.create(file,
+				DiagnosticsWriter.keptLines(file, header.toString(), sys.getSimulationTime()));
+	}
+
+	private static long percent(double fraction){
+		return Math.round(fraction * 100);
+	}
+
+	/**
+	 * Records the Lagrangian radii and dispersions of the system at the time
+	 * of the update.
+	 * @param evt the trigger event for an update of the system
+	 */
+	@Override
+	public void receiveUpdate(EVENT_Updated evt){
+		ParticleStore store = evt.data;
+		int n = store.size;
+		double center = center(store);
+		int middle = middle(store, center);
+		for(int f = 0; f < fractions.length; f++){
+			radii[f] = kthDistance(store, center, middle, (int) Math.ceil(fractions[f] * n));
+		}
+
+		Arrays.fill(count, 0.0);
+		Arrays.fill(sum, 0.0);
+		Arrays.fill(squares, 0.0);
+		for(int i = 0; i < n; i++){
+			double d = Math.abs(store.getX(i) - center), v = store.getV(i);
+			int s = 0;
+			while(s < radii.length && d > radii[s]){
+				s++;
+			}
+			count[s]++;
+			sum[s] += v;
+			squares[s] += v * v;
+		}
+
+		StringBuilder line = new StringBuilder();
+		line.append(evt.time).append(',').append(center);
+		for(double r : radii){
+			line.append(',').append(r);
+		}
+		for(int s = 0; s < count.length; s++){
+			double dispersion = 0.0;
+			if(count[s] > 0){
+				double mean = sum[s] / count[s];
+				dispersion = Math.sqrt(Math.max(0.0, squares[s] / count[s] - mean * mean));
+			}
+			line.append(',').append(dispersion);
+		}
+		out.println(line);
+		out.flush();
+		if(out.checkError())
+			errLog("Could not write the Lagrangian radii at time " + evt.time);
+	}
+
+	/**
+	 * Returns the center of mass of the particles.
+	 * @param store the particles
+	 * @return the mean position of the particles
+	 */
+	static double center(ParticleStore store){
+		double center = 0.0;
+		for(int i = 0; i < store.size; i++){
+			center += store.getX(i);
+		}
+		return center / store.size;
+	}
+
+	/**
+	 * Returns the first rank at or to the right of the center of mass.
+	 * @param store the particles ordered by position
+	 * @param center the center of mass
+	 * @return the rank of the first particle not left of the center of mass
+	 */
+	static int middle(ParticleStore store, double center){
+		int lo = 0, hi = store.size;
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if(store.getX(mid) < center)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Returns the k-th smallest distance of a particle from the center of
+	 * mass. The distances of the particles to its right increase with rank,
+	 * and those of the particles to its left decrease with rank, so this is
+	 * the k-th smallest element of two sorted sequences, found by a binary
+	 * search over how many of the k come from the right.
+	 * @param store the particles ordered by position
+	 * @param center the center of mass
+	 * @param middle the first rank at or to the right of the center of mass
+	 * @param k the number of particles within the distance, at least 1
+	 * @return the smallest distance within which k particles lie
+	 */
+	static double kthDistance(ParticleStore store, double center, int middle, int k){
+		int right = store.size - middle, left = middle;
+		int lo = Math.max(0, k - left), hi = Math.min(k, right);
+		while(lo < hi){
+			int i = (lo + hi) >>> 1;//taken from the right, the rest from the left
+			if(store.getX(middle + i) - center < center - store.getX(middle - (k - i)))
+				lo = i + 1;
+			else
+				hi = i;
+		}
+		int j = k - lo;
+		double d = 0.0;
+		if(lo > 0)
+			d = store.getX(middle + lo - 1) - center;
+		if(j > 0)
+			d = Math.max(d, center - store.getX(middle - j));
+		return d;
+	}
+
+	/**
+	 * Closes the CSV file.
+	 */
+	public void close(){
+		out.close();
+	}
+}
@@ -0,0 +1,144 @@
+package simulation.listeners;
+
+import simulation.components.ParticleStore;
+import simulation.components.ParticleSystem;
+
+/**
+ * This class decides which updates of a system are worth a frame of data,
+ * so that a {@code DataWriter} samples a system densely while it changes and
+ * sparsely once it settled down.
+ *
+ * <p>Every update is compared against the last one that was written. A frame
+ * is written once the virial ratio changed by more than the tolerance, or the
+ * half-mass radius around the center of mass changed by more than the
+ * tolerance relative to its previous value. Both are measured every update,
+ * so an oscillation of the virial ratio during violent relaxation keeps every
+ * frame, while near-identical frames of a system in equilibrium are skipped.
+ * The first frame is always written, as is every frame a given number of
+ * intervals after the last one and the frame at the end of the
+ * simulation.</p>
+ *
+ * <p>The updates of the system still arrive every characteristic interval, so
+ * the written frames lie on the same grid of times as without a cadence. The
+ * data writer lists the time of every frame it writes in {@code times.dat},
+ * along with the virial ratio and half-mass radius it was compared by.</p>
+ * @author Erik Nguyen
+ */
+public class OutputCadence {
+	/**
+	 * The largest number of intervals between frames by default.
+	 */
+	public static final int DEFAULT_MAX_STRIDE = 20;
+	private final ParticleSystem system;
+	private final double tolerance;
+	private final int maxStride;
+	private double lastTime = Double.NaN, lastVirial, lastRadius;
+	private double time, virial, radius;//of the update last checked
+	private long skipped = 0;
+
+	/**
+	 * Creates a cadence for a system.
+	 * @param sys the system whose frames are written
+	 * @param tolerance the change in the virial ratio, or the relative change
+	 * in the half-mass radius, that calls for a frame
+	 * @param maxStride the largest number of intervals between frames
+	 */
+	public OutputCadence(ParticleSystem sys, double tolerance, int maxStride){
+		if(!(tolerance > 0))
+			throw new IllegalArgumentException("The cadence tolerance must be positive");
+		if(maxStride < 1)
+			throw new IllegalArgumentException("The stride between frames must be at least one interval");
+		system = sys;
+		this.tolerance = tolerance;
+		this.maxStride = maxStride;
+	}
+
+	/**
+	 * Returns the change in the virial ratio, or the relative change in the
+	 * half-mass radius, that calls for a frame.
+	 * @return the tolerance of this cadence
+	 */
+	public double getTolerance(){
+		return tolerance;
+	}
+
+	/**
+	 * Returns the largest number of intervals between frames.
+	 * @return the largest stride of this cadence
+	 */
+	public int getMaxStride(){
+		return maxStride;
+	}
+
+	/**
+	 * Returns the number of updates that were not written.
+	 * @return the number of skipped frames
+	 */
+	public long getSkippedFrames(){
+		return skipped;
+	}
+
+	/**
+	 * Decides whether or not the frame of an update is worth writing. The
+	 * frame only becomes the one the following updates are compared against
+	 * once {@code written()} is called, as a pipelined writer may still drop
+	 * it.
+	 * @param evt the update of the system
+	 * @return true if the frame should be written
+	 */
+	boolean due(EVENT_Updated evt){
+		ParticleStore store = evt.data;
+		double center = LagrangianWriter.center(store);
+		time = evt.time;
+		radius = LagrangianWriter.kthDistance(store, center, LagrangianWriter.middle(store, center),
+				(store.size + 1) / 2);
+		virial = system.getVirialRatio();
+
+		boolean due = Double.isNaN(lastTime)
+				|| Math.round((time - lastTime) / system.characteristicInterval) >= maxStride
+				|| time + system.characteristicInterval / 2 >= system.maxSimulationTime
+				|| Math.abs(virial - lastVirial) > tolerance
+				|| Math.abs(radius - lastRadius) > tolerance * lastRadius;
+		if(!due)
+			skipped++;
+		return due;
+	}
+
+	/**
+	 * Takes the frame last found to be due as the frame the following updates
+	 * are compared against, once it is written.
+	 */
+	void written(){
+		lastTime = time;
+		lastVirial = virial;
+		lastRadius = radius;
+	}
+
+	/**
+	 * Returns the line of {@code times.dat} describing the frame last written.
+	 * @return the time, virial ratio and half-mass radius of the frame
+	 */
+	String describe(){
+		return lastTime + "\t" + lastVirial + "\t" + lastRadius;
+	}
+
+	/**
+	 * Takes up the frame described by a line of {@code times.dat} as the last
+	 * frame written, e.g. when a writer resumes a previous run, along with the
+	 * number of frames skipped until then.
+	 * @param line the line describing the frame
+	 * @param skippedFrames the number of frames skipped by the previous run
+	 */
+	void restore(String line, long skippedFrames){
+		skipped = skippedFrames;
+		String[] values = line.trim().split("\\s+");
+		try{
+			double time = Double.parseDouble(values[0]);
+			double v = Double.parseDouble(values[1]);
+			double r = Double.parseDouble(values[2]);
+			lastTime = time;
+			lastVirial = v;
+			lastRadius = r;
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException ex){}
+	}
+}
@@ -0,0 +1,119 @@
+package simulation.listeners;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import simulation.components.ParticleStore;
+import simulation.components.ParticleSystem;
+
+/**
+ * This class describes a subset of the particles of a system by their ID
+ * numbers, so that only those need to be recorded in full. A selection is
+ * given as one of:
+ * <br>{@code <id>[,<id>|<first>-<last>...]}, a list of ID numbers and
+ * inclusive ranges of them;</br>
+ * <br>{@code random:<count>}, that many distinct particles drawn from the seed
+ * of the system;</br>
+ * <br>{@code corners:<percent>}, the particles in the corners of the initial
+ * waterbag, as {@code dataAnalysis.Partition} classifies them into its red
+ * and green regions for the given percentage of the area.</br>
+ * @author Erik Nguyen
+ */
+public class ParticleSelection {
+	/**
+	 * Mixed into the seed of the system to draw random particles from a
+	 * stream of their own.
+	 */
+	private static final long RANDOM_SALT = 0x5E1EC7ED5E1EC7EDL;
+	private final String spec;
+	private final int[] ids;
+	private final int count;
+	private final double percent;
+
+	private ParticleSelection(String spec, int[] ids, int count, double percent){
+		this.spec = spec;
+		this.ids = ids;
+		this.count = count;
+		this.percent = percent;
+	}
+
+	/**
+	 * Reads a selection from its description.
+	 * @param spec the description of the selection
+	 * @return the selection
+	 * @throws IllegalArgumentException if the description is invalid
+	 */
+	public static ParticleSelection parse(String spec){
+		spec = spec.trim();
+		try{
+			if(spec.startsWith("random:")){
+				int count = Integer.parseInt(spec.substring(7).trim());
+				if(count < 1)
+					throw new IllegalArgumentException("At least one particle must be selected");
+				return new ParticleSelection(spec, null, count, 0);
+			}
+			if(spec.startsWith("corners:")){
+				double percent = Double.parseDouble(spec.substring(8).trim());
+				if(!(percent > 0 && percent <= 100))
+					throw new IllegalArgumentException("The corner area must be within (0, 100] percent");
+				return new ParticleSelection(spec, null, 0, percent);
+			}
+			IntStream ids = IntStream.empty();
+			for(String part : spec.split(",")){
+				String[] range = part.trim().split("-");
+				int first = Integer.parseInt(range[0].trim());
+				int last = range.length > 1 ? Integer.parseInt(range[1].trim()) : first;
+				if(first < 0 || last < first || range.length > 2)
+					throw new IllegalArgumentException("Invalid range of ID numbers " + part.trim());
+				ids = IntStream.concat(ids, IntStream.rangeClosed(first, last));
+			}
+			return new ParticleSelection(spec, ids.sorted().distinct().toArray(), 0, 0);
+		} catch (NumberFormatException ex){
+			throw new IllegalArgumentException("Invalid particle selection " + spec);
+		}
+	}
+
+	/**
+	 * Returns the ID numbers of the selected particles of a system in
+	 * increasing order.
+	 * @param sys the system, in its initial configuration for a selection of
+	 * corners
+	 * @return the selected ID numbers
+	 * @throws IllegalArgumentException if the system has too few particles
+	 */
+	public int[] select(ParticleSystem sys){
+		if(ids != null){
+			if(ids[ids.length - 1] >= sys.size)
+				throw new IllegalArgumentException("The system has no particle " + ids[ids.length - 1]);
+			return ids.clone();
+		}
+		if(count > 0){
+			if(count > sys.size)
+				throw new IllegalArgumentException("The system has fewer than " + count + " particles");
+			return new SplittableRandom(sys.seed ^ RANDOM_SALT).ints(0, sys.size)
+					.distinct().limit(count).sorted().toArray();
+		}
+
+		ParticleStore store = sys.getStore();
+		double maxX = 0, maxV = 0;
+		for(int j = 0; j < store.size; j++){
+			maxX = Math.max(maxX, Math.abs(store.getX(j)));
+			maxV = Math.max(maxV, Math.abs(store.getV(j)));
+		}
+		double alpha = maxX * (1 - Math.sqrt(percent / 100)), beta = maxV * (1 - Math.sqrt(percent / 100));
+		int[] corners = new int[store.size];
+		int found = 0;
+		for(int j = 0; j < store.size; j++){
+			if(Math.abs(store.getX(j)) >= alpha && Math.abs(store.getV(j)) >= beta)
+				corners[found++] = store.getID(j);
+		}
+		corners = Arrays.copyOf(corners, found);
+		Arrays.sort(corners);
+		return corners;
+	}
+
+	@Override
+	public String toString(){
+		return spec;
+	}
+}
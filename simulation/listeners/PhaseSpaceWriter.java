@@ -0,0 +1,280 @@
+package simulation.listeners;
+
+import static simulation.Mainframe.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import simulation.components.ParticleStore;
+import simulation.components.ParticleSystem;
+
+/**
+ * This class bins the particles of a system into a grid over phase space
+ * after every update, giving the coarse-grained distribution function
+ * f(x, v) without writing a single frame of particles.
+ *
+ * <p>The grid covers positions within [-X, X) and velocities within [-V, V)
+ * in equal cells. Unless given, X and V are {@code RANGE_FACTOR} times the
+ * largest position and velocity of the system when the writer is created, so
+ * that the grid still holds most of the halo later on. Particles outside of
+ * the grid are only counted. Very large systems are binned in parallel, one
+ * block of particles per processor, each into a grid of its own that is
+ * reused for every update and added up afterwards.</p>
+ *
+ * <p>The grids are written into {@code phase_space.bin}, which starts with a
+ * header of {@code HEADER_SIZE} bytes:
+ * <br>the magic number, the format version, the number of position bins, the
+ * number of velocity bins, X and V as doubles, the number of particles N and
+ * 4 unused bytes.</br>
+ * <br>Each frame that follows is the simulation time as a double and the
+ * length of the frame's data as an int, followed by the data itself: the
+ * count of every cell as an int, compressed with {@code java.util.zip.Deflater}.
+ * The cell of position bin i and velocity bin j holds count
+ * {@code j * positionBins + i}. Everything is little-endian. A mostly empty
+ * grid compresses to a small fraction of its size.</br></p>
+ *
+ * <p>The coarse-grained entropy
+ * <br>S = -sum(p * ln(p / A))</br>
+ * <br>of the fractions p of the particles on the grid in each cell of area A,
+ * the fraction of the cells that are occupied and the number of particles
+ * outside of the grid are written into {@code phase_space.csv}.</br></p>
+ *
+ * <p>A system resumed from a checkpoint continues both files of the run it was
+ * resumed from on the grid recorded there, dropping everything recorded after
+ * the checkpoint.</p>
+ * @author Erik Nguyen
+ */
+public class PhaseSpaceWriter implements LISTENER_Updated{
+	static final int MAGIC = 0x4F445053;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 40;
+	/**
+	 * The extent of the grid relative to the extent of the system when none is
+	 * given.
+	 */
+	public static final double RANGE_FACTOR = 2.0;
+	/**
+	 * The number of particles from which the grid is filled in parallel, as
+	 * the engine does for its own passes over the particles.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 16;
+	private static final String HEADER = "time,entropy,occupied_fraction,outside";
+	private final int xBins, vBins;
+	private final double xRange, vRange;
+	private final int[] grid;
+	/**
+	 * The grids of every parallel block but the first, which is binned into
+	 * {@code grid} itself. These are only created upon the first update of a
+	 * system large enough to be binned in parallel.
+	 */
+	private int[][] parts;
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private final ByteBuffer cells;
+	private byte[] compressed;
+	private final FileChannel out;
+	private final PrintWriter summary;
+
+	/**
+	 * Creates a phase space writer for a system.
+	 * @param sys the system to be recorded
+	 * @param directory the directory to store the files in, ending with a
+	 * separator
+	 * @param xBins the number of position bins
+	 * @param vBins the number of velocity bins
+	 * @param xRange the largest position on the grid, or 0 to size the grid by
+	 * the system
+	 * @param vRange the largest velocity on the grid, or 0 to size the grid by
+	 * the system
+	 * @throws IOException if the files could not be created
+	 */
+	public PhaseSpaceWriter(ParticleSystem sys, String directory, int xBins, int vBins, double xRange, double vRange)
+			throws IOException{
+		if(xBins <= 0 || vBins <= 0 || (long) xBins * vBins > Integer.MAX_VALUE / Integer.BYTES)
+			throw new IllegalArgumentException("Invalid phase space grid " + xBins + "x" + vBins);
+		if(!(xRange >= 0 && vRange >= 0))
+			throw new IllegalArgumentException("The extent of the phase space grid must not be negative");
+		this.xBins = xBins;
+		this.vBins = vBins;
+
+		String file = directory + "phase_space.bin";
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		long kept = 0;
+		if(sys.getSimulationTime() > 0 && new File(file).exists()){
+			try(FileChannel in = FileChannel.open(Paths.get(file), StandardOpenOption.READ)){
+				while(header.hasRemaining() && in.read(header) >= 0);
+				header.flip();
+				if(header.remaining() == HEADER_SIZE && header.getInt() == MAGIC && header.getInt() == VERSION
+						&& header.getInt() == xBins && header.getInt() == vBins){
+					xRange = header.getDouble();
+					vRange = header.getDouble();
+					kept = resumedLength(in, sys.getSimulationTime());
+				}
+			}
+		}
+		if(kept == 0 && (xRange == 0 || vRange == 0)){
+			ParticleStore store = sys.getStore();
+			double maxX = 0, maxV = 0;
+			for(int i = 0; i < store.size; i++){
+				maxX = Math.max(maxX, Math.abs(store.getX(i)));
+				maxV = Math.max(maxV, Math.abs(store.getV(i)));
+			}
+			if(xRange == 0)
+				xRange = RANGE_FACTOR * maxX;
+			if(vRange == 0)
+				vRange = RANGE_FACTOR * maxV;
+		}
+		this.xRange = xRange;
+		this.vRange = vRange;
+		grid = new int[xBins * vBins];
+		cells = ByteBuffer.allocate(grid.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		compressed = new byte[1024];
+
+		if(kept > 0){
+			out = DataWriter.reopen(file, kept);
+		} else {
+			out = DataWriter.open(file);
+			header.clear();
+			header.putInt(MAGIC).putInt(VERSION).putInt(xBins).putInt(vBins)
+					.putDouble(xRange).putDouble(vRange).putInt(sys.size).putInt(0);
+			header.flip();
+			while(header.hasRemaining()){
+				out.write(header);
+			}
+		}
+		String csv = directory + "phase_space.csv";
+		summary = DiagnosticsWriter.create(csv,
+				DiagnosticsWriter.keptLines(csv, HEADER, kept > 0 ? sys.getSimulationTime() : 0));
+	}
+
+	/**
+	 * Returns the length of the grid file of a resumed run up to the time the
+	 * system was resumed from.
+	 * @param in the grid file, positioned after its header
+	 * @param time the simulation time of the system
+	 * @return the length of the file to keep
+	 * @throws IOException if the file could not be read
+	 */
+	private static long resumedLength(FileChannel in, double time) throws IOException{
+		long length = HEADER_SIZE;
+		ByteBuffer frame = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+		while(true){
+			frame.clear();
+			while(frame.hasRemaining() && in.read(frame, length + frame.position()) >= 0);
+			if(frame.hasRemaining() || frame.getDouble(0) > time)
+				return length;
+			long next = length + 12 + frame.getInt(8);
+			if(next > in.size())
+				return length;
+			length = next;
+		}
+	}
+
+	/**
+	 * Bins the particles at the time of the update, then writes the grid and
+	 * its entropy.
+	 * @param evt the trigger event for an update of the system
+	 */
+	@Override
+	public void receiveUpdate(EVENT_Updated evt){
+		ParticleStore store = evt.data;
+		Arrays.fill(grid, 0);
+		if(store.size < PARALLEL_THRESHOLD){
+			bin(store, 0, store.size, grid);
+		} else {
+			if(parts == null)
+				parts = new int[Runtime.getRuntime().availableProcessors() - 1][grid.length];
+			final int blockLength = (store.size + parts.length) / (parts.length + 1);
+			IntStream.range(0, parts.length + 1).parallel().forEach(b -> {
+				int[] counts = b == 0 ? grid : parts[b - 1];
+				if(b > 0)
+					Arrays.fill(counts, 0);
+				int from = Math.min(store.size, b * blockLength);
+				bin(store, from, Math.min(store.size, from + blockLength), counts);
+			});
+			for(int[] part : parts){
+				for(int c = 0; c < grid.length; c++){
+					grid[c] += part[c];
+				}
+			}
+		}
+
+		long inside = 0;
+		int occupied = 0;
+		for(int count : grid){
+			inside += count;
+			if(count > 0)
+				occupied++;
+		}
+		double area = (2 * xRange / xBins) * (2 * vRange / vBins), entropy = 0.0;
+		for(int count : grid){
+			if(count > 0){
+				double p = (double) count / inside;
+				entropy -= p * Math.log(p / area);
+			}
+		}
+		summary.println(evt.time + "," + entropy + "," + (double) occupied / grid.length + ","
+				+ (store.size - inside));
+		summary.flush();
+		if(summary.checkError())
+			errLog("Could not write the phase space summary at time " + evt.time);
+
+		cells.clear();
+		cells.asIntBuffer().put(grid);
+		deflater.reset();
+		deflater.setInput(cells.array());
+		deflater.finish();
+		int length = 0;
+		while(!deflater.finished()){
+			if(length == compressed.length)
+				compressed = Arrays.copyOf(compressed, 2 * compressed.length);
+			length += deflater.deflate(compressed, length, compressed.length - length);
+		}
+		ByteBuffer frame = ByteBuffer.allocate(12 + length).order(ByteOrder.LITTLE_ENDIAN);
+		frame.putDouble(evt.time).putInt(length).put(compressed, 0, length);
+		frame.flip();
+		try{
+			while(frame.hasRemaining()){
+				out.write(frame);
+			}
+		} catch (IOException ex){
+			errLog("Could not write the phase space grid at time " + evt.time + ": " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Adds the particles with a rank from {@code from} up to but not including
+	 * {@code to} to a grid.
+	 * @param store the particles ordered by position
+	 * @param from the first rank to be binned
+	 * @param to the rank after the last one to be binned
+	 * @param counts the grid to add the particles to
+	 */
+	private void bin(ParticleStore store, int from, int to, int[] counts){
+		double xScale = xBins / (2 * xRange), vScale = vBins / (2 * vRange);
+		for(int i = from; i < to; i++){
+			double x = (store.getX(i) + xRange) * xScale, v = (store.getV(i) + vRange) * vScale;
+			if(x >= 0 && x < xBins && v >= 0 && v < vBins)
+				counts[(int) v * xBins + (int) x]++;
+		}
+	}
+
+	/**
+	 * Closes both files.
+	 */
+	public void close(){
+		deflater.end();
+		summary.close();
+		try{
+			out.close();
+		} catch (IOException ex){
+			errLog("Could not close phase_space.bin: " + ex.getMessage());
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package simulation.listeners;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class turns frames of values into lines of text, one value after
+ * another separated by tabs. Values are truncated to floats and written in
+ * the same form as {@code Float.toString}.
+ * @author Erik Nguyen
+ */
+class TextEncoder extends FrameEncoder {
+	/**
+	 * The longest text that a single value can take, including its tab.
+	 */
+	private static final int MAX_VALUE_LENGTH = 16;
+	private static final String NEWLINE = System.lineSeparator();
+
+	/**
+	 * Encodes a frame as a single line of text. The time is not written.
+	 * @param time the time of the frame
+	 * @param values the values of the frame
+	 */
+	@Override
+	void encode(double time, double[] values){
+		for(double d : values){
+			ByteBuffer buffer = reserve(MAX_VALUE_LENGTH);
+			put(buffer, Float.toString((float) d));
+			buffer.put((byte) '\t');
+		}
+		put(reserve(NEWLINE.length()), NEWLINE);
+	}
+
+	private static void put(ByteBuffer buffer, String s){
+		for(int i = 0; i < s.length(); i++){
+			buffer.put((byte) s.charAt(i));
+		}
+	}
+}
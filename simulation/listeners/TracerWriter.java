@@ -0,0 +1,88 @@
+package simulation.listeners;
+
+import static simulation.Mainframe.*;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import simulation.components.ParticleSystem;
+import simulation.components.TracerSet;
+
+/**
+ * This class writes the positions and velocities of the massless tracers of
+ * a particle system into {@code tracer_position} and {@code tracer_velocity}
+ * after every update, in the same format as the frames of the particles.
+ * Tracers cannot be rebuilt from a log of crossings, so in the {@code EVENTS}
+ * format their frames are stored as {@code FLOAT64}. Binary files carry the
+ * number of tracers in their header and are read by
+ * {@code dataAnalysis.BinaryFrameReader} like any other.
+ * @author Erik Nguyen
+ */
+public class TracerWriter implements LISTENER_Updated{
+	private final TracerSet tracers;
+	private final FrameEncoder encode_v, encode_x;
+	private final FileChannel write_v, write_x;
+	private final double[] values;
+
+	/**
+	 * Creates a writer for the tracers of a system.
+	 * @param sys the system whose tracers are recorded
+	 * @param directory the directory to store the data files in, ending with
+	 * a separator
+	 * @param format the format of the frames of the particles
+	 * @throws IOException if the data files could not be created
+	 */
+	public TracerWriter(ParticleSystem sys, String directory, ENUM_OutputFormat format) throws IOException{
+		tracers = sys.getTracers();
+		if(tracers == null)
+			throw new IllegalArgumentException("The system has no tracers");
+		if(format == ENUM_OutputFormat.EVENTS)
+			format = ENUM_OutputFormat.FLOAT64;
+		values = new double[tracers.count];
+
+		write_v = DataWriter.open(directory + "tracer_velocity" + format.extension);
+		write_x = DataWriter.open(directory + "tracer_position" + format.extension);
+		if(format == ENUM_OutputFormat.TEXT){
+			encode_v = new TextEncoder();
+			encode_x = new TextEncoder();
+		} else {
+			double interval = sys.characteristicInterval;
+			BinaryEncoder.writeHeader(write_v, tracers.count, BinaryEncoder.CHANNEL_VELOCITY, interval, format.width);
+			BinaryEncoder.writeHeader(write_x, tracers.count, BinaryEncoder.CHANNEL_POSITION, interval, format.width);
+			encode_v = new BinaryEncoder(format.width);
+			encode_x = new BinaryEncoder(format.width);
+		}
+	}
+
+	/**
+	 * Writes the tracers as they are at the time of the update.
+	 * @param evt the trigger event for an update of the system
+	 */
+	@Override
+	public void receiveUpdate(EVENT_Updated evt){
+		for(int i = 0; i < values.length; i++){
+			values[i] = tracers.getV(i);
+		}
+		encode_v.encode(evt.time, values);
+		for(int i = 0; i < values.length; i++){
+			values[i] = tracers.getX(i);
+		}
+		encode_x.encode(evt.time, values);
+		try{
+			encode_v.writeTo(write_v);
+			encode_x.writeTo(write_x);
+		} catch (IOException ex){
+			errLog("Could not write the tracers at time " + evt.time + ": " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Closes the data files.
+	 */
+	public void close(){
+		try{
+			write_v.close();
+			write_x.close();
+		} catch (IOException ex){
+			errLog("Could not close tracer files: " + ex.getMessage());
+		}
+	}
+}
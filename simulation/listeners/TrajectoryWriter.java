@@ -0,0 +1,244 @@
+package simulation.listeners;
+
+import static simulation.Mainframe.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import simulation.components.ParticleStore;
+import simulation.components.ParticleSystem;
+
+/**
+ * This class records the full trajectories of a subset of the particles of a
+ * system after every update, so that they can be followed at the resolution
+ * of the simulation while frames of the whole system are written far less
+ * often. See {@code ParticleSelection} and {@code DataWriter.setFrameStride}.
+ *
+ * <p>The trajectories are written into {@code trajectories.bin}, which is
+ * created at the full size the simulation needs and starts with a header of
+ * {@code HEADER_SIZE} bytes:
+ * <br>the magic number, the format version, the number of particles M, the
+ * number of frames F the file has room for, the characteristic interval
+ * between frames as a double, the number of frames written so far and 4
+ * unused bytes, followed by the M ID numbers as ints, padded to a multiple
+ * of 8 bytes.</br>
+ * <br>Next come the times of the F frames as doubles, and then the trajectory
+ * of every particle in the order of the ID numbers: the position, velocity and
+ * energy of each of the F frames as doubles. Everything is little-endian, so
+ * the whole trajectory of a particle is a single contiguous read. See
+ * {@code dataAnalysis.TrajectoryReader}.</br></p>
+ *
+ * <p>Frames are kept in memory and written a block at a time, with one write
+ * per particle, after which the number of frames written in the header is
+ * updated. A {@code Checkpointer} writes the frames kept so far before every
+ * checkpoint, so the file is complete whenever a checkpoint is taken. A
+ * system resumed from a
+ * checkpoint continues the trajectories of the particles recorded there,
+ * dropping every frame after the checkpoint.</p>
+ * @author Erik Nguyen
+ */
+public class TrajectoryWriter implements LISTENER_Updated{
+	static final int MAGIC = 0x4F445452;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+	/**
+	 * The number of frames kept in memory before they are written.
+	 */
+	public static final int DEFAULT_BLOCK = 64;
+	private static final int RECORD_SIZE = 24;
+	private final int[] ids;
+	private final int capacity, block;
+	private final long timesStart, dataStart;
+	private final double[] times;
+	private final double[][] records;//position, velocity and energy by particle
+	private final ByteBuffer buffer;
+	private final FileChannel out;
+	private int written = 0, buffered = 0;
+	private boolean full = false;
+
+	/**
+	 * Creates a trajectory writer for a subset of the particles of a system.
+	 * @param sys the system to be recorded
+	 * @param directory the directory to store the file in, ending with a
+	 * separator
+	 * @param ids the ID numbers of the particles to be recorded, increasing
+	 * @param block the number of frames written at a time
+	 * @throws IOException if the file could not be created
+	 */
+	public TrajectoryWriter(ParticleSystem sys, String directory, int[] ids, int block) throws IOException{
+		String file = directory + "trajectories.bin";
+		int[] recorded = sys.getSimulationTime() > 0 && new File(file).exists() ? readIDs(file) : null;
+		if(recorded != null && !Arrays.equals(recorded, ids)){
+			dataLog("Continuing the trajectories of the " + recorded.length + " particles recorded in " + file);
+			ids = recorded;
+		}
+		if(ids.length == 0)
+			throw new IllegalArgumentException("No particles were selected");
+		this.ids = ids.clone();
+		this.block = Math.max(1, block);
+		capacity = (int) Math.ceil(sys.maxSimulationTime / sys.characteristicInterval) + 2;
+		timesStart = HEADER_SIZE + ((ids.length * 4L + 7) / 8) * 8;
+		dataStart = timesStart + capacity * 8L;
+		times = new double[this.block];
+		records = new double[ids.length][3 * this.block];
+		buffer = ByteBuffer.allocate(RECORD_SIZE * this.block).order(ByteOrder.LITTLE_ENDIAN);
+
+		if(recorded != null){
+			out = FileChannel.open(Paths.get(file), StandardOpenOption.READ, StandardOpenOption.WRITE);
+			written = resumedFrames(sys.getSimulationTime());
+			writeCount();
+			return;
+		}
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+			raf.setLength(0);
+			raf.setLength(dataStart + (long) ids.length * capacity * RECORD_SIZE);
+		}
+		out = FileChannel.open(Paths.get(file), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate((int) timesStart).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(ids.length).putInt(capacity)
+				.putDouble(sys.characteristicInterval).putInt(0).putInt(0);
+		for(int id : ids){
+			header.putInt(id);
+		}
+		header.clear();
+		write(header, 0);
+	}
+
+	/**
+	 * Reads the ID numbers recorded in the trajectory file of a previous run.
+	 * @param file the trajectory file
+	 * @return the recorded ID numbers, or null if the file is not a trajectory
+	 * file
+	 * @throws IOException if the file could not be read
+	 */
+	private static int[] readIDs(String file) throws IOException{
+		try(FileChannel in = FileChannel.open(Paths.get(file), StandardOpenOption.READ)){
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while(header.hasRemaining() && in.read(header) >= 0);
+			header.flip();
+			if(header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION)
+				return null;
+			ByteBuffer ids = ByteBuffer.allocate(header.getInt() * 4).order(ByteOrder.LITTLE_ENDIAN);
+			while(ids.hasRemaining() && in.read(ids, HEADER_SIZE + ids.position()) >= 0);
+			if(ids.hasRemaining())
+				return null;
+			ids.flip();
+			int[] recorded = new int[ids.remaining() / 4];
+			ids.asIntBuffer().get(recorded);
+			return recorded;
+		}
+	}
+
+	/**
+	 * Returns the number of frames of a resumed run up to the time the system
+	 * was resumed from.
+	 * @param time the simulation time of the system
+	 * @return the number of frames to keep
+	 * @throws IOException if the file could not be read
+	 */
+	private int resumedFrames(double time) throws IOException{
+		ByteBuffer count = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+		while(count.hasRemaining() && out.read(count, 24 + count.position()) >= 0);
+		int frames = Math.min(count.getInt(0), capacity);
+		ByteBuffer recordedTimes = ByteBuffer.allocate(frames * 8).order(ByteOrder.LITTLE_ENDIAN);
+		while(recordedTimes.hasRemaining() && out.read(recordedTimes, timesStart + recordedTimes.position()) >= 0);
+		for(int f = 0; f < frames; f++){
+			if(recordedTimes.getDouble(f * 8) > time)
+				return f;
+		}
+		return frames;
+	}
+
+	/**
+	 * Keeps the selected particles as they are at the time of the update, and
+	 * writes the block of frames once it is complete.
+	 * @param evt the trigger event for an update of the system
+	 */
+	@Override
+	public void receiveUpdate(EVENT_Updated evt){
+		ParticleStore store = evt.data;
+		times[buffered] = evt.time;
+		for(int k = 0; k < ids.length; k++){
+			int rank = store.getRank(ids[k]);
+			records[k][3 * buffered] = store.getX(rank);
+			records[k][3 * buffered + 1] = store.getV(rank);
+			records[k][3 * buffered + 2] = store.getEnergy(ids[k]);
+		}
+		if(++buffered == block)
+			flush();
+	}
+
+	/**
+	 * Writes every frame kept in memory, followed by the number of frames
+	 * written so far.
+	 */
+	void flush(){
+		int frames = Math.min(buffered, capacity - written);
+		if(frames < buffered && !full){
+			full = true;
+			errLog("trajectories.bin has no room for the frames after time " + times[frames - 1]);
+		}
+		buffered = 0;
+		if(frames <= 0)
+			return;
+		try{
+			for(int k = 0; k < ids.length; k++){
+				buffer.clear();
+				for(int i = 0; i < 3 * frames; i++){
+					buffer.putDouble(records[k][i]);
+				}
+				buffer.flip();
+				write(buffer, dataStart + ((long) k * capacity + written) * RECORD_SIZE);
+			}
+			buffer.clear();
+			for(int f = 0; f < frames; f++){
+				buffer.putDouble(times[f]);
+			}
+			buffer.flip();
+			write(buffer, timesStart + written * 8L);
+			written += frames;
+			writeCount();
+		} catch (IOException ex){
+			errLog("Could not write the trajectories at time " + times[frames - 1] + ": " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Records the number of frames written so far in the header.
+	 * @throws IOException if the header could not be written
+	 */
+	private void writeCount() throws IOException{
+		ByteBuffer count = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+		count.putInt(0, written);
+		write(count, 24);
+	}
+
+	/**
+	 * Writes a buffer into the file at the specified position.
+	 * @param data the data to be written
+	 * @param position the position in the file to write at
+	 * @throws IOException if the data could not be written
+	 */
+	private void write(ByteBuffer data, long position) throws IOException{
+		while(data.hasRemaining()){
+			out.write(data, position + data.position());
+		}
+	}
+
+	/**
+	 * Writes the last frames and closes the file.
+	 */
+	public void close(){
+		flush();
+		try{
+			out.close();
+		} catch (IOException ex){
+			errLog("Could not close trajectories.bin: " + ex.getMessage());
+		}
+	}
+}